@@ -103,4 +103,54 @@ trait Layout extends Algebra {
   /** Utility to set the width and height to the same value. */
   def size[A](img: Drawing[A], extent: Double): Drawing[A] =
     size(img, extent, extent)
+
+  /** Place each image on the image that follows it, so the first image is on
+    * top. This is equivalent to combining the images with `on`, but is stack
+    * safe however many images there are. There must be at least one image.
+    */
+  def onAll[A](images: Seq[Drawing[A]])(implicit
+      s: Semigroup[A]
+  ): Drawing[A] = {
+    assert(images.nonEmpty, "Called `onAll` with no images.")
+    Layout.combineAll(images.toIndexedSeq)(on(_, _))
+  }
+
+  /** Place the images beside one another, with the first image on the left.
+    * This is equivalent to combining the images with `beside`, but is stack
+    * safe however many images there are. There must be at least one image.
+    */
+  def besideAll[A](images: Seq[Drawing[A]])(implicit
+      s: Semigroup[A]
+  ): Drawing[A] = {
+    assert(images.nonEmpty, "Called `besideAll` with no images.")
+    Layout.combineAll(images.toIndexedSeq)(beside(_, _))
+  }
+
+  /** Place the images one above the other, with the first image at the top.
+    * This is equivalent to combining the images with `above`, but is stack safe
+    * however many images there are. There must be at least one image.
+    */
+  def aboveAll[A](images: Seq[Drawing[A]])(implicit
+      s: Semigroup[A]
+  ): Drawing[A] = {
+    assert(images.nonEmpty, "Called `aboveAll` with no images.")
+    Layout.combineAll(images.toIndexedSeq)(above(_, _))
+  }
+}
+object Layout {
+
+  /** Combine a non-empty sequence of images with an associative layout
+    * operation, as a balanced tree. The depth of the tree is logarithmic in the
+    * number of images, which keeps the recursion shallow.
+    */
+  private def combineAll[D](images: IndexedSeq[D])(f: (D, D) => D): D = {
+    def loop(from: Int, until: Int): D =
+      if until - from == 1 then images(from)
+      else {
+        val mid = (from + until) / 2
+        f(loop(from, mid), loop(mid, until))
+      }
+
+    loop(0, images.size)
+  }
 }
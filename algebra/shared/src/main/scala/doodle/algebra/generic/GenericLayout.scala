@@ -82,6 +82,81 @@ trait GenericLayout[G[_]] extends Layout {
       }
     }
 
+  // The n-ary layouts run every child in a single pass, instead of building a
+  // nested structure of binary layouts, so they are linear in the number of
+  // children and only use stack proportional to the depth of each child.
+
+  override def onAll[A](images: Seq[Finalized[G, A]])(implicit
+      s: Semigroup[A]
+  ): Finalized[G, A] = {
+    assert(images.nonEmpty, "Called `onAll` with no images.")
+    Finalized { ctxTxs =>
+      images.toVector.traverse(_.run(ctxTxs)).map { children =>
+        val bb = children.map(_._1).reduceLeft(_.on(_))
+        // The first image is on top, and so is rendered last
+        val rdr = Renderable.parallelAll(
+          children.reverseIterator
+            .map((_, rdr) => (Transform.identity, rdr))
+            .toVector
+        )
+
+        (bb, rdr)
+      }
+    }
+  }
+
+  override def besideAll[A](images: Seq[Finalized[G, A]])(implicit
+      s: Semigroup[A]
+  ): Finalized[G, A] = {
+    assert(images.nonEmpty, "Called `besideAll` with no images.")
+    Finalized { ctxTxs =>
+      images.toVector.traverse(_.run(ctxTxs)).map { children =>
+        val width = children.foldLeft(0.0)((w, c) => w + c._1.width)
+        val bb = BoundingBox(
+          -width / 2.0,
+          children.map(_._1.top).max,
+          width / 2.0,
+          children.map(_._1.bottom).min
+        )
+
+        var left = bb.left
+        val rdr = Renderable.parallelAll(children.map { (bbC, rdrC) =>
+          val tx = Transform.translate(left - bbC.left, 0)
+          left = left + bbC.width
+          (tx, rdrC)
+        })
+
+        (bb, rdr)
+      }
+    }
+  }
+
+  override def aboveAll[A](images: Seq[Finalized[G, A]])(implicit
+      s: Semigroup[A]
+  ): Finalized[G, A] = {
+    assert(images.nonEmpty, "Called `aboveAll` with no images.")
+    Finalized { ctxTxs =>
+      images.toVector.traverse(_.run(ctxTxs)).map { children =>
+        val height = children.foldLeft(0.0)((h, c) => h + c._1.height)
+        val bb = BoundingBox(
+          children.map(_._1.left).min,
+          height / 2.0,
+          children.map(_._1.right).max,
+          -height / 2.0
+        )
+
+        var top = bb.top
+        val rdr = Renderable.parallelAll(children.map { (bbC, rdrC) =>
+          val tx = Transform.translate(0, top - bbC.top)
+          top = top - bbC.height
+          (tx, rdrC)
+        })
+
+        (bb, rdr)
+      }
+    }
+  }
+
   def at[A](img: Finalized[G, A], landmark: Landmark): Finalized[G, A] =
     img.map { case (bb, rdr) =>
       val point = bb.eval(landmark)
@@ -21,8 +21,6 @@ package generic
 import cats.data.State
 import doodle.core.*
 
-import scala.annotation.tailrec
-
 trait GenericPath[G[_]] extends Path {
   self: Algebra { type Drawing[A] = Finalized[G, A] } =>
 
@@ -47,7 +45,7 @@ trait GenericPath[G[_]] extends Path {
     Finalized.leaf { dc =>
       val elements = path.elements
       val strokeWidth = dc.strokeWidth.getOrElse(0.0)
-      val bb = boundingBox(elements).expand(strokeWidth)
+      val bb = path.boundingBox.expand(strokeWidth)
 
       (
         bb,
@@ -61,7 +59,7 @@ trait GenericPath[G[_]] extends Path {
     Finalized.leaf { dc =>
       val elements = path.elements
       val strokeWidth = dc.strokeWidth.getOrElse(0.0)
-      val bb = boundingBox(elements).expand(strokeWidth)
+      val bb = path.boundingBox.expand(strokeWidth)
 
       (
         bb,
@@ -69,45 +67,6 @@ trait GenericPath[G[_]] extends Path {
       )
     }
 
-  def boundingBox(elements: List[PathElement]): BoundingBox = {
-    import PathElement.*
-
-    // This implementation should avoid allocation
-    var minX: Double = 0.0
-    var minY: Double = 0.0
-    var maxX: Double = 0.0
-    var maxY: Double = 0.0
-
-    @tailrec
-    def iter(elts: List[PathElement]): Unit =
-      elts match {
-        case hd :: tl =>
-          hd match {
-            case MoveTo(pos) =>
-              minX = pos.x min minX
-              minY = pos.y min minY
-              maxX = pos.x max maxX
-              maxY = pos.y max maxY
-            case LineTo(pos) =>
-              minX = pos.x min minX
-              minY = pos.y min minY
-              maxX = pos.x max maxX
-              maxY = pos.y max maxY
-            case BezierCurveTo(cp1, cp2, pos) =>
-              // The control points form a bounding box around a bezier curve,
-              // but this may not be a tight bounding box.
-              // It's an acceptable solution for now but in the future
-              // we may wish to generate a tighter bounding box.
-              minX = pos.x min cp2.x min cp1.x min minX
-              minY = pos.y min cp2.y min cp1.y min minY
-              maxX = pos.x max cp2.x max cp1.x max maxX
-              maxY = pos.y max cp2.y max cp1.y max maxY
-          }
-          iter(tl)
-        case Seq() => ()
-      }
-    iter(elements)
-
-    BoundingBox(minX, maxY, maxX, minY)
-  }
+  def boundingBox(elements: List[PathElement]): BoundingBox =
+    PathElement.boundingBox(elements)
 }
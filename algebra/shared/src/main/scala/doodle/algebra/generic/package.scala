@@ -51,6 +51,24 @@ package object generic {
         (l, r).mapN((fx, fy) => (fx, fy).mapN((a, b) => a |+| b))
       }
 
+    /** The n-ary version of `parallel`. Each child is rendered with its own
+      * transform applied before the transform from the surrounding context, and
+      * the results are combined in order.
+      */
+    def parallelAll[F[_]: Apply, A: Semigroup](
+        children: Seq[(Tx, Renderable[F, A])]
+    ): Renderable[F, A] =
+      IndexedStateT.inspectF { tx =>
+        // Combine from the right, so each child's result is prepended to the
+        // combined results of the children that follow it. For an F that
+        // accumulates a List this keeps the combination linear.
+        children
+          .map((txChild, child) => child.runA(txChild.andThen(tx)))
+          .reduceRight((l, r) =>
+            (l, r).mapN((fx, fy) => (fx, fy).mapN((a, b) => a |+| b))
+          )
+      }
+
     def unit[F[_]](fUnit: F[Unit]): Renderable[F, Unit] =
       State.pure(fUnit)
 
@@ -28,38 +28,40 @@ trait TraverseSyntax {
   implicit class TraverseOps[T[_], Alg <: Algebra](
       val t: T[Picture[Alg, Unit]]
   ) {
-    import doodle.syntax.layout.*
+    // Each method lays out every picture in a single pass, starting with an
+    // empty picture, so they give the same result as folding with the binary
+    // layout but are stack safe and linear in the number of pictures.
 
-    private val empty: Picture[Alg with Layout with Shape, Unit] =
+    def allOn(implicit
+        traverse: Traverse[T]
+    ): Picture[Alg with Layout with Shape, Unit] =
       new Picture[Alg with Layout with Shape, Unit] {
         def apply(implicit
             algebra: Alg with Layout with Shape
         ): algebra.Drawing[Unit] =
-          algebra.empty
+          algebra.onAll(algebra.empty +: traverse.toList(t).map(_(algebra)))
       }
 
-    def allOn(implicit
-        traverse: Traverse[T]
-    ): Picture[Alg with Layout with Shape, Unit] = {
-      traverse.foldLeft(t, empty) { (accum, img) =>
-        accum.on(img)
-      }
-    }
-
     def allBeside(implicit
         traverse: Traverse[T]
-    ): Picture[Alg with Layout with Shape, Unit] = {
-      traverse.foldLeft(t, empty) { (accum, img) =>
-        accum.beside(img)
+    ): Picture[Alg with Layout with Shape, Unit] =
+      new Picture[Alg with Layout with Shape, Unit] {
+        def apply(implicit
+            algebra: Alg with Layout with Shape
+        ): algebra.Drawing[Unit] =
+          algebra.besideAll(
+            algebra.empty +: traverse.toList(t).map(_(algebra))
+          )
       }
-    }
 
     def allAbove(implicit
         traverse: Traverse[T]
-    ): Picture[Alg with Layout with Shape, Unit] = {
-      traverse.foldLeft(t, empty) { (accum, img) =>
-        accum.above(img)
+    ): Picture[Alg with Layout with Shape, Unit] =
+      new Picture[Alg with Layout with Shape, Unit] {
+        def apply(implicit
+            algebra: Alg with Layout with Shape
+        ): algebra.Drawing[Unit] =
+          algebra.aboveAll(algebra.empty +: traverse.toList(t).map(_(algebra)))
       }
-    }
   }
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle.algebra.generic
+
+import cats.implicits.*
+import doodle.algebra.generic.reified.Reification
+import doodle.algebra.generic.reified.Reified
+import doodle.core.BoundingBox
+import doodle.core.Transform
+import doodle.syntax.all.*
+import munit.FunSuite
+
+class LayoutSuite extends FunSuite {
+  val algebra = TestAlgebra()
+
+  val images: List[Finalized[Reification, Unit]] =
+    List.tabulate(7) { i =>
+      val image =
+        if i % 2 == 0 then algebra.circle(10.0 + i)
+        else algebra.rectangle(4.0 + i, 12.0 - i)
+
+      algebra.at(image, i.toDouble, -i.toDouble)
+    }
+
+  def run(
+      drawing: Finalized[Reification, Unit]
+  ): (BoundingBox, List[Reified]) = {
+    val (bb, rdr) = drawing.run(List.empty).value
+    val (_, fa) = rdr.run(Transform.identity).value
+    (bb, fa.written.value)
+  }
+
+  test("besideAll lays out images the same as beside") {
+    assertEquals(
+      run(algebra.besideAll(images)),
+      run(images.reduceLeft(algebra.beside(_, _)))
+    )
+  }
+
+  test("aboveAll lays out images the same as above") {
+    assertEquals(
+      run(algebra.aboveAll(images)),
+      run(images.reduceLeft(algebra.above(_, _)))
+    )
+  }
+
+  test("onAll lays out images the same as on") {
+    assertEquals(
+      run(algebra.onAll(images)),
+      run(images.reduceLeft(algebra.on(_, _)))
+    )
+  }
+
+  test("a single image is laid out unchanged") {
+    val image = images.head
+    assertEquals(run(algebra.besideAll(List(image))), run(image))
+    assertEquals(run(algebra.aboveAll(List(image))), run(image))
+    assertEquals(run(algebra.onAll(List(image))), run(image))
+  }
+
+  test("allBeside and allAbove are stack safe") {
+    given TestAlgebra = algebra
+    val circles = List.fill(50000)(circle[TestAlgebra](5.0))
+
+    val (besideBb, besideReified) = run(circles.allBeside.apply)
+    val (aboveBb, aboveReified) = run(circles.allAbove.apply)
+
+    assertEquals(besideBb.width, 50000 * besideBb.height)
+    assertEquals(besideReified.size, 50000)
+    assertEquals(aboveBb.height, 50000 * aboveBb.width)
+    assertEquals(aboveReified.size, 50000)
+  }
+}
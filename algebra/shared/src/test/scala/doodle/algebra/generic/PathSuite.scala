@@ -21,6 +21,7 @@ import doodle.algebra.generic.reified.Reified
 import doodle.algebra.generic.reified.Reified.StrokeClosedPath
 import doodle.algebra.generic.reified.Reified.StrokeOpenPath
 import doodle.core.ClosedPath
+import doodle.core.PathElement
 import doodle.core.Transform
 import doodle.syntax.all.*
 import munit.FunSuite
@@ -63,4 +64,22 @@ class PathSuite extends FunSuite {
         )
     }
   }
+
+  test("Drawing a path many times reuses the same elements") {
+    val closedPath = ClosedPath.roundedRectangle(100, 100, 7)
+    val picture = closedPath.toPicture
+
+    val elements =
+      (toReified(picture) ++ toReified(picture)).collect {
+        case StrokeClosedPath(_, _, elts) => elts
+      }
+
+    assertEquals(elements.size, 2)
+    assert(elements.forall(_ eq closedPath.elements))
+    assert(closedPath.boundingBox eq closedPath.boundingBox)
+    assertEquals(
+      closedPath.boundingBox,
+      PathElement.boundingBox(closedPath.elements)
+    )
+  }
 }
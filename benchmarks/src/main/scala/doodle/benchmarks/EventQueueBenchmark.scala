@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package benchmarks
+
+import doodle.core.Point
+import doodle.java2d.effect.BlockingCircularQueue
+import doodle.java2d.effect.EventRing
+import org.openjdk.jmh.annotations.*
+
+import java.util.concurrent.TimeUnit
+
+/** Benchmarks adding events to the queues that carry events from the Swing
+  * thread to Cats Effect, while another thread takes events from the queue as
+  * the Canvas does. This is the cost paid on the Swing thread for every mouse
+  * move.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+class EventQueueBenchmark {
+  @Param(Array("blocking", "ring"))
+  var queue: String = ""
+
+  var add: Point => Boolean = _ => true
+  var consumer: Thread = null
+  val point = Point(1.0, 2.0)
+
+  @Setup
+  def setup(): Unit = {
+    val take: () => Point =
+      queue match {
+        case "blocking" =>
+          val q = BlockingCircularQueue[Point](8)
+          add = q.add
+          () => q.take()
+
+        case "ring" =>
+          val q = EventRing[Point](8)
+          add = q.add
+          () => q.take()
+      }
+
+    consumer = new Thread(() =>
+      try while true do take()
+      catch { case _: InterruptedException => () }
+    )
+    consumer.setDaemon(true)
+    consumer.start()
+  }
+
+  @TearDown
+  def tearDown(): Unit = {
+    consumer.interrupt()
+    consumer.join()
+  }
+
+  @Benchmark
+  def addEvent(): Boolean =
+    add(point)
+}
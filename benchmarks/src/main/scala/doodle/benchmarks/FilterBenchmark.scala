@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package benchmarks
+
+import cats.effect.unsafe.implicits.global
+import doodle.algebra.Kernel
+import doodle.java2d.*
+import doodle.java2d.algebra.RasterFilter
+import doodle.java2d.effect.Center
+import doodle.java2d.effect.Java2d
+import doodle.java2d.effect.Size
+import org.openjdk.jmh.annotations.*
+
+import java.awt.image.BufferedImage
+import java.awt.image.ConvolveOp
+import java.awt.image.Kernel as AwtKernel
+import java.util.concurrent.TimeUnit
+
+/** Benchmarks the Java2D blur filters against naive 2D convolution with the
+  * same kernel, both our own and `java.awt.image.ConvolveOp`.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+class FilterBenchmark {
+  @Param(Array("2", "8", "24"))
+  var radius: Int = 0
+
+  var image: BufferedImage = null
+  var gaussian: Kernel = null
+  var box: Kernel = null
+  var gaussianOp: ConvolveOp = null
+
+  def stdDeviation: Double = radius / 3.0
+
+  @Setup
+  def setup(): Unit = {
+    image = Java2d
+      .renderBufferedImage(
+        Size.fixedSize(600, 600),
+        Center.CenteredOnPicture,
+        None,
+        Scenes("pointillism").compile[Algebra]
+      )((w, h) => new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE))
+      .unsafeRunSync()
+      ._1
+
+    val size = 2 * radius + 1
+    val g = Array.tabulate(size) { i =>
+      val d = i - radius
+      math.exp(-(d * d) / (2.0 * stdDeviation * stdDeviation))
+    }
+    val total = g.sum
+    gaussian = Kernel(
+      size,
+      size,
+      IArray.tabulate(size * size)(i =>
+        g(i % size) * g(i / size) / (total * total)
+      )
+    )
+    box = Kernel(size, size, IArray.fill(size * size)(1.0 / (size * size)))
+    gaussianOp = new ConvolveOp(
+      new AwtKernel(
+        size,
+        size,
+        Array.tabulate(size * size)(i => gaussian.elements(i).toFloat)
+      ),
+      ConvolveOp.EDGE_NO_OP,
+      null
+    )
+  }
+
+  @Benchmark
+  def separableGaussian(): BufferedImage =
+    RasterFilter.gaussianBlur(image, stdDeviation)
+
+  @Benchmark
+  def naiveGaussian(): BufferedImage =
+    RasterFilter.convolve(image, gaussian, 1.0, 0.0)
+
+  @Benchmark
+  def convolveOpGaussian(): BufferedImage =
+    gaussianOp.filter(image, null)
+
+  @Benchmark
+  def runningSumBox(): BufferedImage =
+    RasterFilter.boxBlur(image, radius)
+
+  @Benchmark
+  def naiveBox(): BufferedImage =
+    RasterFilter.convolve(image, box, 1.0, 0.0)
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package benchmarks
+
+import cats.effect.unsafe.implicits.global
+import doodle.java2d.*
+import doodle.java2d.effect.Center
+import doodle.java2d.effect.GifEncoder
+import doodle.java2d.effect.Java2d
+import doodle.java2d.effect.Size
+import doodle.syntax.all.*
+import org.openjdk.jmh.annotations.*
+
+import java.awt.image.BufferedImage
+import java.io.OutputStream
+import java.util.concurrent.TimeUnit
+
+/** Benchmarks encoding a single frame of an animated GIF. Each invocation adds
+  * the next frame of a rotating scene to an encoder that discards its output.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+class GifEncoderBenchmark {
+  @Param(Array("mandelbrot", "pointillism", "lsystem"))
+  var scene: String = ""
+
+  @Param(Array("per-frame", "global"))
+  var palette: String = ""
+
+  @Param(Array("false", "true"))
+  var deltaFrames: Boolean = false
+
+  var frames: Array[BufferedImage] = Array.empty
+  var encoder: GifEncoder = null
+  var index = 0
+
+  @Setup
+  def setup(): Unit = {
+    val picture = Scenes(scene).compile[Algebra]
+    frames = Array.tabulate(12) { i =>
+      Java2d
+        .renderBufferedImage(
+          Size.fixedSize(400, 400),
+          Center.CenteredOnPicture,
+          None,
+          picture.rotate((i * 5).degrees)
+        )((w, h) => new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB))
+        .unsafeRunSync()
+        ._1
+    }
+
+    encoder = new GifEncoder()
+    encoder.start(OutputStream.nullOutputStream())
+    encoder.setDelay(20)
+    encoder.setFrameDifferencing(deltaFrames)
+    encoder.setSize(400, 400)
+    if palette == "global" then encoder.setPalette(frames.take(5))
+  }
+
+  @TearDown
+  def tearDown(): Unit = {
+    encoder.finish()
+    ()
+  }
+
+  @Benchmark
+  def addFrame(): Boolean = {
+    val frame = frames(index)
+    index = (index + 1) % frames.length
+    encoder.addFrame(frame)
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package benchmarks
+
+import doodle.core.BoundingBox
+import doodle.java2d.*
+import doodle.java2d.effect.Java2d
+import org.openjdk.jmh.annotations.*
+
+import java.awt.image.BufferedImage
+import java.util.concurrent.TimeUnit
+
+/** Benchmarks layout: running a `Finalized` to find the bounding box of every
+  * element of a picture.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+// The beside and above scenes recurse once per level of nesting
+@Fork(value = 1, jvmArgsAppend = Array("-Xss16m"))
+class LayoutBenchmark {
+  @Param(Array("mandelbrot", "pointillism", "lsystem", "beside", "above"))
+  var scene: String = ""
+
+  var drawing: Drawing[Unit] = null
+
+  @Setup
+  def setup(): Unit = {
+    val gc = Java2d.setup(
+      new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics()
+    )
+    drawing = Scenes(scene).compile[Algebra](doodle.java2d.algebra.Algebra(gc))
+  }
+
+  @Benchmark
+  def layout(): (BoundingBox, Renderable[Unit]) =
+    drawing.run(List.empty).value
+}
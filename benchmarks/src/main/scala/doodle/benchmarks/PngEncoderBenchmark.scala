@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package benchmarks
+
+import cats.effect.unsafe.implicits.global
+import doodle.java2d.*
+import doodle.java2d.effect.Center
+import doodle.java2d.effect.Java2d
+import doodle.java2d.effect.PngEncoder
+import doodle.java2d.effect.Size
+import org.openjdk.jmh.annotations.*
+
+import java.awt.image.BufferedImage
+import java.io.OutputStream
+import java.util.concurrent.TimeUnit
+import javax.imageio.ImageIO
+
+/** Benchmarks encoding a rendered scene as a PNG, comparing ImageIO with
+  * [[PngEncoder]] at its fast, default, and small settings. The output is
+  * discarded.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+class PngEncoderBenchmark {
+  @Param(Array("mandelbrot", "pointillism", "lsystem"))
+  var scene: String = ""
+
+  @Param(Array("imageio", "fast", "default", "small"))
+  var encoder: String = ""
+
+  var image: BufferedImage = null
+
+  @Setup
+  def setup(): Unit = {
+    image = Java2d
+      .renderBufferedImage(
+        Size.fixedSize(800, 800),
+        Center.CenteredOnPicture,
+        None,
+        Scenes(scene).compile[Algebra]
+      )((w, h) => new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB))
+      .unsafeRunSync()
+      ._1
+  }
+
+  @Benchmark
+  def encode(): Unit =
+    encoder match {
+      case "imageio" =>
+        ImageIO.write(image, "png", OutputStream.nullOutputStream())
+        ()
+      case "fast" =>
+        PngEncoder.fast.encode(image, OutputStream.nullOutputStream())
+      case "default" =>
+        PngEncoder.default.encode(image, OutputStream.nullOutputStream())
+      case _ => PngEncoder.small.encode(image, OutputStream.nullOutputStream())
+    }
+}
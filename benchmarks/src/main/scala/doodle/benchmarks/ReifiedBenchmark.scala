@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package benchmarks
+
+import doodle.core.*
+import doodle.java2d.*
+import doodle.java2d.algebra.reified.DisplayList
+import doodle.java2d.algebra.reified.Reified
+import doodle.java2d.effect.Center
+import doodle.java2d.effect.Java2d
+import org.openjdk.jmh.annotations.*
+
+import java.awt.Graphics2D
+import java.awt.image.BufferedImage
+import java.util.concurrent.TimeUnit
+
+/** Benchmarks rasterizing the `Reified` instructions for a picture into an
+  * offscreen `BufferedImage`, both from a `List[Reified]` through
+  * `Graphics2DGraphicsContext` and from a [[DisplayList]].
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+// The beside and above scenes recurse once per level of nesting
+@Fork(value = 1, jvmArgsAppend = Array("-Xss16m"))
+class ReifiedBenchmark {
+  @Param(Array("mandelbrot", "pointillism", "lsystem", "beside", "above"))
+  var scene: String = ""
+
+  var reified: List[Reified] = List.empty
+  var displayList: DisplayList = new DisplayList()
+  var gc: Graphics2D = null
+  var transform: Transform = Transform.identity
+
+  @Setup
+  def setup(): Unit = {
+    val image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB)
+    val drawing = Scenes(scene).compile[Algebra](
+      doodle.java2d.algebra.Algebra(Java2d.setup(image.createGraphics()))
+    )
+    val (bb, rdr) = drawing.run(List.empty).value
+    val (_, fa) = rdr.run(Transform.identity).value
+    reified = fa.written.value
+    displayList = DisplayList(reified)
+
+    val canvas = new BufferedImage(
+      bb.width.ceil.toInt.max(1),
+      bb.height.ceil.toInt.max(1),
+      BufferedImage.TYPE_INT_ARGB
+    )
+    gc = Java2d.setup(canvas.createGraphics())
+    transform = Java2d.transform(
+      bb,
+      canvas.getWidth().toDouble,
+      canvas.getHeight().toDouble,
+      Center.CenteredOnPicture
+    )
+  }
+
+  @Benchmark
+  def renderList(): Unit =
+    Java2d.render(gc, reified, transform)
+
+  @Benchmark
+  def renderDisplayList(): Unit =
+    Java2d.render(gc, displayList, transform)
+
+  @Benchmark
+  def buildDisplayList(): DisplayList =
+    DisplayList(reified)
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package benchmarks
+
+import doodle.core.*
+import doodle.image.Image
+import doodle.syntax.all.*
+import doodle.turtle.examples.LSystem
+
+import scala.util.Random
+
+/** The pictures the benchmarks are run against. They are modelled on the
+  * examples, and are defined as an `Image` so the same scene can be compiled
+  * for each backend.
+  *
+  * The scene names are used as the value of the `scene` parameter in the
+  * benchmarks.
+  */
+object Scenes {
+
+  /** The Mandelbrot set, drawn as a quadtree of small squares combined with
+    * `beside` and `above`.
+    */
+  val mandelbrot: Image = {
+    val maxIterations = 50
+    val palette =
+      Color.black +: (0 to 360 by 5).map(a => Color.hsl(a.degrees, 1, 0.4))
+
+    def iterations(real: Double, imaginary: Double): Int = {
+      var zr = 0.0
+      var zi = 0.0
+      var count = 0
+      while count < maxIterations && zr * zr + zi * zi <= 4.0 do {
+        val r = zr * zr - zi * zi + real
+        zi = 2.0 * zr * zi + imaginary
+        zr = r
+        count = count + 1
+      }
+      count
+    }
+
+    def cell(real: Double, imaginary: Double, size: Int): Image = {
+      val count = iterations(real, imaginary)
+      val color =
+        if count == maxIterations then palette(0)
+        else palette(1 + (count - 1) % (palette.length - 1))
+
+      Image.square(size.toDouble).strokeWidth(0).fillColor(color)
+    }
+
+    def quadrant(
+        real: Double,
+        imaginary: Double,
+        domain: Double,
+        size: Int
+    ): Image =
+      if size <= 4 then cell(real, imaginary, size)
+      else {
+        val q = domain / 4
+        val d = domain / 2
+        val s = size / 2
+        quadrant(real - q, imaginary + q, d, s)
+          .beside(quadrant(real + q, imaginary + q, d, s))
+          .above(
+            quadrant(real - q, imaginary - q, d, s)
+              .beside(quadrant(real + q, imaginary - q, d, s))
+          )
+      }
+
+    quadrant(-0.5, 0.0, 3.0, 256)
+  }
+
+  /** Many small dots, jittered around a spline, in the style of the Pointillism
+    * example.
+    */
+  val pointillism: Image = {
+    val random = new Random(42)
+    val count = 10000
+
+    val points =
+      List.tabulate(12)(i =>
+        Point(i * 50.0 - 300.0, random.nextGaussian() * 80)
+      )
+    val curve =
+      Image
+        .interpolatingSpline(points)
+        .strokeWidth(7.0)
+        .strokeColor(Color.hotPink)
+
+    def dot(i: Int): Image = {
+      val x = random.nextDouble() * 600.0 - 300.0
+      val y = random.nextGaussian() * 100.0
+      Image
+        .circle(3.0 + random.nextDouble() * 4.0)
+        .noStroke
+        .fillColor(Color.hsl((i % 360).degrees, 0.8, 0.6))
+        .at(x, y)
+    }
+
+    // Combine the dots as a balanced tree to keep the nesting shallow
+    def dots(from: Int, until: Int): Image =
+      if until - from == 1 then dot(from)
+      else {
+        val mid = (from + until) / 2
+        dots(from, mid).on(dots(mid, until))
+      }
+
+    curve.on(dots(0, count))
+  }
+
+  /** The tree L-system from the turtle examples. */
+  val lSystem: Image = LSystem.tree.image
+
+  /** A long chain of `beside`, nested one level per element. */
+  val beside: Image =
+    (1 to 1000)
+      .map(i => Image.circle(5.0 + i % 10).fillColor(Color.royalBlue))
+      .foldLeft(Image.empty)(_.beside(_))
+
+  /** A long chain of `above`, nested one level per element. */
+  val above: Image =
+    (1 to 1000)
+      .map(i => Image.rectangle(20.0, 2.0 + i % 5).fillColor(Color.crimson))
+      .foldLeft(Image.empty)(_.above(_))
+
+  val all: Map[String, Image] =
+    Map(
+      "mandelbrot" -> mandelbrot,
+      "pointillism" -> pointillism,
+      "lsystem" -> lSystem,
+      "beside" -> beside,
+      "above" -> above
+    )
+
+  def apply(name: String): Image =
+    all(name)
+}
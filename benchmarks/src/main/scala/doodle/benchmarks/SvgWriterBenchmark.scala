@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package benchmarks
+
+import cats.effect.unsafe.implicits.global
+import doodle.svg.*
+import doodle.svg.effect.SvgFormat
+import doodle.svg.effect.SvgWriter
+import org.openjdk.jmh.annotations.*
+
+import java.io.OutputStream
+import java.util.concurrent.TimeUnit
+
+/** Benchmarks generating the SVG string for a picture, and streaming it to an
+  * output as `SvgWriter` does.
+  */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+// The beside and above scenes recurse once per level of nesting
+@Fork(value = 1, jvmArgsAppend = Array("-Xss16m"))
+class SvgWriterBenchmark {
+  @Param(Array("mandelbrot", "pointillism", "lsystem", "beside", "above"))
+  var scene: String = ""
+
+  @Param(Array("default", "compact"))
+  var format: String = ""
+
+  var picture: Picture[Unit] = null
+  var frame: Frame = Frame("benchmark")
+  var algebra: Algebra = algebraInstance
+
+  @Setup
+  def setup(): Unit = {
+    picture = Scenes(scene).compile[Algebra]
+    frame = Frame("benchmark").withFormat(format match {
+      case "compact" => SvgFormat.compact
+      case _         => SvgFormat.default
+    })
+    algebra = algebraInstance.withSvgFormat(frame.format)
+  }
+
+  @Benchmark
+  def render(): String =
+    Svg
+      .render[Algebra, Unit](frame, algebra, picture)
+      .unsafeRunSync()
+      ._1
+
+  @Benchmark
+  def write(): Unit =
+    SvgWriter
+      .writeTo(OutputStream.nullOutputStream(), frame, picture)
+      .unsafeRunSync()
+}
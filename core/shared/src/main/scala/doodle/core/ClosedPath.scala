@@ -19,6 +19,11 @@ package core
 
 /** Elements are stored in reversed order to make appending, the most common
   * operation, more efficient.
+  *
+  * The elements in order and the bounding box are each computed at most once,
+  * when first used. A path that is drawn many times, such as on every frame of
+  * an animation, is not reversed again and its bounding box is not
+  * recalculated each time it is laid out.
   */
 final case class ClosedPath private (reversed: List[PathElement]) {
   def add(element: PathElement): ClosedPath =
@@ -29,7 +34,11 @@ final case class ClosedPath private (reversed: List[PathElement]) {
   def append(path: ClosedPath): ClosedPath =
     new ClosedPath(path.reversed ++ reversed)
 
-  def elements: List[PathElement] = reversed.reverse
+  /** The elements of this path in the order they are drawn. */
+  lazy val elements: List[PathElement] = reversed.reverse
+
+  /** The bounding box of this path. See [[PathElement.boundingBox]]. */
+  lazy val boundingBox: BoundingBox = PathElement.boundingBox(elements)
 
   def open: OpenPath = OpenPath(reversed)
 
@@ -434,4 +434,40 @@ object PathElement {
     }
   }
 
+  /** The bounding box of a path made of the given elements. The box always
+    * includes the origin, where a path starts, and the control points of
+    * curves, which enclose the curve but may not fit it tightly.
+    */
+  def boundingBox(elements: List[PathElement]): BoundingBox = {
+    // This implementation should avoid allocation
+    var minX: Double = 0.0
+    var minY: Double = 0.0
+    var maxX: Double = 0.0
+    var maxY: Double = 0.0
+
+    var elts = elements
+    while elts.nonEmpty do {
+      elts.head match {
+        case MoveTo(pos) =>
+          minX = pos.x min minX
+          minY = pos.y min minY
+          maxX = pos.x max maxX
+          maxY = pos.y max maxY
+        case LineTo(pos) =>
+          minX = pos.x min minX
+          minY = pos.y min minY
+          maxX = pos.x max maxX
+          maxY = pos.y max maxY
+        case BezierCurveTo(cp1, cp2, pos) =>
+          minX = pos.x min cp2.x min cp1.x min minX
+          minY = pos.y min cp2.y min cp1.y min minY
+          maxX = pos.x max cp2.x max cp1.x max maxX
+          maxY = pos.y max cp2.y max cp1.y max maxY
+      }
+      elts = elts.tail
+    }
+
+    BoundingBox(minX, maxY, maxX, minY)
+  }
+
 }
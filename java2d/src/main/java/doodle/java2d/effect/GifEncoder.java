@@ -19,6 +19,7 @@ package doodle.java2d.effect;
 import java.io.*;
 import java.awt.*;
 import java.awt.image.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Class AnimatedGifEncoder - Encodes a GIF file consisting of one or more
@@ -62,10 +63,6 @@ public class GifEncoder {
 
   protected OutputStream out;
 
-  protected BufferedImage image; // current frame
-
-  protected byte[] pixels; // BGR byte array from frame
-
   protected byte[] indexedPixels; // converted frame indexed to palette
 
   protected int colorDepth; // number of bit planes
@@ -74,6 +71,8 @@ public class GifEncoder {
 
   protected boolean preserveColorTab; // stop restting of the palette for frames
 
+  protected byte[] colorLookup; // palette index for each cell of the RGB cube
+
   protected boolean[] usedEntry = new boolean[256]; // active palette entries
 
   protected int palSize = 7; // color table size (bits-1)
@@ -88,6 +87,18 @@ public class GifEncoder {
 
   protected int sample = 10; // default sample interval for quantizer
 
+  protected boolean differencing = false; // only encode changes between frames
+
+  protected BufferedImage previous; // previous frame, when differencing
+
+  protected int frameX, frameY; // position of current frame
+
+  protected int frameWidth, frameHeight; // size of current frame
+
+  protected boolean frameTransparent; // current frame has a transparent index
+
+  protected ConcurrentLinkedQueue<FrameBuffers> buffers = new ConcurrentLinkedQueue<>(); // reusable buffers
+
   /**
    * Sets the delay time between each frame, or changes it for subsequent frames
    * (applies to last frame added).
@@ -142,6 +153,24 @@ public class GifEncoder {
     transparent = c;
   }
 
+  /**
+   * Sets whether only the changes between frames are encoded. When set, each
+   * frame after the first is compared with the previous frame, and only the
+   * bounding rectangle of the pixels that changed is written. Unchanged pixels
+   * inside that rectangle are marked transparent, if the frame's palette has a
+   * spare entry, and each frame is left in place for the next to draw over.
+   * This has no effect if a transparent color has been set. Must be invoked
+   * before the first image is added.
+   *
+   * @param diff
+   *          true to encode only the changes between frames.
+   */
+  public void setFrameDifferencing(boolean diff) {
+    if (started && !firstFrame)
+      return;
+    differencing = diff;
+  }
+
   /**
    * Adds next GIF frame. The frame is not written immediately, but is actually
    * deferred until the next frame is received so that timing data can be
@@ -157,15 +186,48 @@ public class GifEncoder {
     if ((im == null) || !started) {
       return false;
     }
+    if (!sizeSet) {
+      // use first frame's size
+      setSize(im.getWidth(), im.getHeight());
+    }
+    QuantizedFrame frame = quantize(im, differencing ? previous : null);
+    if (differencing) {
+      previous = im;
+    }
+    return addQuantizedFrame(frame);
+  }
+
+  /**
+   * Adds a frame that has already been quantized with <code>quantize</code>.
+   * Frames must be added in the order they should appear in the animation. If
+   * <code>setSize</code> was not invoked, the size of the first frame is used
+   * for all subsequent frames.
+   *
+   * @param frame
+   *          QuantizedFrame to write.
+   * @return true if successful.
+   */
+  public boolean addQuantizedFrame(QuantizedFrame frame) {
+    if ((frame == null) || !started) {
+      return false;
+    }
     boolean ok = true;
     try {
       if (!sizeSet) {
-        // use first frame's size
-        setSize(im.getWidth(), im.getHeight());
+        setSize(frame.width, frame.height);
+      }
+      frameX = frame.x;
+      frameY = frame.y;
+      frameWidth = frame.width;
+      frameHeight = frame.height;
+      frameTransparent = frame.transIndex >= 0;
+      colorTab = frame.colorTab;
+      indexedPixels = frame.indexedPixels;
+      colorDepth = 8;
+      palSize = 7;
+      if (frame.transIndex >= 0) {
+        transIndex = frame.transIndex;
       }
-      image = im;
-      getImagePixels(); // convert to correct format if necessary
-      analyzePixels(); // build color table & map pixels
       if (firstFrame) {
         writeLSD(); // logical screen descriptior
         writePalette(); // global color table
@@ -176,7 +238,7 @@ public class GifEncoder {
       }
       writeGraphicCtrlExt(); // write graphic control extension
       writeImageDesc(); // image descriptor
-      if (!firstFrame) {
+      if (!firstFrame && !preserveColorTab) {
         writePalette(); // local color table
       }
       writePixels(); // encode and write pixel data
@@ -184,10 +246,340 @@ public class GifEncoder {
     } catch (IOException e) {
       ok = false;
     }
+    // the frame has been written, so its buffers can be used for another
+    indexedPixels = null;
+    buffers.offer(frame.buffers);
 
     return ok;
   }
 
+  /**
+   * Converts an image to a frame indexed against a color palette, resizing it
+   * to the size of the animation if necessary. The palette is the one set by
+   * <code>setPalette</code>, if any, and otherwise is learned from the frame.
+   * This is the expensive part of adding a frame. The size must be set with
+   * <code>setSize</code> before calling this method. To quantize frames on
+   * other threads while frames are added, use
+   * <code>quantize(BufferedImage, BufferedImage, QuantizeSettings)</code>.
+   *
+   * @param im
+   *          BufferedImage containing the frame.
+   * @return the quantized frame.
+   */
+  public QuantizedFrame quantize(BufferedImage im) {
+    return quantize(im, null, quantizeSettings());
+  }
+
+  /**
+   * Converts an image to a frame, as <code>quantize(BufferedImage)</code>, but
+   * only includes the pixels that have changed from the previous frame. If the
+   * previous frame is null, or a transparent color has been set, the entire
+   * frame is included. Frames quantized this way should only be written when
+   * frame differencing has been turned on with
+   * <code>setFrameDifferencing</code>.
+   *
+   * @param im
+   *          BufferedImage containing the frame.
+   * @param prev
+   *          BufferedImage containing the previous frame, or null.
+   * @return the quantized frame.
+   */
+  public QuantizedFrame quantize(BufferedImage im, BufferedImage prev) {
+    return quantize(im, prev, quantizeSettings());
+  }
+
+  /**
+   * Converts an image to a frame, as
+   * <code>quantize(BufferedImage, BufferedImage)</code>, using the given
+   * settings rather than the encoder's. This does not read or modify the
+   * encoder, so frames can be quantized concurrently, while earlier frames are
+   * written in order with <code>addQuantizedFrame</code>.
+   *
+   * @param im
+   *          BufferedImage containing the frame.
+   * @param prev
+   *          BufferedImage containing the previous frame, or null.
+   * @param settings
+   *          QuantizeSettings taken with <code>quantizeSettings</code>.
+   * @return the quantized frame.
+   */
+  public QuantizedFrame quantize(BufferedImage im, BufferedImage prev, QuantizeSettings settings) {
+    int width = settings.width;
+    int height = settings.height;
+    FrameBuffers buf = buffers.poll();
+    if (buf == null) {
+      buf = new FrameBuffers();
+    }
+    buf.ensureSize(width, height);
+    int[] argb = argbPixels(im, buf, false, width, height);
+    if ((prev == null) || (settings.transparent != null)) {
+      toBgr(argb, width, 0, 0, width, height, buf.bgr, 0);
+      return quantize(buf, 0, 0, width, height, false, settings);
+    }
+    int[] prevArgb = argbPixels(prev, buf, true, width, height);
+
+    // find the bounding rectangle of the pixels that changed
+    int minX = width;
+    int minY = height;
+    int maxX = -1;
+    int maxY = -1;
+    int k = 0;
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        if (argb[k] != prevArgb[k]) {
+          if (x < minX)
+            minX = x;
+          if (x > maxX)
+            maxX = x;
+          if (y < minY)
+            minY = y;
+          maxY = y;
+        }
+        k++;
+      }
+    }
+    if (maxX < 0) {
+      // nothing changed, but a frame must have at least one pixel
+      minX = minY = maxX = maxY = 0;
+    }
+
+    // copy out the rectangle, noting which pixels changed
+    int w = maxX - minX + 1;
+    int h = maxY - minY + 1;
+    toBgr(argb, width, minX, minY, w, h, buf.bgr, 0);
+    boolean[] changed = buf.changed;
+    for (int y = 0; y < h; y++) {
+      int src = (minY + y) * width + minX;
+      for (int x = 0; x < w; x++) {
+        changed[y * w + x] = argb[src + x] != prevArgb[src + x];
+      }
+    }
+
+    return quantize(buf, minX, minY, w, h, true, settings);
+  }
+
+  /**
+   * Quantizes a rectangle of BGR pixels held in the given buffers. If
+   * differencing, pixels that have not changed are mapped to a spare palette
+   * entry, if there is one, which becomes the frame's transparent index.
+   */
+  private QuantizedFrame quantize(FrameBuffers buf, int x, int y, int w, int h, boolean differencing,
+      QuantizeSettings settings) {
+    byte[] bgr = buf.bgr;
+    int nPix = w * h;
+    int len = nPix * 3;
+    byte[] indexed = buf.indexed;
+    boolean[] used = buf.used;
+    java.util.Arrays.fill(used, false);
+    byte[] tab;
+    if (settings.colorTab != null) {
+      tab = settings.colorTab;
+      byte[] lookup = settings.colorLookup;
+      // map image pixels to the fixed palette
+      int k = 0;
+      for (int i = 0; i < nPix; i++) {
+        int b = bgr[k++] & 0xff;
+        int g = bgr[k++] & 0xff;
+        int r = bgr[k++] & 0xff;
+        int index = lookup[cubeIndex(b, g, r)] & 0xff;
+        used[index] = true;
+        indexed[i] = (byte) index;
+      }
+    } else {
+      NeuQuant nq = new NeuQuant(bgr, len, settings.sample);
+      tab = toRgb(nq.process()); // create reduced palette
+      // map image pixels to new palette
+      int k = 0;
+      for (int i = 0; i < nPix; i++) {
+        int index = nq.map(bgr[k++] & 0xff, bgr[k++] & 0xff, bgr[k++] & 0xff);
+        used[index] = true;
+        indexed[i] = (byte) index;
+      }
+    }
+
+    int trans = -1;
+    if (!differencing) {
+      // get closest match to transparent color if specified
+      Color t = settings.transparent;
+      if (t != null) {
+        trans = findClosest(t, tab, used);
+      }
+    } else {
+      // use an unused palette entry, if any, for unchanged pixels
+      for (int i = 0; i < 256 && trans < 0; i++) {
+        if (!used[i]) {
+          trans = i;
+        }
+      }
+      if (trans >= 0) {
+        boolean[] changed = buf.changed;
+        for (int i = 0; i < nPix; i++) {
+          if (!changed[i]) {
+            indexed[i] = (byte) trans;
+          }
+        }
+      }
+    }
+
+    return new QuantizedFrame(x, y, w, h, tab, buf, trans);
+  }
+
+  /**
+   * Returns a snapshot of the settings that quantizing a frame depends on. Take
+   * it once the size and any palette have been set, and before frames are
+   * quantized on other threads.
+   *
+   * @return the current QuantizeSettings.
+   */
+  public QuantizeSettings quantizeSettings() {
+    if (preserveColorTab) {
+      return new QuantizeSettings(width, height, transparent, sample, colorTab, colorLookup);
+    }
+    return new QuantizeSettings(width, height, transparent, sample, null, null);
+  }
+
+  /**
+   * The encoder settings used to quantize a frame: the size of the animation,
+   * the transparent color, the quantizer's sample interval, and the fixed
+   * palette, if any. Settings are immutable, so frames can be quantized against
+   * them on any thread while the encoder itself changes.
+   */
+  public static final class QuantizeSettings {
+    final int width;
+    final int height;
+    final Color transparent; // transparent color, or null if none
+    final int sample; // sample interval for quantizer
+    final byte[] colorTab; // fixed RGB palette, or null to learn one per frame
+    final byte[] colorLookup; // palette index for each cell of the RGB cube
+
+    QuantizeSettings(int width, int height, Color transparent, int sample, byte[] colorTab, byte[] colorLookup) {
+      this.width = width;
+      this.height = height;
+      this.transparent = transparent;
+      this.sample = sample;
+      this.colorTab = colorTab;
+      this.colorLookup = colorLookup;
+    }
+  }
+
+  /**
+   * A frame that has been reduced to an indexed color palette and is ready to
+   * be LZW encoded and written. Its buffers are reused once it has been
+   * written, so a frame can only be written once.
+   */
+  public static final class QuantizedFrame {
+    final int x;
+    final int y;
+    final int width;
+    final int height;
+    final byte[] colorTab; // RGB palette
+    final byte[] indexedPixels; // frame indexed to palette
+    final int transIndex; // transparent index, or -1 if none
+    final FrameBuffers buffers; // buffers holding the frame
+
+    QuantizedFrame(int x, int y, int width, int height, byte[] colorTab, FrameBuffers buffers, int transIndex) {
+      this.x = x;
+      this.y = y;
+      this.width = width;
+      this.height = height;
+      this.colorTab = colorTab;
+      this.indexedPixels = buffers.indexed;
+      this.transIndex = transIndex;
+      this.buffers = buffers;
+    }
+  }
+
+  /**
+   * The working memory needed to quantize one frame. Buffers are returned to
+   * the encoder once their frame is written, so after the first few frames
+   * quantizing a frame does not allocate any memory proportional to its size.
+   */
+  protected static final class FrameBuffers {
+    int width = 0;
+    int height = 0;
+    byte[] bgr = new byte[0]; // BGR pixels of the frame
+    byte[] indexed = new byte[0]; // frame indexed to palette
+    boolean[] changed = new boolean[0]; // pixels that changed from the previous frame
+    boolean[] used = new boolean[256]; // palette entries used by the frame
+    BufferedImage image; // frame converted to INT_ARGB, if needed
+    BufferedImage prevImage; // previous frame converted to INT_ARGB, if needed
+
+    void ensureSize(int w, int h) {
+      if ((w != width) || (h != height)) {
+        width = w;
+        height = h;
+        bgr = new byte[w * h * 3];
+        indexed = new byte[w * h];
+        changed = new boolean[w * h];
+        image = null;
+        prevImage = null;
+      }
+    }
+  }
+
+  /**
+   * Returns the pixels of an image, at the given size of the animation, as
+   * packed INT_ARGB values. Images of that type and size are read directly from
+   * their raster. Other images are first drawn into a scratch image from the
+   * given buffers, or a new image if there are no buffers.
+   */
+  private static int[] argbPixels(BufferedImage im, FrameBuffers buf, boolean prev, int width, int height) {
+    WritableRaster raster = im.getRaster();
+    if ((im.getType() == BufferedImage.TYPE_INT_ARGB) && (im.getWidth() == width) && (im.getHeight() == height)
+        && (raster.getParent() == null) && (raster.getDataBuffer().getOffset() == 0)
+        && (((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() == width)) {
+      return ((DataBufferInt) raster.getDataBuffer()).getData();
+    }
+    BufferedImage scratch;
+    if (buf == null) {
+      scratch = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    } else if (prev) {
+      if (buf.prevImage == null) {
+        buf.prevImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+      }
+      scratch = buf.prevImage;
+    } else {
+      if (buf.image == null) {
+        buf.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+      }
+      scratch = buf.image;
+    }
+    Graphics2D g = scratch.createGraphics();
+    g.setComposite(AlphaComposite.Src);
+    g.setColor(new Color(0, 0, 0, 0));
+    g.fillRect(0, 0, width, height);
+    g.drawImage(im, 0, 0, null);
+    g.dispose();
+    return ((DataBufferInt) scratch.getRaster().getDataBuffer()).getData();
+  }
+
+  /**
+   * Converts a rectangle of INT_ARGB pixels, in rows of the given width, to BGR
+   * bytes, as if they were drawn over black.
+   */
+  private static void toBgr(int[] argb, int width, int x, int y, int w, int h, byte[] bgr, int offset) {
+    int k = offset;
+    for (int row = y; row < y + h; row++) {
+      int i = row * width + x;
+      int end = i + w;
+      for (; i < end; i++) {
+        int p = argb[i];
+        int a = p >>> 24;
+        int r = (p >> 16) & 0xff;
+        int g = (p >> 8) & 0xff;
+        int b = p & 0xff;
+        if (a != 0xff) {
+          r = (r * a + 127) / 255;
+          g = (g * a + 127) / 255;
+          b = (b * a + 127) / 255;
+        }
+        bgr[k++] = (byte) b;
+        bgr[k++] = (byte) g;
+        bgr[k++] = (byte) r;
+      }
+    }
+  }
+
   /**
    * Flushes any pending data and closes output file. If writing to an
    * OutputStream, the stream is not closed.
@@ -210,10 +602,11 @@ public class GifEncoder {
     // reset for subsequent use
     transIndex = 0;
     out = null;
-    image = null;
-    pixels = null;
     indexedPixels = null;
     colorTab = null;
+    colorLookup = null;
+    preserveColorTab = false;
+    previous = null;
     closeStream = false;
     firstFrame = true;
 
@@ -312,66 +705,70 @@ public class GifEncoder {
     return started = ok;
   }
 
-   // /**
-   //  * Fixes the color palette for all frames until cleared
-   //  */
-   // public void setPalette(int[] palette_pixels, int width, int height) {
-   //     int len = palette_pixels.length;
-   //     int nPix = len / 3;
-   //     indexedPixels = new byte[nPix];
-   //     NeuQuant nq = new NeuQuant(palette_pixels, len, sample);
-   //     colorTab = nq.process(); // create reduced palette
-   //     // convert map from BGR to RGB
-   //     for (int i = 0; i < colorTab.length; i += 3) {
-   //       byte temp = colorTab[i];
-   //       colorTab[i] = colorTab[i + 2];
-   //       colorTab[i + 2] = temp;
-   //       usedEntry[i / 3] = false;
-   //     }
-   //     preserveColorTab = true;
-   // }
-
-   /**
-    * Clears the color palette so it will be learned from each frame's pixel
-    */
-  public void clearPalette() {
-    colorTab = null;
-    preserveColorTab = false;
-  }
-
   /**
-   * Analyzes image colors and creates color map.
+   * Fixes the color palette for all frames until cleared. The palette is
+   * learned from the given sample frames, and is written once as the global
+   * color table. Frames are then mapped to it through a lookup table instead of
+   * each learning its own palette, and are written without a local color
+   * table. Must be invoked after the size is set and before the first frame is
+   * added.
+   *
+   * @param samples
+   *          BufferedImages from which to learn the palette.
    */
-  protected void analyzePixels() {
-    int len = pixels.length;
-    int nPix = len / 3;
-    indexedPixels = new byte[nPix];
-    NeuQuant nq = new NeuQuant(pixels, len, sample);
-    // initialize quantizer
-    if(!preserveColorTab) {
-      colorTab = nq.process(); // create reduced palette
-      // convert map from BGR to RGB
-      for (int i = 0; i < colorTab.length; i += 3) {
-        byte temp = colorTab[i];
-        colorTab[i] = colorTab[i + 2];
-        colorTab[i + 2] = temp;
-        usedEntry[i / 3] = false;
-      }
+  public void setPalette(BufferedImage[] samples) {
+    if ((started && !firstFrame) || samples.length == 0)
+      return;
+    int frameLen = width * height * 3;
+    byte[] pixels = new byte[frameLen * samples.length];
+    for (int i = 0; i < samples.length; i++) {
+      toBgr(argbPixels(samples[i], null, false, width, height), width, 0, 0, width, height, pixels, i * frameLen);
     }
-    // map image pixels to new palette
-    int k = 0;
-    for (int i = 0; i < nPix; i++) {
-      int index = nq.map(pixels[k++] & 0xff, pixels[k++] & 0xff, pixels[k++] & 0xff);
-      usedEntry[index] = true;
-      indexedPixels[i] = (byte) index;
+    NeuQuant nq = new NeuQuant(pixels, pixels.length, sample);
+    colorTab = toRgb(nq.process());
+    // precompute the palette entry for the center of each cell of the RGB cube
+    colorLookup = new byte[1 << (3 * cubeBits)];
+    int cells = 1 << cubeBits;
+    int offset = 1 << (7 - cubeBits);
+    for (int b = 0; b < cells; b++) {
+      for (int g = 0; g < cells; g++) {
+        for (int r = 0; r < cells; r++) {
+          int bc = (b << (8 - cubeBits)) + offset;
+          int gc = (g << (8 - cubeBits)) + offset;
+          int rc = (r << (8 - cubeBits)) + offset;
+          colorLookup[cubeIndex(bc, gc, rc)] = (byte) nq.map(bc, gc, rc);
+        }
+      }
     }
-    pixels = null;
-    colorDepth = 8;
-    palSize = 7;
-    // get closest match to transparent color if specified
-    if (transparent != null) {
-      transIndex = findClosest(transparent);
+    preserveColorTab = true;
+  }
+
+  protected static final int cubeBits = 6; // bits per channel in the RGB cube
+
+  private static int cubeIndex(int b, int g, int r) {
+    int shift = 8 - cubeBits;
+    return ((r >> shift) << (2 * cubeBits)) | ((g >> shift) << cubeBits) | (b >> shift);
+  }
+
+  /**
+   * Converts a palette from BGR to RGB in place
+   */
+  private static byte[] toRgb(byte[] tab) {
+    for (int i = 0; i < tab.length; i += 3) {
+      byte temp = tab[i];
+      tab[i] = tab[i + 2];
+      tab[i + 2] = temp;
     }
+    return tab;
+  }
+
+  /**
+   * Clears the color palette so it will be learned from each frame's pixel
+   */
+  public void clearPalette() {
+    colorTab = null;
+    colorLookup = null;
+    preserveColorTab = false;
   }
 
   /**
@@ -381,6 +778,10 @@ public class GifEncoder {
   protected int findClosest(Color c) {
     if (colorTab == null)
       return -1;
+    return findClosest(c, colorTab, usedEntry);
+  }
+
+  private static int findClosest(Color c, byte[] colorTab, boolean[] usedEntry) {
     int r = c.getRed();
     int g = c.getGreen();
     int b = c.getBlue();
@@ -402,23 +803,6 @@ public class GifEncoder {
     return minpos;
   }
 
-  /**
-   * Extracts image pixels into byte array "pixels"
-   */
-  protected void getImagePixels() {
-    int w = image.getWidth();
-    int h = image.getHeight();
-    int type = image.getType();
-    if ((w != width) || (h != height) || (type != BufferedImage.TYPE_3BYTE_BGR)) {
-      // create new image with right size/format
-      BufferedImage temp = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
-      Graphics2D g = temp.createGraphics();
-      g.drawImage(image, 0, 0, null);
-      image = temp;
-    }
-    pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
-  }
-
   /**
    * Writes Graphic Control Extension
    */
@@ -427,7 +811,10 @@ public class GifEncoder {
     out.write(0xf9); // GCE label
     out.write(4); // data block size
     int transp, disp;
-    if (transparent == null) {
+    if (differencing && (transparent == null)) {
+      transp = frameTransparent ? 1 : 0;
+      disp = 1; // leave in place for the next frame to draw over
+    } else if (transparent == null) {
       transp = 0;
       disp = 0; // dispose = no action
     } else {
@@ -455,13 +842,14 @@ public class GifEncoder {
    */
   protected void writeImageDesc() throws IOException {
     out.write(0x2c); // image separator
-    writeShort(0); // image position x,y = 0,0
-    writeShort(0);
-    writeShort(width); // image size
-    writeShort(height);
+    writeShort(frameX); // image position
+    writeShort(frameY);
+    writeShort(frameWidth); // image size
+    writeShort(frameHeight);
     // packed fields
-    if (firstFrame) {
-      // no LCT - GCT is used for first (or only) frame
+    if (firstFrame || preserveColorTab) {
+      // no LCT - GCT is used for first (or only) frame, or for all frames if
+      // the palette is fixed
       out.write(0);
     } else {
       // specify normal LCT
@@ -519,7 +907,7 @@ public class GifEncoder {
    * Encodes and writes pixel data
    */
   protected void writePixels() throws IOException {
-    LZWEncoder encoder = new LZWEncoder(width, height, indexedPixels, colorDepth);
+    LZWEncoder encoder = new LZWEncoder(frameWidth, frameHeight, indexedPixels, colorDepth);
     encoder.encode(out);
   }
 
@@ -43,6 +43,8 @@ trait Java2dPackage extends Java2dToPicture { self =>
     doodle.algebra.Algebra
       with Basic
       with Bitmap
+      with Blend
+      with Filter
       with FromBufferedImage
       with FromPngBase64
       with FromGifBase64
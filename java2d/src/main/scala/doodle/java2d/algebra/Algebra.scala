@@ -35,6 +35,8 @@ final case class Algebra(
 ) extends Basic
     with Java2dFromBufferedImage
     with Java2dFromBase64
+    with Java2dFilter
+    with Java2dBlend
     with ReifiedBitmap
     with ReifiedPath
     with ReifiedShape
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package algebra
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import scala.reflect.ClassTag
+
+/** The threads that process bands of rows for the Java2D backend, such as the
+  * bands compressed by [[doodle.java2d.effect.PngEncoder]] and those filtered
+  * by [[RasterFilter]]. This work is synchronous and often runs inside `IO`,
+  * so it does not use the common `ForkJoinPool`, where it would compete with,
+  * or wait behind, unrelated work.
+  *
+  * There is at most one thread per processor, however many callers run at
+  * once. Bands beyond that queue, and the calling thread always processes the
+  * first band itself, so every caller makes progress while it waits. Threads
+  * that are idle for a minute exit.
+  */
+private[java2d] object BandPool {
+  private val pool: ThreadPoolExecutor = {
+    val processors = Runtime.getRuntime().availableProcessors()
+    val pool = new ThreadPoolExecutor(
+      processors,
+      processors,
+      60L,
+      TimeUnit.SECONDS,
+      new LinkedBlockingQueue[Runnable](),
+      new ThreadFactory {
+        def newThread(runnable: Runnable): Thread = {
+          val thread = new Thread(runnable, ThreadName)
+          thread.setDaemon(true)
+          thread
+        }
+      }
+    )
+    pool.allowCoreThreadTimeOut(true)
+    pool
+  }
+
+  /** The name of the pool's threads. */
+  val ThreadName = "doodle-bands"
+
+  /** Run f on each band from 0 until count, returning the results in order.
+    * Band 0 runs on the calling thread and the others on the pool. If any band
+    * fails its exception is rethrown, and bands still running are cancelled.
+    */
+  def map[A: ClassTag](count: Int)(f: Int => A): Array[A] =
+    if count <= 1 then Array.tabulate(count)(f)
+    else {
+      val rest: Array[Future[A]] = Array.tabulate(count - 1) { i =>
+        pool.submit(new Callable[A] { def call(): A = f(i + 1) })
+      }
+      val results = new Array[A](count)
+      try {
+        results(0) = f(0)
+        rest.indices.foreach(i => results(i + 1) = rest(i).get())
+      } catch {
+        case e: ExecutionException => throw e.getCause()
+      } finally rest.foreach(_.cancel(true))
+      results
+    }
+
+  /** Run f on each band from 0 until count, and wait for them all to finish. */
+  def foreach(count: Int)(f: Int => Unit): Unit = {
+    map(count)(f)
+    ()
+  }
+}
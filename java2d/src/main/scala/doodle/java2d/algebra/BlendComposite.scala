@@ -0,0 +1,326 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package algebra
+
+import doodle.algebra.generic.BlendMode
+
+import java.awt.Composite
+import java.awt.CompositeContext
+import java.awt.RenderingHints
+import java.awt.image.ColorModel
+import java.awt.image.DataBuffer
+import java.awt.image.DirectColorModel
+import java.awt.image.Raster
+import java.awt.image.WritableRaster
+
+/** A Java2D `Composite` that blends the source with the destination using one
+  * of the CSS blend modes, as defined in the W3C Compositing and Blending
+  * specification. The blended color is then composited with source-over.
+  *
+  * Int rasters with the usual ARGB or RGB layout are read and written a row at
+  * a time. Other rasters go through their color model a pixel at a time.
+  */
+final class BlendComposite private (val blendMode: BlendMode)
+    extends Composite {
+  def createContext(
+      srcColorModel: ColorModel,
+      dstColorModel: ColorModel,
+      hints: RenderingHints
+  ): CompositeContext =
+    new BlendComposite.Context(blendMode, srcColorModel, dstColorModel)
+}
+object BlendComposite {
+  private val composites: Map[BlendMode, BlendComposite] =
+    BlendMode.values.map(mode => mode -> new BlendComposite(mode)).toMap
+
+  /** The composite for the given blend mode. */
+  def apply(blendMode: BlendMode): BlendComposite =
+    composites(blendMode)
+
+  private final class Context(
+      mode: BlendMode,
+      srcColorModel: ColorModel,
+      dstColorModel: ColorModel
+  ) extends CompositeContext {
+    def dispose(): Unit = ()
+
+    def compose(src: Raster, dstIn: Raster, dstOut: WritableRaster): Unit = {
+      val width = src.getWidth().min(dstIn.getWidth())
+      val height = src.getHeight().min(dstIn.getHeight())
+      val source = new Array[Int](width)
+      val backdrop = new Array[Int](width)
+      val result = new Array[Float](4)
+
+      var y = 0
+      while y < height do {
+        read(src, srcColorModel, y, width, source)
+        read(dstIn, dstColorModel, y, width, backdrop)
+        var x = 0
+        while x < width do {
+          val s = source(x)
+          // A transparent source leaves the backdrop unchanged
+          if (s >>> 24) != 0 then {
+            blend(mode, s, backdrop(x), result)
+            backdrop(x) = pack(result)
+          }
+          x = x + 1
+        }
+        write(dstOut, dstColorModel, y, width, backdrop)
+        y = y + 1
+      }
+    }
+  }
+
+  /** True if the color model stores pixels as ints in the usual ARGB layout,
+    * with or without alpha.
+    */
+  private def isIntArgb(cm: ColorModel, raster: Raster): Boolean =
+    cm match {
+      case d: DirectColorModel =>
+        raster.getTransferType() == DataBuffer.TYPE_INT &&
+        d.getRedMask() == 0xff0000 && d.getGreenMask() == 0xff00 &&
+        d.getBlueMask() == 0xff &&
+        (d.getAlphaMask() == 0xff000000 || !d.hasAlpha())
+      case _ => false
+    }
+
+  /** Read a row of pixels as non-premultiplied ARGB. */
+  private def read(
+      raster: Raster,
+      cm: ColorModel,
+      y: Int,
+      width: Int,
+      row: Array[Int]
+  ): Unit = {
+    val minX = raster.getMinX()
+    val minY = raster.getMinY()
+    if isIntArgb(cm, raster) then {
+      raster.getDataElements(minX, minY + y, width, 1, row)
+      var x = 0
+      while x < width do {
+        val p = row(x)
+        row(x) =
+          if !cm.hasAlpha() then p | 0xff000000
+          else if cm.isAlphaPremultiplied() then unpremultiply(p)
+          else p
+        x = x + 1
+      }
+    } else {
+      var pixel: AnyRef = null
+      var x = 0
+      while x < width do {
+        pixel = raster.getDataElements(minX + x, minY + y, pixel)
+        row(x) = cm.getRGB(pixel)
+        x = x + 1
+      }
+    }
+  }
+
+  /** Write a row of non-premultiplied ARGB pixels. */
+  private def write(
+      raster: WritableRaster,
+      cm: ColorModel,
+      y: Int,
+      width: Int,
+      row: Array[Int]
+  ): Unit = {
+    val minX = raster.getMinX()
+    val minY = raster.getMinY()
+    if isIntArgb(cm, raster) then {
+      if cm.hasAlpha() && cm.isAlphaPremultiplied() then {
+        var x = 0
+        while x < width do {
+          row(x) = premultiply(row(x))
+          x = x + 1
+        }
+      }
+      raster.setDataElements(minX, minY + y, width, 1, row)
+    } else {
+      var pixel: AnyRef = null
+      var x = 0
+      while x < width do {
+        pixel = cm.getDataElements(row(x), pixel)
+        raster.setDataElements(minX + x, minY + y, pixel)
+        x = x + 1
+      }
+    }
+  }
+
+  private def premultiply(p: Int): Int = {
+    val a = p >>> 24
+    if a == 255 then p
+    else {
+      def c(shift: Int): Int = (((p >>> shift) & 0xff) * a + 127) / 255
+      (a << 24) | (c(16) << 16) | (c(8) << 8) | c(0)
+    }
+  }
+
+  private def unpremultiply(p: Int): Int = {
+    val a = p >>> 24
+    if a == 255 || a == 0 then p
+    else {
+      def c(shift: Int): Int =
+        ((((p >>> shift) & 0xff) * 255 + a / 2) / a).min(255)
+      (a << 24) | (c(16) << 16) | (c(8) << 8) | c(0)
+    }
+  }
+
+  private def pack(argb: Array[Float]): Int = {
+    def c(v: Float): Int = math.round(v * 255.0f).max(0).min(255)
+    (c(argb(0)) << 24) | (c(argb(1)) << 16) | (c(argb(2)) << 8) | c(argb(3))
+  }
+
+  /** Blend the source pixel over the backdrop pixel, both non-premultiplied
+    * ARGB, and store the non-premultiplied result, with channels from 0 to 1,
+    * in result as alpha, red, green, and blue.
+    */
+  private[algebra] def blend(
+      mode: BlendMode,
+      source: Int,
+      backdrop: Int,
+      result: Array[Float]
+  ): Unit = {
+    val as = (source >>> 24) / 255.0f
+    val ab = (backdrop >>> 24) / 255.0f
+    val sr = ((source >>> 16) & 0xff) / 255.0f
+    val sg = ((source >>> 8) & 0xff) / 255.0f
+    val sb = (source & 0xff) / 255.0f
+    val br = ((backdrop >>> 16) & 0xff) / 255.0f
+    val bg = ((backdrop >>> 8) & 0xff) / 255.0f
+    val bb = (backdrop & 0xff) / 255.0f
+
+    // The blended color, B(Cb, Cs)
+    var r = 0.0f
+    var g = 0.0f
+    var b = 0.0f
+    mode match {
+      case BlendMode.Hue =>
+        val (r1, g1, b1) = setSat(sr, sg, sb, sat(br, bg, bb))
+        val (r2, g2, b2) = setLum(r1, g1, b1, lum(br, bg, bb))
+        r = r2; g = g2; b = b2
+      case BlendMode.Saturation =>
+        val (r1, g1, b1) = setSat(br, bg, bb, sat(sr, sg, sb))
+        val (r2, g2, b2) = setLum(r1, g1, b1, lum(br, bg, bb))
+        r = r2; g = g2; b = b2
+      case BlendMode.Color =>
+        val (r1, g1, b1) = setLum(sr, sg, sb, lum(br, bg, bb))
+        r = r1; g = g1; b = b1
+      case BlendMode.Luminosity =>
+        val (r1, g1, b1) = setLum(br, bg, bb, lum(sr, sg, sb))
+        r = r1; g = g1; b = b1
+      case separable =>
+        r = blendChannel(separable, br, sr)
+        g = blendChannel(separable, bg, sg)
+        b = blendChannel(separable, bb, sb)
+    }
+
+    // Cs' = (1 - ab) * Cs + ab * B(Cb, Cs), then source-over
+    val ao = as + ab * (1.0f - as)
+    def composite(cs: Float, cb: Float, mixed: Float): Float =
+      if ao == 0.0f then 0.0f
+      else {
+        val cs2 = (1.0f - ab) * cs + ab * mixed
+        (as * cs2 + (1.0f - as) * ab * cb) / ao
+      }
+
+    result(0) = ao
+    result(1) = composite(sr, br, r)
+    result(2) = composite(sg, bg, g)
+    result(3) = composite(sb, bb, b)
+  }
+
+  /** The separable blend function B(Cb, Cs) for one channel. */
+  private def blendChannel(mode: BlendMode, cb: Float, cs: Float): Float =
+    mode match {
+      case BlendMode.Normal   => cs
+      case BlendMode.Multiply => cb * cs
+      case BlendMode.Screen   => cb + cs - cb * cs
+      case BlendMode.Overlay  => hardLight(cs, cb)
+      case BlendMode.Darken   => cb.min(cs)
+      case BlendMode.Lighten  => cb.max(cs)
+      case BlendMode.ColorDodge =>
+        if cb == 0.0f then 0.0f
+        else if cs >= 1.0f then 1.0f
+        else (cb / (1.0f - cs)).min(1.0f)
+      case BlendMode.ColorBurn =>
+        if cb >= 1.0f then 1.0f
+        else if cs == 0.0f then 0.0f
+        else 1.0f - ((1.0f - cb) / cs).min(1.0f)
+      case BlendMode.HardLight => hardLight(cb, cs)
+      case BlendMode.SoftLight =>
+        if cs <= 0.5f then cb - (1.0f - 2.0f * cs) * cb * (1.0f - cb)
+        else {
+          val d =
+            if cb <= 0.25f then ((16.0f * cb - 12.0f) * cb + 4.0f) * cb
+            else math.sqrt(cb).toFloat
+          cb + (2.0f * cs - 1.0f) * (d - cb)
+        }
+      case BlendMode.Difference => math.abs(cb - cs)
+      case BlendMode.Exclusion  => cb + cs - 2.0f * cb * cs
+      // The non-separable modes are handled in blend
+      case _ => cs
+    }
+
+  private def hardLight(cb: Float, cs: Float): Float =
+    if cs <= 0.5f then cb * 2.0f * cs
+    else {
+      val s = 2.0f * cs - 1.0f
+      cb + s - cb * s
+    }
+
+  private def lum(r: Float, g: Float, b: Float): Float =
+    0.3f * r + 0.59f * g + 0.11f * b
+
+  private def sat(r: Float, g: Float, b: Float): Float =
+    r.max(g).max(b) - r.min(g).min(b)
+
+  private def clipColor(r: Float, g: Float, b: Float): (Float, Float, Float) = {
+    val l = lum(r, g, b)
+    val n = r.min(g).min(b)
+    val x = r.max(g).max(b)
+    def clip(c: Float): Float = {
+      val c1 = if n < 0.0f then l + (c - l) * l / (l - n) else c
+      if x > 1.0f then l + (c1 - l) * (1.0f - l) / (x - l) else c1
+    }
+    (clip(r), clip(g), clip(b))
+  }
+
+  private def setLum(
+      r: Float,
+      g: Float,
+      b: Float,
+      l: Float
+  ): (Float, Float, Float) = {
+    val d = l - lum(r, g, b)
+    clipColor(r + d, g + d, b + d)
+  }
+
+  private def setSat(
+      r: Float,
+      g: Float,
+      b: Float,
+      s: Float
+  ): (Float, Float, Float) = {
+    val max = r.max(g).max(b)
+    val min = r.min(g).min(b)
+    def scale(c: Float): Float =
+      if max > min then (c - min) * s / (max - min) else 0.0f
+    (scale(r), scale(g), scale(b))
+  }
+}
@@ -18,7 +18,9 @@ package doodle
 package java2d
 package algebra
 
+import de.erichseifert.vectorgraphics2d.VectorGraphics2D
 import doodle.algebra.generic.*
+import doodle.core.BoundingBox
 import doodle.core.PathElement
 import doodle.core.Point
 import doodle.core.Transform as Tx
@@ -26,11 +28,45 @@ import doodle.core.font.Font
 import doodle.java2d.algebra.reified.GraphicsContext
 
 import java.awt.Graphics2D
+import java.awt.geom.AffineTransform
+import java.awt.geom.Path2D
 import java.awt.geom.Rectangle2D
 import java.awt.image.BufferedImage
 
-/** Higher level shape primitives */
+/** Higher level shape primitives.
+  *
+  * Each call converts its fill, stroke, and geometry to Java2D objects. Nothing
+  * is cached here, so one-shot renders and renders on several threads at once
+  * share no state. Pictures that are rendered many times should be converted
+  * once into a `DisplayList` instead.
+  */
 object Graphics2DGraphicsContext extends GraphicsContext[Graphics2D] {
+  private def closedPath(elements: List[PathElement]): Path2D = {
+    val path = Java2D.toPath2D(elements)
+    path.closePath()
+    path
+  }
+
+  private def xs(points: Array[Point]): Array[Int] = {
+    val xs = Array.ofDim[Int](points.length)
+    var idx = 0
+    while idx < points.length do {
+      xs(idx) = points(idx).x.toInt
+      idx = idx + 1
+    }
+    xs
+  }
+
+  private def ys(points: Array[Point]): Array[Int] = {
+    val ys = Array.ofDim[Int](points.length)
+    var idx = 0
+    while idx < points.length do {
+      ys(idx) = points(idx).y.toInt
+      idx = idx + 1
+    }
+    ys
+  }
+
   def fillRect(
       gc: Graphics2D
   )(transform: Tx, fill: Fill, width: Double, height: Double): Unit = {
@@ -78,13 +114,7 @@ object Graphics2DGraphicsContext extends GraphicsContext[Graphics2D] {
   )(transform: Tx, fill: Fill, points: Array[Point]): Unit = {
     Java2D.setFill(gc, fill)
     Java2D.withTransform(gc, transform) {
-      val xs = Array.ofDim[Int](points.size)
-      val ys = Array.ofDim[Int](points.size)
-      points.zipWithIndex.foreach { case (pt, idx) =>
-        xs(idx) = pt.x.toInt
-        ys(idx) = pt.y.toInt
-      }
-      gc.fillPolygon(xs, ys, points.size)
+      gc.fillPolygon(xs(points), ys(points), points.length)
     }
   }
   def strokePolygon(
@@ -92,13 +122,7 @@ object Graphics2DGraphicsContext extends GraphicsContext[Graphics2D] {
   )(transform: Tx, stroke: Stroke, points: Array[Point]): Unit = {
     Java2D.setStroke(gc, stroke)
     Java2D.withTransform(gc, transform) {
-      val xs = Array.ofDim[Int](points.size)
-      val ys = Array.ofDim[Int](points.size)
-      points.zipWithIndex.foreach { case (pt, idx) =>
-        xs(idx) = pt.x.toInt
-        ys(idx) = pt.y.toInt
-      }
-      gc.drawPolygon(xs, ys, points.size)
+      gc.drawPolygon(xs(points), ys(points), points.length)
     }
   }
 
@@ -107,9 +131,7 @@ object Graphics2DGraphicsContext extends GraphicsContext[Graphics2D] {
   )(transform: Tx, fill: Fill, elements: List[PathElement]): Unit = {
     Java2D.setFill(gc, fill)
     Java2D.withTransform(gc, transform) {
-      val path = Java2D.toPath2D(elements)
-      path.closePath()
-      gc.fill(path)
+      gc.fill(closedPath(elements))
     }
   }
   def strokeClosedPath(
@@ -117,9 +139,7 @@ object Graphics2DGraphicsContext extends GraphicsContext[Graphics2D] {
   )(transform: Tx, stroke: Stroke, elements: List[PathElement]): Unit = {
     Java2D.setStroke(gc, stroke)
     Java2D.withTransform(gc, transform) {
-      val path = Java2D.toPath2D(elements)
-      path.closePath()
-      gc.draw(path)
+      gc.draw(closedPath(elements))
     }
   }
 
@@ -128,8 +148,7 @@ object Graphics2DGraphicsContext extends GraphicsContext[Graphics2D] {
   )(transform: Tx, fill: Fill, elements: List[PathElement]): Unit = {
     Java2D.setFill(gc, fill)
     Java2D.withTransform(gc, transform) {
-      val path = Java2D.toPath2D(elements)
-      gc.fill(path)
+      gc.fill(Java2D.toPath2D(elements))
     }
   }
   def strokeOpenPath(
@@ -137,8 +156,7 @@ object Graphics2DGraphicsContext extends GraphicsContext[Graphics2D] {
   )(transform: Tx, stroke: Stroke, elements: List[PathElement]): Unit = {
     Java2D.setStroke(gc, stroke)
     Java2D.withTransform(gc, transform) {
-      val path = Java2D.toPath2D(elements)
-      gc.draw(path)
+      gc.draw(Java2D.toPath2D(elements))
     }
   }
 
@@ -179,4 +197,71 @@ object Graphics2DGraphicsContext extends GraphicsContext[Graphics2D] {
         gc.drawString(text, x.toFloat, y.toFloat)
       }
     }
+
+  /** Draw into an image from [[LayerPool]] that covers, in device space, the
+    * part of bounds inside the clip, and blend it with the destination using
+    * [[BlendComposite]]. Nested layers are therefore never larger than the
+    * layer they are drawn into.
+    *
+    * The normal blend mode needs no layer, and vector output such as PDF cannot
+    * blend, so in those cases the layer is drawn directly.
+    */
+  def layer(
+      gc: Graphics2D
+  )(transform: Tx, blendMode: BlendMode, bounds: BoundingBox)(
+      draw: Graphics2D => Unit
+  ): Unit =
+    if blendMode == BlendMode.Normal || gc.isInstanceOf[VectorGraphics2D] then
+      draw(gc)
+    else {
+      val original = gc.getTransform()
+      val bb = bounds.transform(transform)
+      val region: Rectangle2D =
+        new Rectangle2D.Double(bb.left, bb.bottom, bb.width, bb.height)
+      val clip = gc.getClipBounds()
+      if clip != null then Rectangle2D.intersect(region, clip, region)
+
+      if !region.isEmpty() then {
+        // Allow a pixel for antialiasing on each side
+        val device = original.createTransformedShape(region).getBounds2D()
+        val x = math.floor(device.getMinX()).toInt - 1
+        val y = math.floor(device.getMinY()).toInt - 1
+        val width = math.ceil(device.getMaxX()).toInt + 1 - x
+        val height = math.ceil(device.getMaxY()).toInt + 1 - y
+
+        // Whatever happens while drawing, the image goes back to the pool and
+        // gc is left as we found it
+        val image = LayerPool.acquire(width, height)
+        val composite = gc.getComposite()
+        try {
+          val layer = image.createGraphics()
+          try {
+            layer.setRenderingHints(gc.getRenderingHints())
+            layer.clipRect(0, 0, width, height)
+            layer.translate(-x, -y)
+            layer.transform(original)
+            draw(layer)
+          } finally layer.dispose()
+
+          gc.setTransform(new AffineTransform())
+          gc.setComposite(BlendComposite(blendMode))
+          gc.drawImage(
+            image,
+            x,
+            y,
+            x + width,
+            y + height,
+            0,
+            0,
+            width,
+            height,
+            null
+          )
+        } finally {
+          gc.setComposite(composite)
+          gc.setTransform(original)
+          LayerPool.release(image)
+        }
+      }
+    }
 }
@@ -41,6 +41,7 @@ import java.awt.LinearGradientPaint
 import java.awt.MultipleGradientPaint.CycleMethod
 import java.awt.Paint
 import java.awt.RadialGradientPaint
+import java.awt.font.FontRenderContext
 import java.awt.geom.AffineTransform
 import java.awt.geom.Path2D
 import java.awt.geom.Point2D
@@ -48,6 +49,25 @@ import java.awt.geom.Rectangle2D
 
 /** Various utilities for using Java2D */
 object Java2D {
+
+  /** The key for measured text. The font render context captures the transform
+    * and the rendering hints that affect measurement.
+    */
+  final case class TextKey(
+      text: String,
+      font: Font,
+      context: FontRenderContext
+  )
+
+  /** Caches the AWT font for each doodle font. */
+  val fontCache: LruCache[Font, AwtFont] = new LruCache(256)
+
+  /** Caches the measured bounds of text, keyed on the text, font, and font
+    * render context. Pictures that lay out the same text on every frame only
+    * measure it once.
+    */
+  val textBoundsCache: LruCache[TextKey, Rectangle2D] = new LruCache(4096)
+
   def fontMetrics(gc: Graphics2D, font: Font): FontMetrics =
     gc.getFontMetrics(Java2D.toAwtFont(font))
 
@@ -57,12 +77,24 @@ object Java2D {
     BoundingBox.centered(bounds.getWidth(), bounds.getHeight())
   }
 
+  /** The bounds of text when drawn in font. Results are cached in
+    * textBoundsCache, and a copy is returned so the caller may modify it.
+    */
   def textBounds(gc: Graphics2D, text: String, font: Font): Rectangle2D = {
-    val metrics = fontMetrics(gc, font)
-    metrics.getStringBounds(text, gc)
+    val key = TextKey(text, font, gc.getFontRenderContext())
+    val bounds = textBoundsCache.getOrElseUpdate(
+      key,
+      fontMetrics(gc, font).getStringBounds(text, gc)
+    )
+
+    bounds.clone().asInstanceOf[Rectangle2D]
   }
 
-  def toAwtFont(font: Font): AwtFont = {
+  /** The AWT font corresponding to font. Results are cached in fontCache. */
+  def toAwtFont(font: Font): AwtFont =
+    fontCache.getOrElseUpdate(font, createAwtFont(font))
+
+  private def createAwtFont(font: Font): AwtFont = {
     val awtFamily =
       font.family match {
         case FontFamily.Serif       => AwtFont.SERIF
@@ -102,6 +134,15 @@ object Java2D {
   }
 
   def setStroke(graphics: Graphics2D, stroke: Stroke) = {
+    graphics.setStroke(toAwtStroke(stroke))
+    graphics.setPaint(toAwtPaint(stroke))
+  }
+
+  def setFill(graphics: Graphics2D, fill: Fill) = {
+    graphics.setPaint(toAwtPaint(fill))
+  }
+
+  def toAwtStroke(stroke: Stroke): BasicStroke = {
     val width = stroke.width.toFloat
     val cap = stroke.cap match {
       case Cap.Butt   => BasicStroke.CAP_BUTT
@@ -114,16 +155,18 @@ object Java2D {
       case Join.Round => BasicStroke.JOIN_ROUND
     }
 
-    val jStroke =
-      stroke.dash match {
-        case None =>
-          new BasicStroke(width, cap, join)
+    stroke.dash match {
+      case None =>
+        new BasicStroke(width, cap, join)
 
-        case Some(dash) =>
-          new BasicStroke(width, cap, join, 1.0f, dash, 0.0f)
-      }
+      case Some(dash) =>
+        new BasicStroke(width, cap, join, 1.0f, dash, 0.0f)
+    }
+  }
 
-    val paint: Paint = stroke.style match {
+  /** The `Paint` used to draw a stroke */
+  def toAwtPaint(stroke: Stroke): Paint =
+    stroke.style match {
       case StrokeStyle.ColorStroke(color) =>
         Java2D.toAwtColor(color)
       case StrokeStyle.GradientStroke(gradient) =>
@@ -135,26 +178,20 @@ object Java2D {
         }
     }
 
-    graphics.setStroke(jStroke)
-    graphics.setPaint(paint)
-  }
+  /** The `Paint` used to draw a fill */
+  def toAwtPaint(fill: Fill): Paint =
+    fill match {
+      case Fill.ColorFill(c) =>
+        Java2D.toAwtColor(c)
 
-  def setFill(graphics: Graphics2D, fill: Fill) = {
-    val paint: Paint =
-      fill match {
-        case Fill.ColorFill(c) =>
-          Java2D.toAwtColor(c)
-
-        case Fill.GradientFill(g) =>
-          g match {
-            case l: Gradient.Linear =>
-              Java2D.toLinearGradientPaint(l)
-            case r: Gradient.Radial =>
-              Java2D.toRadialGradientPaint(r)
-          }
-      }
-    graphics.setPaint(paint)
-  }
+      case Fill.GradientFill(g) =>
+        g match {
+          case l: Gradient.Linear =>
+            Java2D.toLinearGradientPaint(l)
+          case r: Gradient.Radial =>
+            Java2D.toRadialGradientPaint(r)
+        }
+    }
 
   def toCycleMethod(cycleMethod: Gradient.CycleMethod): CycleMethod =
     cycleMethod match {
@@ -196,7 +233,7 @@ object Java2D {
     import PathElement.*
     import Point.extractors.*
 
-    val path = new Path2D.Double()
+    val path = new Path2D.Double(Path2D.WIND_NON_ZERO, elements.size + 1)
     path.moveTo(0, 0)
     // path.moveTo(origin.x, origin.y)
     elements.foreach {
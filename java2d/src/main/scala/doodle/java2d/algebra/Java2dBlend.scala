@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package algebra
+
+import cats.data.State
+import cats.data.WriterT
+import doodle.algebra.generic.*
+import doodle.core.Transform as Tx
+import doodle.java2d.algebra.reified.*
+
+/** Implements [[doodle.algebra.Blend]] by wrapping the picture's instructions
+  * in a `Reified.Layer`. When it is rendered the layer is drawn offscreen and
+  * blended with what is beneath it. See `Graphics2DGraphicsContext.layer`.
+  */
+trait Java2dBlend extends GenericBlend[Reification] {
+  self: doodle.algebra.Algebra { type Drawing[A] = doodle.java2d.Drawing[A] } =>
+
+  object BlendApi extends BlendApi {
+    def applyBlend[A](
+        image: Finalized[Reification, A],
+        blendMode: BlendMode
+    ): Finalized[Reification, A] =
+      // Normal blending is what is drawn without a layer
+      if blendMode == BlendMode.Normal then image
+      else
+        image.flatMap { (bb, rdr) =>
+          Finalized.leaf { _ =>
+            (
+              bb,
+              State.inspect { (tx: Tx) =>
+                WriterT(
+                  rdr
+                    .runA(tx)
+                    .flatMap(_.run)
+                    .map((reified, a) =>
+                      (List(Reified.layer(tx, blendMode, bb, reified)), a)
+                    )
+                )
+              }
+            )
+          }
+        }
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package algebra
+
+import cats.Eval
+import cats.data.State
+import cats.data.WriterT
+import doodle.algebra.Kernel
+import doodle.algebra.generic.*
+import doodle.core.BoundingBox
+import doodle.core.Color
+import doodle.core.Transform as Tx
+import doodle.java2d.algebra.reified.*
+
+import java.awt.RenderingHints
+import java.awt.image.BufferedImage
+
+/** Implements [[doodle.algebra.Filter]] by drawing the filtered picture into an
+  * offscreen layer, filtering the layer with [[RasterFilter]], and drawing the
+  * result as a bitmap.
+  *
+  * The layer covers the picture's bounding box, after the transforms around the
+  * picture are applied, plus room for the filter to spread into. The bounding
+  * box used for layout is not changed, as in the SVG backend. Distances given
+  * to filters, such as the standard deviation of a blur, are scaled with the
+  * picture.
+  */
+trait Java2dFilter extends doodle.algebra.Filter {
+  self: doodle.algebra.Algebra { type Drawing[A] = doodle.java2d.Drawing[A] } =>
+
+  def gaussianBlur[A](picture: Drawing[A], stdDeviation: Double): Drawing[A] =
+    layer(picture, stdDeviation * 3.0)((image, tx) =>
+      RasterFilter.gaussianBlur(image, stdDeviation * scale(tx))
+    )
+
+  def boxBlur[A](picture: Drawing[A], radius: Int): Drawing[A] =
+    layer(picture, radius.toDouble)((image, tx) =>
+      RasterFilter.boxBlur(image, math.round(radius * scale(tx)).toInt)
+    )
+
+  def detectEdges[A](picture: Drawing[A]): Drawing[A] =
+    convolveMatrix(
+      picture,
+      doodle.algebra.Filter.edgeDetectionKernel,
+      Some(1.0),
+      0.5
+    )
+
+  def sharpen[A](picture: Drawing[A], amount: Double): Drawing[A] = {
+    val kernel = doodle.algebra.Filter.sharpenKernel
+    convolveMatrix(
+      picture,
+      kernel.copy(elements = kernel.elements.map(_ * amount)),
+      None,
+      0.0
+    )
+  }
+
+  def emboss[A](picture: Drawing[A]): Drawing[A] =
+    convolveMatrix(picture, doodle.algebra.Filter.embossKernel, None, 0.0)
+
+  def convolveMatrix[A](
+      picture: Drawing[A],
+      kernel: Kernel,
+      divisor: Option[Double],
+      bias: Double
+  ): Drawing[A] = {
+    // As in SVG, the divisor defaults to the sum of the kernel, or 1 if the
+    // sum is zero
+    val div = divisor.getOrElse(kernel.sum) match {
+      case 0.0 => 1.0
+      case d   => d
+    }
+    layer(picture, (kernel.width.max(kernel.height) / 2).toDouble)((image, _) =>
+      RasterFilter.convolve(image, kernel, div, bias)
+    )
+  }
+
+  def dropShadow[A](
+      picture: Drawing[A],
+      offsetX: Double,
+      offsetY: Double,
+      blur: Double,
+      color: Color
+  ): Drawing[A] =
+    layer(picture, blur * 3.0 + offsetX.abs.max(offsetY.abs)) { (image, tx) =>
+      // The offset is in the picture's coordinates, with y increasing
+      // downwards as in SVG. Convert it to the layer's pixels.
+      val e = tx.elements
+      val x = e(0) * offsetX - e(1) * offsetY
+      val y = e(3) * offsetX - e(4) * offsetY
+      RasterFilter.dropShadow(
+        image,
+        math.round(x).toInt,
+        -math.round(y).toInt,
+        blur * scale(tx),
+        color
+      )
+    }
+
+  /** The factor by which the transform scales areas, as a length. */
+  private def scale(tx: Tx): Double = {
+    val e = tx.elements
+    math.sqrt(math.abs(e(0) * e(4) - e(1) * e(3)))
+  }
+
+  /** Draw the picture into a layer with `padding` space around its bounding
+    * box, in the picture's coordinates, and replace it with the result of
+    * filtering the layer. The filter is also given the transform around the
+    * picture.
+    */
+  private def layer[A](picture: Drawing[A], padding: Double)(
+      filter: (BufferedImage, Tx) => BufferedImage
+  ): Drawing[A] =
+    picture.flatMap { (bb, rdr) =>
+      Finalized.leaf { _ =>
+        (
+          bb,
+          State.inspect { (tx: Tx) =>
+            WriterT(
+              rdr
+                .runA(tx)
+                .flatMap(_.run)
+                .map((reified, a) =>
+                  (rasterize(reified, bb, tx, padding, filter), a)
+                )
+            )
+          }
+        )
+      }
+    }
+
+  private def rasterize(
+      reified: List[Reified],
+      bb: BoundingBox,
+      tx: Tx,
+      padding: Double,
+      filter: (BufferedImage, Tx) => BufferedImage
+  ): List[Reified] =
+    if reified.isEmpty then reified
+    else {
+      val bounds = bb.transform(tx).expand(padding * scale(tx))
+      val left = math.floor(bounds.left)
+      val bottom = math.floor(bounds.bottom)
+      // Even sizes keep the bitmap, which is drawn centered, on the pixel grid
+      def even(size: Double): Int = {
+        val s = math.ceil(size).toInt.max(2)
+        s + (s % 2)
+      }
+      val width = even(math.ceil(bounds.right) - left)
+      val height = even(math.ceil(bounds.top) - bottom)
+      val centerX = left + width / 2
+      val centerY = bottom + height / 2
+
+      val image = RasterFilter.create(width, height)
+      val gc = image.createGraphics()
+      gc.setRenderingHint(
+        RenderingHints.KEY_ANTIALIASING,
+        RenderingHints.VALUE_ANTIALIAS_ON
+      )
+      val toLayer = Tx
+        .translate(-centerX, -centerY)
+        .andThen(Tx.logicalToScreen(width.toDouble, height.toDouble))
+      reified.foreach(_.render(gc, toLayer)(Graphics2DGraphicsContext))
+      gc.dispose()
+
+      List(Reified.bitmap(Tx.translate(centerX, centerY), filter(image, tx)))
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package algebra
+
+import java.awt.image.BufferedImage
+import java.awt.image.DataBufferInt
+import java.util.ArrayDeque
+import java.util.HashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/** A pool of `TYPE_INT_ARGB_PRE` images used as offscreen layers, such as the
+  * layers that blended pictures are drawn into.
+  *
+  * Images are grouped into buckets by size, with each dimension rounded up to a
+  * multiple of 64 pixels, so a layer can reuse an image allocated for a layer
+  * of a slightly different size while wasting little memory. Only the requested
+  * area of an image is used, and it is cleared when the image is acquired.
+  *
+  * Released images take at most `maxRetainedBytes` in total. When releasing an
+  * image would exceed that, the images released longest ago are dropped for
+  * the garbage collector, as is any image larger than the limit on its own.
+  *
+  * The pool is safe to use from several threads at once.
+  */
+class LayerPool(val maxRetainedBytes: Long) {
+  require(
+    maxRetainedBytes >= 0L,
+    "The bytes retained by a pool cannot be negative"
+  )
+
+  // Released images by bucket, and all released images from the oldest to the
+  // most recently released. Both are guarded by this.
+  private val buckets: HashMap[Long, ArrayDeque[BufferedImage]] =
+    new HashMap()
+  private val released: ArrayDeque[BufferedImage] = new ArrayDeque()
+  private var retained: Long = 0L
+
+  private val allocatedCount = new AtomicLong(0L)
+  private val reusedCount = new AtomicLong(0L)
+
+  /** The number of images the pool has allocated. */
+  def allocated: Long = allocatedCount.get()
+
+  /** The number of times an image has been reused from the pool. */
+  def reused: Long = reusedCount.get()
+
+  /** The number of bytes held by released images waiting to be reused. */
+  def retainedBytes: Long = this.synchronized(retained)
+
+  /** Get an image at least width by height pixels in size, whose top left width
+    * by height pixels are transparent. Return it with [[release]] when it is no
+    * longer needed.
+    */
+  def acquire(width: Int, height: Int): BufferedImage = {
+    val w = LayerPool.bucketSize(width)
+    val h = LayerPool.bucketSize(height)
+    val image = this.synchronized {
+      val bucket = buckets.get(LayerPool.key(w, h))
+      if bucket == null then null
+      else {
+        val image = bucket.pollLast()
+        if bucket.isEmpty() then buckets.remove(LayerPool.key(w, h))
+        released.removeLastOccurrence(image)
+        retained = retained - LayerPool.bytes(image)
+        image
+      }
+    }
+
+    if image == null then {
+      allocatedCount.incrementAndGet()
+      new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE)
+    } else {
+      reusedCount.incrementAndGet()
+      val data =
+        image.getRaster().getDataBuffer().asInstanceOf[DataBufferInt].getData()
+      var y = 0
+      while y < height do {
+        java.util.Arrays.fill(data, y * w, y * w + width, 0)
+        y = y + 1
+      }
+      image
+    }
+  }
+
+  /** Return an image acquired from this pool, so it can be reused. */
+  def release(image: BufferedImage): Unit = {
+    val size = LayerPool.bytes(image)
+    if size <= maxRetainedBytes then
+      this.synchronized {
+        while retained + size > maxRetainedBytes do {
+          val oldest = released.pollFirst()
+          val k = LayerPool.key(oldest.getWidth(), oldest.getHeight())
+          val bucket = buckets.get(k)
+          bucket.removeFirstOccurrence(oldest)
+          if bucket.isEmpty() then buckets.remove(k)
+          retained = retained - LayerPool.bytes(oldest)
+        }
+        buckets
+          .computeIfAbsent(
+            LayerPool.key(image.getWidth(), image.getHeight()),
+            _ => new ArrayDeque()
+          )
+          .addLast(image)
+        released.addLast(image)
+        retained = retained + size
+      }
+  }
+
+  /** Drop all the released images. */
+  def clear(): Unit =
+    this.synchronized {
+      buckets.clear()
+      released.clear()
+      retained = 0L
+    }
+}
+
+/** The pool shared by all Java2D rendering, which retains at most 64MiB of
+  * released images.
+  */
+object LayerPool extends LayerPool(64L * 1024L * 1024L) {
+
+  /** The smallest width or height of a pooled image. Image sizes are rounded up
+    * to a multiple of this.
+    */
+  private val Granularity = 64
+
+  private def key(width: Int, height: Int): Long =
+    (width.toLong << 32) | height.toLong
+
+  private def bytes(image: BufferedImage): Long =
+    image.getWidth().toLong * image.getHeight().toLong * 4L
+
+  private def bucketSize(size: Int): Int =
+    ((size.max(1) + Granularity - 1) / Granularity) * Granularity
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package algebra
+
+import java.util.LinkedHashMap
+import java.util.Map as JMap
+
+/** A bounded cache that discards the least recently used entry when it is full.
+  * Keys are compared by value. It is safe to use from several threads.
+  *
+  * The cache counts hits and misses, which can be used to choose a capacity
+  * that suits an application.
+  */
+final class LruCache[K, V](initialCapacity: Int) {
+  require(initialCapacity > 0, "The capacity of a cache must be positive")
+
+  private var maxSize = initialCapacity
+  private var hitCount = 0L
+  private var missCount = 0L
+
+  private val entries =
+    new LinkedHashMap[K, V](16, 0.75f, true) {
+      override def removeEldestEntry(eldest: JMap.Entry[K, V]): Boolean =
+        this.size() > maxSize
+    }
+
+  /** Get the value for the given key, computing and storing it if it is not
+    * cached. The value is computed without holding the cache's lock, so two
+    * threads that miss on the same key at the same time may both compute it.
+    */
+  def getOrElseUpdate(key: K, value: => V): V = {
+    val cached = this.synchronized {
+      val v = entries.get(key)
+      if v == null then missCount = missCount + 1
+      else hitCount = hitCount + 1
+      v
+    }
+
+    if cached != null then cached
+    else {
+      val computed = value
+      this.synchronized { entries.put(key, computed) }
+      computed
+    }
+  }
+
+  /** The maximum number of entries the cache holds. */
+  def capacity: Int = this.synchronized(maxSize)
+
+  /** Change the maximum number of entries the cache holds, discarding the least
+    * recently used entries if it currently holds more.
+    */
+  def resize(capacity: Int): Unit = {
+    require(capacity > 0, "The capacity of a cache must be positive")
+    this.synchronized {
+      maxSize = capacity
+      val iterator = entries.entrySet().iterator()
+      while entries.size() > maxSize && iterator.hasNext() do {
+        iterator.next()
+        iterator.remove()
+      }
+    }
+  }
+
+  /** The number of entries currently in the cache. */
+  def size: Int = this.synchronized(entries.size())
+
+  /** The number of lookups that found a cached value. */
+  def hits: Long = this.synchronized(hitCount)
+
+  /** The number of lookups that had to compute a value. */
+  def misses: Long = this.synchronized(missCount)
+
+  /** Remove all entries and reset the hit and miss counts. */
+  def clear(): Unit =
+    this.synchronized {
+      entries.clear()
+      hitCount = 0L
+      missCount = 0L
+    }
+}
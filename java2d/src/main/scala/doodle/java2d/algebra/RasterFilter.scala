@@ -0,0 +1,492 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package algebra
+
+import doodle.algebra.Kernel
+import doodle.core.Color
+
+import java.awt.image.BufferedImage
+import java.awt.image.DataBufferInt
+
+/** Image filters that work directly on the `int` pixels of `TYPE_INT_ARGB_PRE`
+  * images. They implement the [[doodle.algebra.Filter]] algebra for Java2D, but
+  * can be used on any image. Images of other types are converted first.
+  *
+  * Every filter returns a new image and leaves its input unchanged. Large
+  * images are split into bands of rows that are filtered in parallel.
+  *
+  *   - [[gaussianBlur]] is separable, blurring rows and then columns, so its
+  *     cost grows with the standard deviation rather than its square.
+  *   - [[boxBlur]] keeps a running sum, so its cost does not depend on the
+  *     radius.
+  *   - [[convolve]] applies any [[doodle.algebra.Kernel]], skipping zero
+  *     elements.
+  *
+  * Blurs treat pixels outside the image as transparent. [[convolve]] repeats
+  * the pixels at the edge of the image, as SVG's `edgeMode="duplicate"` does.
+  */
+object RasterFilter {
+
+  /** Images with fewer pixels than this, multiplied by the work per pixel, are
+    * not split into bands.
+    */
+  private val MinParallelWork = 64L * 1024L
+
+  /** Blur with a Gaussian of the given standard deviation, in pixels. */
+  def gaussianBlur(
+      image: BufferedImage,
+      stdDeviation: Double
+  ): BufferedImage = {
+    val source = premultiplied(image)
+    if stdDeviation <= 0.0 then copy(source)
+    else {
+      val weights = gaussianWeights(stdDeviation)
+      val width = source.getWidth()
+      val height = source.getHeight()
+      val temp = new Array[Int](width * height)
+      val dest = create(width, height)
+      blurRows(pixels(source), temp, width, height, weights)
+      blurColumns(temp, pixels(dest), width, height, weights)
+      dest
+    }
+  }
+
+  /** Blur with a square box of side `2 * radius + 1` pixels. */
+  def boxBlur(image: BufferedImage, radius: Int): BufferedImage = {
+    val source = premultiplied(image)
+    if radius <= 0 then copy(source)
+    else {
+      val width = source.getWidth()
+      val height = source.getHeight()
+      val temp = new Array[Int](width * height)
+      val dest = create(width, height)
+      boxRows(pixels(source), temp, width, height, radius)
+      boxColumns(temp, pixels(dest), width, height, radius)
+      dest
+    }
+  }
+
+  /** Convolve the image with the kernel, as SVG's `feConvolveMatrix` does. Each
+    * premultiplied channel is the weighted sum of its neighbours divided by
+    * `divisor`, plus `bias` (in the range 0 to 1). The kernel is rotated 180
+    * degrees, so this is a convolution rather than a correlation.
+    */
+  def convolve(
+      image: BufferedImage,
+      kernel: Kernel,
+      divisor: Double,
+      bias: Double
+  ): BufferedImage = {
+    val source = premultiplied(image)
+    val width = source.getWidth()
+    val height = source.getHeight()
+    val dest = create(width, height)
+    val src = pixels(source)
+    val dst = pixels(dest)
+
+    // The non-zero elements of the rotated kernel, as offsets and weights
+    val cx = kernel.width / 2
+    val cy = kernel.height / 2
+    val taps = (for {
+      i <- 0 until kernel.height
+      j <- 0 until kernel.width
+      weight = kernel.elements(
+        (kernel.height - 1 - i) * kernel.width + (kernel.width - 1 - j)
+      )
+      if weight != 0.0
+    } yield (j - cx, i - cy, weight / divisor)).toArray
+    val dxs = taps.map(_._1)
+    val dys = taps.map(_._2)
+    val ws = taps.map(_._3.toFloat)
+    val offset = (bias * 255.0).toFloat
+
+    inBands(height, width.toLong * taps.length) { (from, until) =>
+      var y = from
+      while y < until do {
+        var x = 0
+        while x < width do {
+          var a = offset
+          var r = offset
+          var g = offset
+          var b = offset
+          var t = 0
+          while t < ws.length do {
+            val sx = clamp(x + dxs(t), 0, width - 1)
+            val sy = clamp(y + dys(t), 0, height - 1)
+            val p = src(sy * width + sx)
+            val w = ws(t)
+            a = a + w * (p >>> 24)
+            r = r + w * ((p >>> 16) & 0xff)
+            g = g + w * ((p >>> 8) & 0xff)
+            b = b + w * (p & 0xff)
+            t = t + 1
+          }
+          dst(y * width + x) = packPremultiplied(a, r, g, b)
+          x = x + 1
+        }
+        y = y + 1
+      }
+    }
+
+    dest
+  }
+
+  /** Draw the image over a shadow of itself. The shadow is the image's alpha,
+    * filled with color, blurred with the given standard deviation, and moved by
+    * the offset. All distances are in pixels, with y increasing downwards.
+    */
+  def dropShadow(
+      image: BufferedImage,
+      offsetX: Int,
+      offsetY: Int,
+      stdDeviation: Double,
+      color: Color
+  ): BufferedImage = {
+    val source = premultiplied(image)
+    val width = source.getWidth()
+    val height = source.getHeight()
+    val src = pixels(source)
+
+    // Fill the alpha with the color, premultiplied
+    val rgba = color.toRgb
+    val ca = rgba.a.get
+    val tint = Array(
+      (ca * 255.0).toFloat,
+      (ca * rgba.r.get).toFloat,
+      (ca * rgba.g.get).toFloat,
+      (ca * rgba.b.get).toFloat
+    )
+    val shadow = create(width, height)
+    val sh = pixels(shadow)
+    inBands(height, width.toLong) { (from, until) =>
+      var i = from * width
+      while i < until * width do {
+        val alpha = (src(i) >>> 24) / 255.0f
+        sh(i) = packPremultiplied(
+          tint(0) * alpha,
+          tint(1) * alpha,
+          tint(2) * alpha,
+          tint(3) * alpha
+        )
+        i = i + 1
+      }
+    }
+
+    val blurred = pixels(gaussianBlur(shadow, stdDeviation))
+    val dest = create(width, height)
+    val dst = pixels(dest)
+    inBands(height, width.toLong) { (from, until) =>
+      var y = from
+      while y < until do {
+        val sy = y - offsetY
+        var x = 0
+        while x < width do {
+          val sx = x - offsetX
+          val s =
+            if sx >= 0 && sx < width && sy >= 0 && sy < height then
+              blurred(sy * width + sx)
+            else 0
+          dst(y * width + x) = over(src(y * width + x), s)
+          x = x + 1
+        }
+        y = y + 1
+      }
+    }
+
+    dest
+  }
+
+  /** Composite the premultiplied pixel top over bottom. */
+  private def over(top: Int, bottom: Int): Int = {
+    val inverse = 255 - (top >>> 24)
+    if inverse == 0 then top
+    else {
+      def channel(shift: Int): Int =
+        ((top >>> shift) & 0xff) +
+          (((bottom >>> shift) & 0xff) * inverse + 127) / 255
+      (channel(24) << 24) | (channel(16) << 16) | (channel(8) << 8) |
+        channel(0)
+    }
+  }
+
+  /** The weights of a normalized Gaussian kernel, from the centre outwards. */
+  private def gaussianWeights(stdDeviation: Double): Array[Float] = {
+    val radius = math.ceil(stdDeviation * 3.0).toInt
+    val weights = Array.tabulate(radius + 1)(i =>
+      math.exp(-(i * i) / (2.0 * stdDeviation * stdDeviation))
+    )
+    val total = weights(0) + 2.0 * weights.drop(1).sum
+    weights.map(w => (w / total).toFloat)
+  }
+
+  private def blurRows(
+      src: Array[Int],
+      dst: Array[Int],
+      width: Int,
+      height: Int,
+      weights: Array[Float]
+  ): Unit = {
+    val radius = weights.length - 1
+    inBands(height, width.toLong * weights.length) { (from, until) =>
+      var y = from
+      while y < until do {
+        val row = y * width
+        var x = 0
+        while x < width do {
+          var a = 0.0f
+          var r = 0.0f
+          var g = 0.0f
+          var b = 0.0f
+          var k = -radius.min(x)
+          val end = radius.min(width - 1 - x)
+          while k <= end do {
+            val p = src(row + x + k)
+            val w = weights(math.abs(k))
+            a = a + w * (p >>> 24)
+            r = r + w * ((p >>> 16) & 0xff)
+            g = g + w * ((p >>> 8) & 0xff)
+            b = b + w * (p & 0xff)
+            k = k + 1
+          }
+          dst(row + x) = packPremultiplied(a, r, g, b)
+          x = x + 1
+        }
+        y = y + 1
+      }
+    }
+  }
+
+  private def blurColumns(
+      src: Array[Int],
+      dst: Array[Int],
+      width: Int,
+      height: Int,
+      weights: Array[Float]
+  ): Unit = {
+    val radius = weights.length - 1
+    inBands(height, width.toLong * weights.length) { (from, until) =>
+      // Accumulate a whole row at a time, so the source is read in order
+      val a = new Array[Float](width)
+      val r = new Array[Float](width)
+      val g = new Array[Float](width)
+      val b = new Array[Float](width)
+      var y = from
+      while y < until do {
+        java.util.Arrays.fill(a, 0.0f)
+        java.util.Arrays.fill(r, 0.0f)
+        java.util.Arrays.fill(g, 0.0f)
+        java.util.Arrays.fill(b, 0.0f)
+        var k = -radius.min(y)
+        val end = radius.min(height - 1 - y)
+        while k <= end do {
+          val row = (y + k) * width
+          val w = weights(math.abs(k))
+          var x = 0
+          while x < width do {
+            val p = src(row + x)
+            a(x) = a(x) + w * (p >>> 24)
+            r(x) = r(x) + w * ((p >>> 16) & 0xff)
+            g(x) = g(x) + w * ((p >>> 8) & 0xff)
+            b(x) = b(x) + w * (p & 0xff)
+            x = x + 1
+          }
+          k = k + 1
+        }
+        val row = y * width
+        var x = 0
+        while x < width do {
+          dst(row + x) = packPremultiplied(a(x), r(x), g(x), b(x))
+          x = x + 1
+        }
+        y = y + 1
+      }
+    }
+  }
+
+  private def boxRows(
+      src: Array[Int],
+      dst: Array[Int],
+      width: Int,
+      height: Int,
+      radius: Int
+  ): Unit = {
+    val size = 2 * radius + 1
+    inBands(height, width.toLong) { (from, until) =>
+      var y = from
+      while y < until do {
+        val row = y * width
+        var a = 0
+        var r = 0
+        var g = 0
+        var b = 0
+        // The window for x = 0 covers -radius to radius
+        var i = 0
+        while i <= radius.min(width - 1) do {
+          val p = src(row + i)
+          a = a + (p >>> 24)
+          r = r + ((p >>> 16) & 0xff)
+          g = g + ((p >>> 8) & 0xff)
+          b = b + (p & 0xff)
+          i = i + 1
+        }
+        var x = 0
+        while x < width do {
+          dst(row + x) = packAverage(a, r, g, b, size)
+          val in = x + radius + 1
+          if in < width then {
+            val p = src(row + in)
+            a = a + (p >>> 24)
+            r = r + ((p >>> 16) & 0xff)
+            g = g + ((p >>> 8) & 0xff)
+            b = b + (p & 0xff)
+          }
+          val out = x - radius
+          if out >= 0 then {
+            val p = src(row + out)
+            a = a - (p >>> 24)
+            r = r - ((p >>> 16) & 0xff)
+            g = g - ((p >>> 8) & 0xff)
+            b = b - (p & 0xff)
+          }
+          x = x + 1
+        }
+        y = y + 1
+      }
+    }
+  }
+
+  private def boxColumns(
+      src: Array[Int],
+      dst: Array[Int],
+      width: Int,
+      height: Int,
+      radius: Int
+  ): Unit = {
+    val size = 2 * radius + 1
+    inBands(height, width.toLong) { (from, until) =>
+      // Running sums for every column, slid down a row at a time
+      val a = new Array[Int](width)
+      val r = new Array[Int](width)
+      val g = new Array[Int](width)
+      val b = new Array[Int](width)
+
+      def add(y: Int, sign: Int): Unit = {
+        val row = y * width
+        var x = 0
+        while x < width do {
+          val p = src(row + x)
+          a(x) = a(x) + sign * (p >>> 24)
+          r(x) = r(x) + sign * ((p >>> 16) & 0xff)
+          g(x) = g(x) + sign * ((p >>> 8) & 0xff)
+          b(x) = b(x) + sign * (p & 0xff)
+          x = x + 1
+        }
+      }
+
+      var i = (from - radius).max(0)
+      while i <= (from + radius).min(height - 1) do {
+        add(i, 1)
+        i = i + 1
+      }
+      var y = from
+      while y < until do {
+        val row = y * width
+        var x = 0
+        while x < width do {
+          dst(row + x) = packAverage(a(x), r(x), g(x), b(x), size)
+          x = x + 1
+        }
+        if y + radius + 1 < height then add(y + radius + 1, 1)
+        if y - radius >= 0 then add(y - radius, -1)
+        y = y + 1
+      }
+    }
+  }
+
+  private def packAverage(a: Int, r: Int, g: Int, b: Int, size: Int): Int = {
+    val half = size / 2
+    (((a + half) / size) << 24) | (((r + half) / size) << 16) |
+      (((g + half) / size) << 8) | ((b + half) / size)
+  }
+
+  /** Round and clamp premultiplied channels, keeping each color channel no
+    * greater than alpha.
+    */
+  private def packPremultiplied(a: Float, r: Float, g: Float, b: Float): Int = {
+    val ia = clamp(math.round(a), 0, 255)
+    (ia << 24) |
+      (clamp(math.round(r), 0, ia) << 16) |
+      (clamp(math.round(g), 0, ia) << 8) |
+      clamp(math.round(b), 0, ia)
+  }
+
+  private def clamp(value: Int, min: Int, max: Int): Int =
+    if value < min then min else if value > max then max else value
+
+  /** Split the rows into bands, run f on each band in parallel on the shared
+    * [[BandPool]], and wait for them all to finish. Small amounts of work are
+    * not split.
+    */
+  private def inBands(height: Int, workPerRow: Long)(
+      f: (Int, Int) => Unit
+  ): Unit = {
+    val processors = Runtime.getRuntime().availableProcessors()
+    val bands =
+      if height * workPerRow < MinParallelWork then 1
+      else processors.min(height)
+    if bands <= 1 then f(0, height)
+    else
+      BandPool.foreach(bands)(i =>
+        f(i * height / bands, (i + 1) * height / bands)
+      )
+  }
+
+  private[algebra] def create(width: Int, height: Int): BufferedImage =
+    new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE)
+
+  /** The pixels of an image created by [[create]]. */
+  private def pixels(image: BufferedImage): Array[Int] =
+    image.getRaster().getDataBuffer().asInstanceOf[DataBufferInt].getData()
+
+  private def copy(image: BufferedImage): BufferedImage = {
+    val dest = create(image.getWidth(), image.getHeight())
+    System.arraycopy(pixels(image), 0, pixels(dest), 0, pixels(image).length)
+    dest
+  }
+
+  /** The image, if it is a `TYPE_INT_ARGB_PRE` image that [[pixels]] can read,
+    * or otherwise a copy converted to that type.
+    */
+  private def premultiplied(image: BufferedImage): BufferedImage = {
+    val raster = image.getRaster()
+    if image.getType() == BufferedImage.TYPE_INT_ARGB_PRE &&
+      raster.getDataBuffer().getOffset() == 0 &&
+      raster.getSampleModelTranslateX() == 0 &&
+      raster.getSampleModelTranslateY() == 0 &&
+      raster.getDataBuffer().getSize() == image.getWidth() * image.getHeight()
+    then image
+    else {
+      val dest = create(image.getWidth(), image.getHeight())
+      val gc = dest.createGraphics()
+      gc.drawImage(image, 0, 0, null)
+      gc.dispose()
+      dest
+    }
+  }
+}
@@ -0,0 +1,613 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package algebra
+package reified
+
+import doodle.algebra.generic.BlendMode
+import doodle.algebra.generic.Fill
+import doodle.algebra.generic.Stroke
+import doodle.core.BoundingBox
+import doodle.core.PathElement
+import doodle.core.Transform as Tx
+
+import java.awt.BasicStroke
+import java.awt.Font as AwtFont
+import java.awt.Graphics2D
+import java.awt.Paint
+import java.awt.Polygon
+import java.awt.Shape
+import java.awt.geom.AffineTransform
+import java.awt.geom.Path2D
+import java.awt.geom.Rectangle2D
+import java.awt.image.BufferedImage
+import java.util.Arrays
+import java.util.IdentityHashMap
+
+/** A compact form of a `List[Reified]` that is cheap to render many times.
+  *
+  * Instructions are stored as a struct of arrays: an opcode, the six
+  * coefficients of the affine transform, and two numeric operands per
+  * instruction live in primitive arrays. Fills and strokes are converted to
+  * Java2D paints and strokes, and paths and polygons to Java2D shapes, when an
+  * instruction is added rather than when it is rendered. Rendering therefore
+  * walks the arrays without allocating, which matters for pictures with many
+  * elements that are redrawn on every repaint. A path that appears in several
+  * instructions of the same display list is only converted once.
+  *
+  * Rendering produces the same pixels as rendering each `Reified` with
+  * `Graphics2DGraphicsContext`.
+  *
+  * Each instruction also records a conservative bounding box, so rendering can
+  * skip instructions that fall outside a region of interest, such as a tile of
+  * a larger image.
+  *
+  * A `Reified.Layer` is stored as a single instruction holding a nested display
+  * list for its contents.
+  *
+  * A `DisplayList` is mutable and not thread safe while it is being built.
+  * Rendering does not modify it, so once built it can be rendered as often as
+  * needed, including from several threads at once.
+  */
+final class DisplayList(initialCapacity: Int = 16) {
+  import DisplayList.*
+
+  private var count = 0
+  private var opcodes = new Array[Byte](initialCapacity.max(1))
+  private var transforms = new Array[Double](opcodes.length * 6)
+  private var operands = new Array[Double](opcodes.length * 2)
+  private var paints = new Array[Paint](opcodes.length)
+  private var strokes = new Array[BasicStroke](opcodes.length)
+  private var shapes = new Array[AnyRef](opcodes.length)
+  // Bounds in the instruction's own coordinates, as minX, minY, maxX, maxY
+  private var bounds = new Array[Double](opcodes.length * 4)
+
+  // Consecutive instructions very often share the same fill or stroke, so we
+  // remember the last conversion to avoid repeating it.
+  private var lastFill: Fill = null
+  private var lastFillPaint: Paint = null
+  private var lastStroke: Stroke = null
+  private var lastStrokePaint: Paint = null
+  private var lastAwtStroke: BasicStroke = null
+
+  // Paths are immutable lists, so a path that is reused, for example by a
+  // picture that is drawn several times, can share one Java2D shape. The
+  // caches are only touched while building, so need no lock.
+  private val openPaths = new IdentityHashMap[List[PathElement], Path2D]()
+  private val closedPaths = new IdentityHashMap[List[PathElement], Path2D]()
+
+  private var onlySolidPaints = true
+
+  /** The number of instructions in this display list. */
+  def size: Int = count
+
+  /** True if every instruction is drawn with a solid color rather than a
+    * gradient, and nothing is drawn into a layer.
+    */
+  def hasOnlySolidPaints: Boolean = onlySolidPaints
+
+  /** Append an instruction to the end of this display list. */
+  def add(reified: Reified): this.type = {
+    import Reified.*
+
+    reified match {
+      case FillRect(tx, fill, width, height) =>
+        addFill(FillRectOp, tx, fill, width, height, null)
+      case StrokeRect(tx, stroke, width, height) =>
+        addStroke(StrokeRectOp, tx, stroke, width, height, null)
+
+      case FillCircle(tx, fill, diameter) =>
+        addFill(FillCircleOp, tx, fill, diameter, 0.0, null)
+      case StrokeCircle(tx, stroke, diameter) =>
+        addStroke(StrokeCircleOp, tx, stroke, diameter, 0.0, null)
+
+      case FillPolygon(tx, fill, points) =>
+        addFill(FillPolygonOp, tx, fill, 0.0, 0.0, toPolygon(points))
+      case StrokePolygon(tx, stroke, points) =>
+        addStroke(StrokePolygonOp, tx, stroke, 0.0, 0.0, toPolygon(points))
+
+      case FillClosedPath(tx, fill, elements) =>
+        addFill(
+          FillShapeOp,
+          tx,
+          fill,
+          0.0,
+          0.0,
+          closedPath(elements)
+        )
+      case StrokeClosedPath(tx, stroke, elements) =>
+        addStroke(
+          StrokeShapeOp,
+          tx,
+          stroke,
+          0.0,
+          0.0,
+          closedPath(elements)
+        )
+
+      case FillOpenPath(tx, fill, elements) =>
+        addFill(
+          FillShapeOp,
+          tx,
+          fill,
+          0.0,
+          0.0,
+          openPath(elements)
+        )
+      case StrokeOpenPath(tx, stroke, elements) =>
+        addStroke(
+          StrokeShapeOp,
+          tx,
+          stroke,
+          0.0,
+          0.0,
+          openPath(elements)
+        )
+
+      case Bitmap(tx, image) =>
+        append(
+          BitmapOp,
+          Tx.verticalReflection.andThen(tx),
+          -(image.getWidth() / 2).toDouble,
+          -(image.getHeight() / 2).toDouble,
+          null,
+          null,
+          image
+        )
+
+      // Text without a stroke draws nothing. See Graphics2DGraphicsContext.
+      case Text(tx, _, stroke, text, font, bounds) =>
+        stroke.foreach { s =>
+          setStroke(s)
+          append(
+            TextOp,
+            Tx.verticalReflection.andThen(tx),
+            -bounds.getCenterX(),
+            -bounds.getCenterY(),
+            lastStrokePaint,
+            lastAwtStroke,
+            TextRun(text, Java2D.toAwtFont(font), bounds)
+          )
+        }
+
+      case Layer(tx, blendMode, bounds, reified) =>
+        append(
+          LayerOp,
+          tx,
+          0.0,
+          0.0,
+          null,
+          null,
+          LayerGroup(tx, blendMode, bounds, DisplayList(reified))
+        )
+        // Blending reads what is beneath the layer, so the layer cannot be
+        // split into tiles
+        onlySolidPaints = false
+    }
+
+    this
+  }
+
+  /** Append all the instructions to the end of this display list. */
+  def addAll(reified: IterableOnce[Reified]): this.type = {
+    reified.iterator.foreach(add)
+    this
+  }
+
+  /** Render all the instructions in this display list. As with
+    * [[Reified.render]], finalTransform is applied after each instruction's
+    * transform.
+    */
+  def render(gc: Graphics2D, finalTransform: Tx): Unit =
+    render(gc, finalTransform, null)
+
+  /** Render only the instructions that may draw inside region, which is given
+    * in device space (the coordinates after the Graphics2D's own transform has
+    * been applied). Instructions that cannot touch region are skipped.
+    *
+    * Culling is conservative, so every pixel inside region is the same as if
+    * all the instructions were rendered. Pixels outside region may or may not
+    * be drawn, so set a clip on gc if that matters.
+    */
+  def render(gc: Graphics2D, finalTransform: Tx, region: Shape): Unit = {
+    val original = gc.getTransform()
+    val tx = new AffineTransform()
+    val b = finalTransform.elements
+
+    var idx = 0
+    while idx < count do {
+      // The same arithmetic as Transform.andThen, so the result is identical
+      val t = idx * 6
+      val a0 = transforms(t)
+      val a1 = transforms(t + 1)
+      val a2 = transforms(t + 2)
+      val a3 = transforms(t + 3)
+      val a4 = transforms(t + 4)
+      val a5 = transforms(t + 5)
+      tx.setTransform(
+        b(0) * a0 + b(1) * a3,
+        b(3) * a0 + b(4) * a3,
+        b(0) * a1 + b(1) * a4,
+        b(3) * a1 + b(4) * a4,
+        b(0) * a2 + b(1) * a5 + b(2),
+        b(3) * a2 + b(4) * a5 + b(5)
+      )
+
+      if region == null || touches(idx, original, tx, region) then
+        draw(gc, original, tx, idx, finalTransform)
+
+      idx = idx + 1
+    }
+
+    gc.setTransform(original)
+  }
+
+  /** True if the bounds of instruction idx, transformed by tx and then
+    * original, intersect region.
+    */
+  private def touches(
+      idx: Int,
+      original: AffineTransform,
+      tx: AffineTransform,
+      region: Shape
+  ): Boolean = {
+    // The transform from the instruction's coordinates to device space
+    val m00 =
+      original.getScaleX() * tx.getScaleX() + original.getShearX() * tx
+        .getShearY()
+    val m01 =
+      original.getScaleX() * tx.getShearX() + original.getShearX() * tx
+        .getScaleY()
+    val m02 =
+      original.getScaleX() * tx.getTranslateX() + original.getShearX() * tx
+        .getTranslateY() + original.getTranslateX()
+    val m10 =
+      original.getShearY() * tx.getScaleX() + original.getScaleY() * tx
+        .getShearY()
+    val m11 =
+      original.getShearY() * tx.getShearX() + original.getScaleY() * tx
+        .getScaleY()
+    val m12 =
+      original.getShearY() * tx.getTranslateX() + original.getScaleY() * tx
+        .getTranslateY() + original.getTranslateY()
+
+    val i = idx * 4
+    val x0 = bounds(i)
+    val y0 = bounds(i + 1)
+    val x1 = bounds(i + 2)
+    val y1 = bounds(i + 3)
+
+    // The bounding box of the transformed corners, by interval arithmetic
+    val minX =
+      m02 + Math.min(m00 * x0, m00 * x1) + Math.min(m01 * y0, m01 * y1)
+    val maxX =
+      m02 + Math.max(m00 * x0, m00 * x1) + Math.max(m01 * y0, m01 * y1)
+    val minY =
+      m12 + Math.min(m10 * x0, m10 * x1) + Math.min(m11 * y0, m11 * y1)
+    val maxY =
+      m12 + Math.max(m10 * x0, m10 * x1) + Math.max(m11 * y0, m11 * y1)
+
+    // Antialiasing and pixel snapping can touch pixels just outside the
+    // geometry, so allow a small margin
+    val x = minX - DeviceMargin
+    val y = minY - DeviceMargin
+    val w = maxX - minX + 2 * DeviceMargin
+    val h = maxY - minY + 2 * DeviceMargin
+    region.intersects(x, y, w, h)
+  }
+
+  private def draw(
+      gc: Graphics2D,
+      original: AffineTransform,
+      tx: AffineTransform,
+      idx: Int,
+      finalTransform: Tx
+  ): Unit = {
+    gc.setTransform(original)
+    gc.transform(tx)
+
+    val x = operands(idx * 2)
+    val y = operands(idx * 2 + 1)
+    val stroke = strokes(idx)
+    if stroke != null then gc.setStroke(stroke)
+    val paint = paints(idx)
+    if paint != null then gc.setPaint(paint)
+
+    opcodes(idx) match {
+      case FillRectOp =>
+        val w = x.toInt
+        val h = y.toInt
+        gc.fillRect(-(w / 2), -(h / 2), w, h)
+      case StrokeRectOp =>
+        val w = x.toInt
+        val h = y.toInt
+        gc.drawRect(-(w / 2), -(h / 2), w, h)
+
+      case FillCircleOp =>
+        val r = (x / 2.0).toInt
+        val d = x.toInt
+        gc.fillOval(-r, -r, d, d)
+      case StrokeCircleOp =>
+        val r = (x / 2.0).toInt
+        val d = x.toInt
+        gc.drawOval(-r, -r, d, d)
+
+      case FillPolygonOp =>
+        gc.fillPolygon(shapes(idx).asInstanceOf[Polygon])
+      case StrokePolygonOp =>
+        gc.drawPolygon(shapes(idx).asInstanceOf[Polygon])
+
+      case FillShapeOp =>
+        gc.fill(shapes(idx).asInstanceOf[Path2D])
+      case StrokeShapeOp =>
+        gc.draw(shapes(idx).asInstanceOf[Path2D])
+
+      case BitmapOp =>
+        gc.drawImage(
+          shapes(idx).asInstanceOf[BufferedImage],
+          x.toInt,
+          y.toInt,
+          null
+        )
+
+      case TextOp =>
+        val run = shapes(idx).asInstanceOf[TextRun]
+        gc.setFont(run.font)
+        gc.drawString(run.text, x.toFloat, y.toFloat)
+
+      case LayerOp =>
+        val group = shapes(idx).asInstanceOf[LayerGroup]
+        gc.setTransform(original)
+        Graphics2DGraphicsContext.layer(gc)(
+          group.transform.andThen(finalTransform),
+          group.blendMode,
+          group.bounds
+        )(layer => group.contents.render(layer, finalTransform))
+    }
+  }
+
+  private def addFill(
+      opcode: Byte,
+      tx: Tx,
+      fill: Fill,
+      x: Double,
+      y: Double,
+      shape: AnyRef
+  ): Unit = {
+    if fill ne lastFill then {
+      lastFill = fill
+      lastFillPaint = Java2D.toAwtPaint(fill)
+    }
+    append(opcode, tx, x, y, lastFillPaint, null, shape)
+  }
+
+  private def addStroke(
+      opcode: Byte,
+      tx: Tx,
+      stroke: Stroke,
+      x: Double,
+      y: Double,
+      shape: AnyRef
+  ): Unit = {
+    setStroke(stroke)
+    append(opcode, tx, x, y, lastStrokePaint, lastAwtStroke, shape)
+  }
+
+  private def openPath(elements: List[PathElement]): Path2D = {
+    val path = openPaths.get(elements)
+    if path != null then path
+    else {
+      val converted = Java2D.toPath2D(elements)
+      openPaths.put(elements, converted)
+      converted
+    }
+  }
+
+  private def closedPath(elements: List[PathElement]): Path2D = {
+    val path = closedPaths.get(elements)
+    if path != null then path
+    else {
+      val converted = Java2D.toPath2D(elements)
+      converted.closePath()
+      closedPaths.put(elements, converted)
+      converted
+    }
+  }
+
+  private def setStroke(stroke: Stroke): Unit =
+    if stroke ne lastStroke then {
+      lastStroke = stroke
+      lastStrokePaint = Java2D.toAwtPaint(stroke)
+      lastAwtStroke = Java2D.toAwtStroke(stroke)
+    }
+
+  private def append(
+      opcode: Byte,
+      tx: Tx,
+      x: Double,
+      y: Double,
+      paint: Paint,
+      stroke: BasicStroke,
+      shape: AnyRef
+  ): Unit = {
+    if count == opcodes.length then grow()
+
+    opcodes(count) = opcode
+    System.arraycopy(tx.elements, 0, transforms, count * 6, 6)
+    operands(count * 2) = x
+    operands(count * 2 + 1) = y
+    paints(count) = paint
+    strokes(count) = stroke
+    shapes(count) = shape
+    onlySolidPaints =
+      onlySolidPaints && (paint == null || paint.isInstanceOf[java.awt.Color])
+    setBounds(count, opcode, x, y, stroke, shape)
+    count = count + 1
+  }
+
+  private def setBounds(
+      idx: Int,
+      opcode: Byte,
+      x: Double,
+      y: Double,
+      stroke: BasicStroke,
+      shape: AnyRef
+  ): Unit = {
+    var minX = 0.0
+    var minY = 0.0
+    var maxX = 0.0
+    var maxY = 0.0
+
+    opcode match {
+      case FillRectOp | StrokeRectOp =>
+        // Integer truncation when drawing can shift the rectangle by a unit
+        maxX = Math.abs(x) / 2.0 + 1.0
+        maxY = Math.abs(y) / 2.0 + 1.0
+        minX = -maxX
+        minY = -maxY
+
+      case FillCircleOp | StrokeCircleOp =>
+        maxX = Math.abs(x) / 2.0 + 1.0
+        maxY = maxX
+        minX = -maxX
+        minY = -maxY
+
+      case FillPolygonOp | StrokePolygonOp | FillShapeOp | StrokeShapeOp =>
+        // The bounds of a path include its control points, which contain the
+        // curve
+        val r = shape.asInstanceOf[Shape].getBounds2D()
+        minX = r.getMinX()
+        minY = r.getMinY()
+        maxX = r.getMaxX()
+        maxY = r.getMaxY()
+
+      case BitmapOp =>
+        val image = shape.asInstanceOf[BufferedImage]
+        minX = x.toInt.toDouble
+        minY = y.toInt.toDouble
+        maxX = minX + image.getWidth()
+        maxY = minY + image.getHeight()
+
+      case LayerOp =>
+        val bb = shape.asInstanceOf[LayerGroup].bounds
+        minX = bb.left
+        minY = bb.bottom
+        maxX = bb.right
+        maxY = bb.top
+
+      case TextOp =>
+        // Glyphs can extend beyond their logical bounds, for example with
+        // italic fonts, so allow a margin of the text's height
+        val r = shape.asInstanceOf[TextRun].bounds
+        val margin = r.getHeight()
+        minX = x + r.getMinX() - margin
+        minY = y + r.getMinY() - margin
+        maxX = x + r.getMaxX() + margin
+        maxY = y + r.getMaxY() + margin
+    }
+
+    // Text ignores the stroke, but the margin above already covers it
+    if stroke != null && opcode != TextOp then {
+      val extent = strokeExtent(stroke)
+      minX = minX - extent
+      minY = minY - extent
+      maxX = maxX + extent
+      maxY = maxY + extent
+    }
+
+    val i = idx * 4
+    bounds(i) = minX
+    bounds(i + 1) = minY
+    bounds(i + 2) = maxX
+    bounds(i + 3) = maxY
+  }
+
+  private def grow(): Unit = {
+    val capacity = opcodes.length * 2
+    opcodes = Arrays.copyOf(opcodes, capacity)
+    transforms = Arrays.copyOf(transforms, capacity * 6)
+    operands = Arrays.copyOf(operands, capacity * 2)
+    paints = Arrays.copyOf(paints, capacity)
+    strokes = Arrays.copyOf(strokes, capacity)
+    shapes = Arrays.copyOf(shapes, capacity)
+    bounds = Arrays.copyOf(bounds, capacity * 4)
+  }
+}
+object DisplayList {
+
+  /** Create a display list containing all the given instructions. */
+  def apply(reified: IterableOnce[Reified]): DisplayList = {
+    val size = reified.knownSize
+    new DisplayList(if size > 0 then size else 16).addAll(reified)
+  }
+
+  private final val FillRectOp: Byte = 0
+  private final val StrokeRectOp: Byte = 1
+  private final val FillCircleOp: Byte = 2
+  private final val StrokeCircleOp: Byte = 3
+  private final val FillPolygonOp: Byte = 4
+  private final val StrokePolygonOp: Byte = 5
+  private final val FillShapeOp: Byte = 6
+  private final val StrokeShapeOp: Byte = 7
+  private final val BitmapOp: Byte = 8
+  private final val TextOp: Byte = 9
+  private final val LayerOp: Byte = 10
+
+  /** The margin, in pixels, added to the device space bounds of each
+    * instruction when culling.
+    */
+  private final val DeviceMargin = 2.0
+
+  private final case class LayerGroup(
+      transform: Tx,
+      blendMode: BlendMode,
+      bounds: BoundingBox,
+      contents: DisplayList
+  )
+
+  private final case class TextRun(
+      text: String,
+      font: AwtFont,
+      bounds: Rectangle2D
+  )
+
+  /** How far a stroke can extend beyond the geometry it outlines. Miter joins
+    * can extend up to half the line width times the miter limit, and square
+    * caps up to half the line width times the square root of two.
+    */
+  private def strokeExtent(stroke: BasicStroke): Double = {
+    val factor =
+      if stroke.getLineJoin() == BasicStroke.JOIN_MITER then
+        Math.max(stroke.getMiterLimit().toDouble, Math.sqrt(2.0))
+      else Math.sqrt(2.0)
+
+    stroke.getLineWidth() / 2.0 * factor
+  }
+
+  private def toPolygon(points: Array[doodle.core.Point]): Polygon = {
+    val xs = new Array[Int](points.length)
+    val ys = new Array[Int](points.length)
+    var idx = 0
+    while idx < points.length do {
+      xs(idx) = points(idx).x.toInt
+      ys(idx) = points(idx).y.toInt
+      idx = idx + 1
+    }
+    new Polygon(xs, ys, points.length)
+  }
+}
@@ -19,8 +19,10 @@ package java2d
 package algebra
 package reified
 
+import doodle.algebra.generic.BlendMode
 import doodle.algebra.generic.Fill
 import doodle.algebra.generic.Stroke
+import doodle.core.BoundingBox
 import doodle.core.PathElement
 import doodle.core.Point
 import doodle.core.Transform
@@ -77,4 +79,14 @@ trait GraphicsContext[A] {
       font: Font,
       bounds: Rectangle2D
   ): Unit
+
+  /** Draw into a layer covering bounds, transformed by transform, and blend the
+    * layer with what has already been drawn. draw is called with the graphics
+    * context for the layer.
+    */
+  def layer(
+      gc: A
+  )(transform: Transform, blendMode: BlendMode, bounds: BoundingBox)(
+      draw: A => Unit
+  ): Unit
 }
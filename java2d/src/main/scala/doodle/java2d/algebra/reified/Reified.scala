@@ -19,8 +19,10 @@ package java2d
 package algebra
 package reified
 
+import doodle.algebra.generic.BlendMode
 import doodle.algebra.generic.Fill
 import doodle.algebra.generic.Stroke
+import doodle.core.BoundingBox
 import doodle.core.PathElement
 import doodle.core.Point
 import doodle.core.Transform as Tx
@@ -55,6 +57,10 @@ import java.awt.image.BufferedImage
   *     on Graphics2D adds the transform to the already existing transforms.
   *     (However, the API lacks methods to undo these operations, which makes it
   *     a bit limited.)
+  *
+  * The one exception is `Layer`, which holds the instructions for a picture
+  * that must be drawn into its own layer before it is blended with what is
+  * beneath it.
   */
 sealed abstract class Reified extends Product with Serializable {
   import Reified.*
@@ -98,6 +104,11 @@ sealed abstract class Reified extends Product with Serializable {
 
       case Text(tx, _, stroke, text, font, bounds) =>
         ctx.text(gc)(tx.andThen(finalTransform), stroke, text, font, bounds)
+
+      case Layer(tx, blendMode, bounds, reified) =>
+        ctx.layer(gc)(tx.andThen(finalTransform), blendMode, bounds) { layer =>
+          reified.foreach(_.render(layer, finalTransform))
+        }
     }
 }
 object Reified {
@@ -172,6 +183,18 @@ object Reified {
       bounds: Rectangle2D
   ) extends Reified
 
+  /** The instructions for a picture, with the bounding box given by bounds in
+    * the coordinates of transform, that are drawn into a layer and then blended
+    * using blendMode. The instructions have their own transforms, which already
+    * include transform.
+    */
+  final case class Layer(
+      transform: Tx,
+      blendMode: BlendMode,
+      bounds: BoundingBox,
+      reified: List[Reified]
+  ) extends Reified
+
   def fillRect(
       transform: Tx,
       fill: Fill,
@@ -238,4 +261,12 @@ object Reified {
       bounds: Rectangle2D
   ): Reified =
     Text(transform, fill, stroke, text, font, bounds)
+
+  def layer(
+      transform: Tx,
+      blendMode: BlendMode,
+      bounds: BoundingBox,
+      reified: List[Reified]
+  ): Reified =
+    Layer(transform, blendMode, bounds, reified)
 }
@@ -18,38 +18,84 @@ package doodle
 package java2d
 package effect
 
+import cats.effect.Deferred
 import cats.effect.IO
 import cats.effect.kernel.Resource
+import cats.effect.std.Mutex
 import cats.syntax.all.*
 import doodle.core.Point
 import fs2.*
 import fs2.concurrent.Topic
 
+import java.awt.image.BufferedImage
 import javax.swing.SwingUtilities
-import scala.concurrent.duration.*
-import scala.reflect.ClassTag
 
 /** A [[Canvas]] is an area on the screen to which Pictures can be drawn.
+  *
+  * A Canvas is usually a window, but can also be headless. See
+  * [[Canvas.headless]].
   */
-final class Canvas private (
+final class Canvas private[effect] (surface: CanvasSurface) {
+  val closed: IO[Unit] = surface.closed
+
+  /** The stream that runs everything the Canvas' internals need to work. You
+    * must make sure this is executed if you create a Canvas by hand.
+    */
+  val stream: Stream[IO, Nothing] = surface.stream
+
+  val redraw: Stream[IO, Int] = surface.redraw
+  val mouseClick: Stream[IO, Point] = surface.mouseClick
+  val mouseMove: Stream[IO, Point] = surface.mouseMove
+
+  /** The [[HeadlessCanvas]] this Canvas draws to, if it is headless, giving
+    * access to its frames and simulated mouse events.
+    */
+  def headless: Option[HeadlessCanvas] = surface.headless
+
+  /** Draw the given Picture to this [[Canvas]].
+    */
+  def render[A](picture: Picture[A]): IO[A] =
+    surface.render(picture)
+
+  def close(): IO[Boolean] =
+    surface.close()
+}
+
+/** What a [[Canvas]] draws on: a window, or an offscreen image. */
+private[effect] trait CanvasSurface {
+
+  /** IO that evaluates when the surface has been closed. */
+  def closed: IO[Unit]
+  def stream: Stream[IO, Nothing]
+  def headless: Option[HeadlessCanvas]
+  def redraw: Stream[IO, Int]
+  def mouseClick: Stream[IO, Point]
+  def mouseMove: Stream[IO, Point]
+  def render[A](picture: Picture[A]): IO[A]
+  def close(): IO[Boolean]
+}
+
+/** A [[CanvasSurface]] that draws in a window on the screen. */
+private[effect] final class WindowSurface(
     frame: Frame,
     redrawTopic: Topic[IO, Int],
     mouseClickTopic: Topic[IO, Point],
     mouseMoveTopic: Topic[IO, Point]
-) {
+) extends CanvasSurface {
 
   /** Construct the type of event queue we use to send events from Swing to Cats
     * Effect land. We choose a circular buffer queue so that we consume bounded
     * memory if the Cats Effect side does not pull from the queue (which will be
     * a common case), and neither does it block if the queue's capacity is
-    * reached.
+    * reached. The queue is lock-free, so the Swing thread never contends with
+    * the Cats Effect side when adding an event.
     */
-  private def eventQueue[A: ClassTag]: BlockingCircularQueue[A] =
-    BlockingCircularQueue(8)
+  private def eventQueue[A]: EventRing[A] =
+    EventRing(8)
 
-  private val redrawQueue: BlockingCircularQueue[Int] = eventQueue
-  private val mouseClickQueue: BlockingCircularQueue[Point] = eventQueue
-  private val mouseMoveQueue: BlockingCircularQueue[Point] = eventQueue
+  private val redrawQueue: EventRing[Int] = eventQueue
+  private val mouseClickQueue: EventRing[Point] = eventQueue
+  private val mouseMoveQueue: EventRing[Point] = eventQueue
 
   private var window: Java2dWindow = _
 
@@ -58,7 +104,7 @@ final class Canvas private (
   SwingUtilities.invokeAndWait(() => {
     window = new Java2dWindow(
       frame,
-      16.67.milliseconds,
+      frame.pacing.frameDelay,
       redrawQueue,
       mouseClickQueue,
       mouseMoveQueue
@@ -69,20 +115,12 @@ final class Canvas private (
 
   val closed: IO[Unit] = windowClosed.void
 
-  def pump[A](
-      queue: BlockingCircularQueue[A],
-      topic: Topic[IO, A]
-  ): Stream[IO, A] =
-    Stream.repeatEval(IO.interruptible(queue.take())).through(topic.publish)
-
-  /** The stream that runs everything the Canvas' internals need to work. You
-    * must make sure this is executed if you create a Canvas by hand.
-    */
   val stream: Stream[IO, Nothing] = {
-    val redraw = pump(redrawQueue, redrawTopic).drain
+    val redraw = redrawQueue.stream.through(redrawTopic.publish).drain
     val mouseClick =
-      pump(mouseClickQueue, mouseClickTopic).drain
-    val mouseMove = pump(mouseMoveQueue, mouseMoveTopic).drain
+      mouseClickQueue.stream.through(mouseClickTopic.publish).drain
+    val mouseMove =
+      mouseMoveQueue.stream.through(mouseMoveTopic.publish).drain
     val closeStream = Stream
       .eval(
         windowClosed >>
@@ -97,6 +135,8 @@ final class Canvas private (
     redraw.merge(mouseClick).merge(mouseMove).merge(closeStream)
   }
 
+  val headless: Option[HeadlessCanvas] = None
+
   private val interruptWhen = closed.attempt
   val redraw: Stream[IO, Int] =
     redrawTopic.subscribe(4).interruptWhen(interruptWhen)
@@ -106,13 +146,10 @@ final class Canvas private (
   val mouseMove: Stream[IO, Point] =
     mouseMoveTopic.subscribe(4).interruptWhen(interruptWhen)
 
-  /** Draw the given Picture to this [[Canvas]].
-    */
-  def render[A](picture: Picture[A]): IO[A] = {
-    val f = window.render(picture)
-
-    IO.fromCompletableFuture(IO(f))
-  }
+  def render[A](picture: Picture[A]): IO[A] =
+    IO.fromCompletableFuture(
+      IO.executionContext.map(ec => window.render(picture, ec.execute(_)))
+    )
 
   def close(): IO[Boolean] = {
     IO(window.close()) >>
@@ -130,7 +167,9 @@ object Canvas {
   def apply(frame: Frame): Resource[IO, Canvas] = {
     (Topic[IO, Int], Topic[IO, Point], Topic[IO, Point])
       .mapN { (redrawTopic, mouseClickTopic, mouseMoveTopic) =>
-        new Canvas(frame, redrawTopic, mouseClickTopic, mouseMoveTopic)
+        new Canvas(
+          WindowSurface(frame, redrawTopic, mouseClickTopic, mouseMoveTopic)
+        )
       }
       .toResource
       .flatMap(canvas => canvas.stream.compile.drain.background.as(canvas))
@@ -140,4 +179,23 @@ object Canvas {
         )
       )
   }
+
+  /** Creates a headless canvas, which draws into an offscreen image instead of
+    * a window, from the given Frame. See [[HeadlessCanvas]].
+    *
+    * The Resource closes the canvas when it is released. The Frame's
+    * [[BlockingBehavior]] does not apply, as there is no window to wait for.
+    */
+  def headless(frame: Frame): Resource[IO, HeadlessCanvas] =
+    (
+      Topic[IO, BufferedImage],
+      Topic[IO, Point],
+      Topic[IO, Point],
+      Mutex[IO],
+      Deferred[IO, Unit]
+    ).mapN(new HeadlessCanvas(frame, _, _, _, _, _))
+      .toResource
+      .flatMap(headless =>
+        Resource.make(IO.pure(headless))(_.canvas.close().void)
+      )
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle.java2d.effect
+
+import cats.effect.IO
+import fs2.Stream
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.AtomicReference
+import java.util.concurrent.atomic.AtomicReferenceArray
+import java.util.concurrent.locks.LockSupport
+
+/** A lock-free single-producer single-consumer queue with finite capacity where
+  * writes always succeed.
+  *
+  * Like [[BlockingCircularQueue]], writes overwrite the oldest values when the
+  * queue is full, so the producer never waits on the consumer. This is
+  * appropriate for sending events from the Swing thread to Cats Effect, where
+  * getting the latest data is more important than getting all the data.
+  *
+  * Only one thread may call [[add]], and only one consumer may read, using
+  * either [[take]], [[poll]], or [[stream]]. The consumer can block a thread
+  * with [[take]] or, with [[stream]], wait asynchronously without holding a
+  * thread.
+  */
+final class EventRing[A](capacity: Int) {
+  require(capacity > 0, s"The capacity must be positive but was $capacity")
+
+  // Sequence number n is stored in slot n % capacity. Each slot has a stamp
+  // that is 2n + 1 while sequence number n is being written, and 2n + 2 once it
+  // has been written. The consumer checks the stamp on either side of reading
+  // a value to detect if the producer overwrote it during the read.
+  private val values: AtomicReferenceArray[Any] =
+    new AtomicReferenceArray(capacity)
+  private val stamps: AtomicLongArray = new AtomicLongArray(capacity)
+
+  // The sequence number of the next value the producer will write
+  private val head = new AtomicLong(0L)
+  // The sequence number of the next value the consumer will read. Only
+  // accessed by the consumer, though an asynchronous consumer may move between
+  // threads.
+  @volatile private var tail = 0L
+
+  // The number of values overwritten before the consumer read them. Only
+  // written by the consumer.
+  @volatile private var overwritten = 0L
+
+  // The consumer waiting for a value: either a Thread parked in take or the
+  // callback of an asynchronous take. Null if no consumer is waiting.
+  private val waiter: AtomicReference[AnyRef] = new AtomicReference(null)
+
+  def add(e: A): Boolean = {
+    val n = head.get()
+    val slot = (n % capacity).toInt
+    stamps.set(slot, 2 * n + 1)
+    values.set(slot, e)
+    stamps.set(slot, 2 * n + 2)
+    head.set(n + 1)
+
+    // Only pay for an atomic update when a consumer is waiting
+    if waiter.get() != null then wake(waiter.getAndSet(null))
+
+    true
+  }
+
+  /** Take the oldest value, returning `EventRing.Empty` if there is none. */
+  private def next(): Any = {
+    var result: Any = EventRing.Empty
+    var done = false
+    while !done do {
+      val h = head.get()
+      if h == tail then done = true
+      else {
+        // Skip values that have been overwritten
+        if h - tail > capacity then {
+          overwritten = overwritten + (h - capacity - tail)
+          tail = h - capacity
+        }
+
+        val slot = (tail % capacity).toInt
+        val written = 2 * tail + 2
+        if stamps.get(slot) == written then {
+          val value = values.get(slot)
+          if stamps.get(slot) == written then {
+            tail = tail + 1
+            result = value
+            done = true
+          }
+        }
+        // Otherwise the producer has overwritten the value; try again with the
+        // new head
+      }
+    }
+
+    result
+  }
+
+  private def wake(w: AnyRef): Unit =
+    w match {
+      case null      => ()
+      case t: Thread => LockSupport.unpark(t)
+      case cb: Function1[?, ?] =>
+        cb.asInstanceOf[Either[Throwable, Unit] => Unit](Right(()))
+    }
+
+  /** The number of values that were overwritten before they were read. This is
+    * updated as the consumer reads, so values that have been overwritten but
+    * not yet skipped over by the consumer are not counted.
+    */
+  def dropped: Long = overwritten
+
+  /** Take the oldest value if there is one. Never blocks. */
+  def poll(): Option[A] =
+    next() match {
+      case EventRing.Empty => None
+      case value           => Some(value.asInstanceOf[A])
+    }
+
+  /** Take the oldest value, parking the calling thread until one is available.
+    * Throws `InterruptedException` if the thread is interrupted while waiting.
+    */
+  def take(): A = {
+    var value = next()
+    while value == EventRing.Empty do {
+      waiter.set(Thread.currentThread())
+      // Check again now we're registered, as a value may have been added
+      // before the producer could see us waiting
+      value = next()
+      if value == EventRing.Empty then {
+        LockSupport.park(this)
+        if Thread.interrupted() then {
+          waiter.set(null)
+          throw new InterruptedException()
+        }
+        value = next()
+      }
+      waiter.set(null)
+    }
+
+    value.asInstanceOf[A]
+  }
+
+  /** Wait, without blocking a thread, until a value is available. */
+  private val available: IO[Unit] =
+    IO.async[Unit] { cb =>
+      IO {
+        waiter.set(cb)
+        // As in take, check again now we're registered. If the producer has
+        // not already woken us we must complete the callback ourselves.
+        if head.get() != tail && waiter.compareAndSet(cb, null) then
+          cb(Right(()))
+
+        Some(IO(waiter.compareAndSet(cb, null)).void)
+      }
+    }
+
+  private val takeAsync: IO[A] =
+    IO(next()).flatMap {
+      case EventRing.Empty => available >> takeAsync
+      case value           => IO.pure(value.asInstanceOf[A])
+    }
+
+  /** A stream of the values in this queue, in order. Waiting for a value does
+    * not block a thread. As with [[take]] only one stream should be consuming
+    * from this queue.
+    */
+  def stream: Stream[IO, A] =
+    Stream.repeatEval(takeAsync)
+}
+object EventRing {
+
+  /** Marks that there is no value available. */
+  private object Empty
+}
@@ -21,6 +21,8 @@ package effect
 import cats.effect.IO
 import doodle.core.Color
 
+import scala.concurrent.duration.*
+
 /** The [[Frame]] specifies how to create a [[Canvas]]. The idiomatic way to
   * create a `Frame` is to start with `Frame.default` and then call the builder
   * methods starting with `with`.
@@ -37,7 +39,11 @@ final case class Frame(
     center: Center,
     background: Option[Color],
     redraw: Redraw,
-    blockingBehavior: BlockingBehavior
+    blockingBehavior: BlockingBehavior,
+    retention: Retention = Retention.RetainPictures,
+    pacing: Pacing = Pacing.Fixed(60.0),
+    metrics: Instrumentation = Instrumentation.Disabled,
+    tiledRendering: Boolean = false
 ) {
 
   /** Size the canvas with the given fixed dimensions. */
@@ -82,6 +88,67 @@ final case class Frame(
 
   def withBlockingBehavior(blockingBehavior: BlockingBehavior): Frame =
     this.copy(blockingBehavior = blockingBehavior)
+
+  /** Draw each picture once into an offscreen image, and repaint the canvas by
+    * copying that image. See [[Retention.BackingStore]].
+    */
+  def withBackingStore: Frame =
+    this.copy(retention = Retention.BackingStore)
+
+  /** Keep each picture and draw them all when the canvas is repainted. See
+    * [[Retention.RetainPictures]].
+    */
+  def withRetainedPictures: Frame =
+    this.copy(retention = Retention.RetainPictures)
+
+  /** Redraw the canvas at the given fixed rate, which must be positive. */
+  def withFrameRate(framesPerSecond: Double): Frame = {
+    require(
+      framesPerSecond > 0.0,
+      s"The frame rate must be positive but was $framesPerSecond"
+    )
+    this.copy(pacing = Pacing.Fixed(framesPerSecond))
+  }
+
+  /** Redraw the canvas no faster than the given rate, slowing down when
+    * pictures take longer than a frame to draw. See [[Pacing.Adaptive]]. The
+    * rate must be positive.
+    */
+  def withAdaptiveFrameRate(maxFramesPerSecond: Double = 60.0): Frame = {
+    require(
+      maxFramesPerSecond > 0.0,
+      s"The frame rate must be positive but was $maxFramesPerSecond"
+    )
+    this.copy(pacing = Pacing.Adaptive(maxFramesPerSecond))
+  }
+
+  /** Publish [[RenderMetrics]] for each frame or picture rendered to the
+    * recorder.
+    */
+  def withMetrics(recorder: MetricsRecorder): Frame =
+    this.copy(metrics = Instrumentation.Metrics(recorder))
+
+  /** Publish [[RenderMetrics]] to the recorder, and also record them as JFR
+    * events.
+    */
+  def withMetricsAndJfr(recorder: MetricsRecorder): Frame =
+    this.copy(metrics = Instrumentation.MetricsAndJfr(recorder))
+
+  /** Do not record [[RenderMetrics]]. */
+  def withoutMetrics: Frame =
+    this.copy(metrics = Instrumentation.Disabled)
+
+  /** When rendering to a file or `BufferedImage`, split large images into tiles
+    * that are rasterized in parallel. See [[Java2d.tiledRenderingThreshold]].
+    * Antialiased edges of curves that cross between tiles can differ slightly
+    * from a single threaded render. Tiling is off by default.
+    */
+  def withTiledRendering: Frame =
+    this.copy(tiledRendering = true)
+
+  /** Rasterize every image on a single thread. This is the default. */
+  def withoutTiledRendering: Frame =
+    this.copy(tiledRendering = false)
 }
 object Frame {
   val default =
@@ -91,7 +158,11 @@ object Frame {
       center = Center.centeredOnPicture,
       background = Some(Color.white),
       redraw = Redraw.clearToBackground,
-      blockingBehavior = BlockingBehavior.BlockUntilWindowClosed
+      blockingBehavior = BlockingBehavior.BlockUntilWindowClosed,
+      retention = Retention.RetainPictures,
+      pacing = Pacing.Fixed(60.0),
+      metrics = Instrumentation.Disabled,
+      tiledRendering = false
     )
 }
 
@@ -99,3 +170,54 @@ enum BlockingBehavior(val maybeBlock: Canvas => IO[Unit]) {
   case BlockUntilWindowClosed extends BlockingBehavior(_.closed)
   case DoNotBlock extends BlockingBehavior(canvas => IO.unit)
 }
+
+/** How a [[Canvas]] keeps the pictures it has drawn, so it can repaint them. */
+enum Retention {
+
+  /** Keep the pictures and draw them when the canvas is repainted. If the
+    * [[Redraw]] is not opaque, every picture drawn so far is kept and drawn, so
+    * the cost of a repaint grows with the number of pictures.
+    */
+  case RetainPictures
+
+  /** Draw each picture, after clearing as specified by the [[Redraw]], into an
+    * offscreen image once when it arrives, and repaint the canvas by copying
+    * that image. Pictures are not kept, so the cost of a repaint and the memory
+    * used do not depend on how many pictures have been drawn.
+    */
+  case BackingStore
+}
+
+/** How often a [[Canvas]] redraws. Pictures are drawn, and redraw events sent,
+  * at most once per frame. When several pictures arrive within one frame only
+  * the last is drawn if the [[Redraw]] is opaque, as the others would be
+  * overdrawn.
+  */
+enum Pacing {
+
+  /** Redraw at a fixed rate. */
+  case Fixed(framesPerSecond: Double)
+
+  /** Redraw at up to the given rate, but leave a frame at least half as long
+    * again as the average time taken to draw a picture, so slow pictures do not
+    * fall behind.
+    */
+  case Adaptive(maxFramesPerSecond: Double)
+
+  /** The delay between the first two frames. */
+  def frameDelay: FiniteDuration =
+    this match {
+      case Fixed(fps)    => (1000.0 / fps).milliseconds
+      case Adaptive(fps) => (1000.0 / fps).milliseconds
+    }
+
+  /** The delay, in milliseconds, until the next frame given the average time,
+    * in milliseconds, taken to draw a picture.
+    */
+  def nextFrameDelay(renderMillis: Double): Int =
+    this match {
+      case Fixed(_) => frameDelay.toMillis.toInt
+      case Adaptive(_) =>
+        frameDelay.toMillis.toInt.max((renderMillis * 1.5).ceil.toInt)
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package effect
+
+/** Determines how the colors of an animated GIF are chosen. A GIF can have at
+  * most 256 colors per frame. By default a palette is learned for each frame,
+  * which gives the most accurate colors but is slow and adds a color table to
+  * every frame. Alternatively a single palette can be learned from the first
+  * few frames and used for the whole animation, which is much faster and gives
+  * smaller files for animations whose colors don't change much over time.
+  */
+sealed trait GifPalette
+object GifPalette {
+  case object PerFrame extends GifPalette
+  final case class Global(sampleFrames: Int) extends GifPalette
+
+  /** Learn a new palette for each frame. */
+  val perFrame: GifPalette = PerFrame
+
+  /** Learn a single palette from the first `sampleFrames` frames, and use it
+    * for every frame in the animation.
+    */
+  def global(sampleFrames: Int = 5): GifPalette =
+    Global(sampleFrames.max(1))
+}
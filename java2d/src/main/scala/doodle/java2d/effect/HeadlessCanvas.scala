@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package effect
+
+import cats.effect.Deferred
+import cats.effect.IO
+import cats.effect.std.Mutex
+import cats.syntax.all.*
+import doodle.core.Point
+import fs2.Stream
+import fs2.concurrent.Topic
+
+import java.awt.image.BufferedImage
+import java.util.concurrent.atomic.AtomicInteger
+import scala.concurrent.duration.*
+
+/** A [[Canvas]] that draws into an offscreen image instead of a window, so
+  * interactive pictures, animations, and reactors can run without a display.
+  * Create one with [[Canvas.headless]], and use [[canvas]] wherever a
+  * [[Canvas]] is expected. [[Canvas.headless]] on that [[Canvas]] gets back to
+  * this headless canvas.
+  *
+  * Redraw events come from a virtual clock. Each subscriber to the canvas'
+  * redraw stream receives an event as soon as it asks for one, reporting the
+  * frame delay of the [[Frame]]'s [[Pacing]] as the time since the last frame.
+  * Animations therefore run as fast as their pictures can be drawn. Mouse
+  * events are simulated with [[click]] and [[move]].
+  *
+  * Pictures are drawn, as specified by the [[Frame]]'s [[Redraw]], into an
+  * image that is kept between pictures. When a picture is finished a copy of
+  * that image is published to [[frames]], so published frames are never drawn
+  * into. The copy is only made while [[frames]] has a subscriber.
+  */
+final class HeadlessCanvas private[effect] (
+    frame: Frame,
+    frameTopic: Topic[IO, BufferedImage],
+    mouseClickTopic: Topic[IO, Point],
+    mouseMoveTopic: Topic[IO, Point],
+    lock: Mutex[IO],
+    closedSignal: Deferred[IO, Unit]
+) {
+
+  /** The image pictures are drawn into. Null until the first picture is drawn.
+    * Only accessed while holding the lock.
+    */
+  private var image: BufferedImage = null
+
+  /** The number of running [[frames]] streams. */
+  private val subscribers = new AtomicInteger(0)
+
+  /** The delay between frames reported by the virtual clock. */
+  private val frameDelay: Int = frame.pacing.frameDelay.toMillis.toInt
+
+  private val interruptWhen = closedSignal.get.attempt
+
+  private object surface extends CanvasSurface {
+    val closed: IO[Unit] = closedSignal.get
+    val stream: Stream[IO, Nothing] = Stream.empty
+    val headless: Option[HeadlessCanvas] = Some(HeadlessCanvas.this)
+
+    val redraw: Stream[IO, Int] =
+      (Stream.emit(0) ++ Stream.constant(frameDelay))
+        .covary[IO]
+        .interruptWhen(interruptWhen)
+    val mouseClick: Stream[IO, Point] =
+      mouseClickTopic.subscribe(4).interruptWhen(interruptWhen)
+    val mouseMove: Stream[IO, Point] =
+      mouseMoveTopic.subscribe(4).interruptWhen(interruptWhen)
+
+    def render[A](picture: Picture[A]): IO[A] =
+      HeadlessCanvas.this.render(picture)
+
+    def close(): IO[Boolean] =
+      closedSignal.complete(()) <*
+        (frameTopic.close, mouseClickTopic.close, mouseMoveTopic.close).tupled
+  }
+
+  /** The [[Canvas]] that draws to this headless canvas. */
+  val canvas: Canvas = new Canvas(surface)
+
+  /** The frames drawn on this canvas, starting with the first frame drawn after
+    * the stream is run. Drawing waits for every running stream to have room for
+    * the frame, so a slow consumer slows drawing down rather than missing
+    * frames.
+    */
+  val frames: Stream[IO, BufferedImage] =
+    // Count the subscriber before subscribing, so no frame drawn once the
+    // subscription exists is skipped for lack of a subscriber
+    Stream.bracket(IO(subscribers.incrementAndGet()))(_ =>
+      IO(subscribers.decrementAndGet()).void
+    ) >> Stream.resource(frameTopic.subscribeAwait(1)).flatten
+
+  /** Simulate a mouse click at the given point, in Doodle's coordinates. */
+  def click(point: Point): IO[Unit] =
+    mouseClickTopic.publish1(point).void
+
+  /** Simulate moving the mouse to the given point, in Doodle's coordinates. */
+  def move(point: Point): IO[Unit] =
+    mouseMoveTopic.publish1(point).void
+
+  /** Draw the given Picture to this canvas. */
+  def render[A](picture: Picture[A]): IO[A] =
+    lock.lock.surround(
+      for {
+        result <- Java2d.reify(picture, frame.size)
+        start <- IO(System.nanoTime())
+        drawn <- IO(draw(result))
+        (snapshot, allocated) = drawn
+        end <- IO(System.nanoTime())
+        _ <- IO(
+          if frame.metrics != Instrumentation.Disabled then
+            RenderMetrics.publish(
+              RenderMetrics(
+                source = "headless",
+                queued = Duration.Zero,
+                layout = result.layout.nanos,
+                reification = result.reification.nanos,
+                rasterization = (end - start).nanos,
+                instructions = RenderMetrics.count(result.reified),
+                images = result.images + allocated,
+                skippedPictures = 0,
+                droppedRedraws = 0L
+              ),
+              frame.metrics
+            )
+        )
+        _ <- snapshot.traverse_(frameTopic.publish1)
+      } yield result.value
+    )
+
+  /** Draw the result into the image, creating or resizing the image as needed,
+    * and return a copy of the image, if there is anyone to publish it to, and
+    * the number of images allocated, including the copy.
+    */
+  private def draw(result: RenderResult[?]): (Option[BufferedImage], Int) = {
+    val width = result.width.toInt.max(1)
+    val height = result.height.toInt.max(1)
+    val first = image == null
+    val resize =
+      first || image.getWidth() != width || image.getHeight() != height
+
+    if resize then {
+      val store = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+      val gc = store.createGraphics()
+      Java2d.fillBackground(gc, frame.background, width, height)
+      // Keep what has been drawn so far, centered in the new image
+      if !first then
+        gc.drawImage(
+          image,
+          (width - image.getWidth()) / 2,
+          (height - image.getHeight()) / 2,
+          null
+        )
+      gc.dispose()
+      image = store
+    }
+
+    val gc = Java2d.setup(image.createGraphics())
+    if !first then Java2d.redraw(gc, frame, width, height)
+    val tx = Java2d.transform(
+      result.boundingBox,
+      width.toDouble,
+      height.toDouble,
+      frame.center
+    )
+    Java2d.render(gc, result.reified, tx)
+    gc.dispose()
+
+    val snapshot =
+      if subscribers.get() == 0 then None
+      else
+        Some(
+          new BufferedImage(
+            image.getColorModel(),
+            image.copyData(null),
+            image.isAlphaPremultiplied(),
+            null
+          )
+        )
+
+    (
+      snapshot,
+      (if snapshot.isDefined then 1 else 0) + (if resize then 1 else 0)
+    )
+  }
+}
@@ -24,6 +24,7 @@ import doodle.core.Point
 import doodle.core.Transform
 import doodle.java2d.algebra.Algebra
 import doodle.java2d.algebra.Java2D
+import doodle.java2d.algebra.reified.DisplayList
 import doodle.java2d.algebra.reified.Reified
 import doodle.java2d.effect.Size.FitToImage
 import doodle.java2d.effect.Size.FixedSize
@@ -31,11 +32,15 @@ import doodle.java2d.effect.Size.FixedSize
 import java.awt.Dimension
 import java.awt.Graphics
 import java.awt.Graphics2D
+import java.awt.Toolkit
 import java.awt.event.*
+import java.awt.image.BufferedImage
 import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Executor
 import javax.swing.JPanel
 import javax.swing.SwingUtilities
-import scala.collection.mutable
+import scala.concurrent.duration.*
 import scala.collection.mutable.ArrayBuffer
 
 /** A Swing component (a JPanel) that can render a Doodle Picture.
@@ -46,18 +51,34 @@ import scala.collection.mutable.ArrayBuffer
   */
 final class Java2DPanel(
     frame: Frame,
-    mouseClickQueue: BlockingCircularQueue[Point],
-    mouseMoveQueue: BlockingCircularQueue[Point]
+    mouseClickQueue: EventRing[Point],
+    mouseMoveQueue: EventRing[Point],
+    droppedRedraws: () => Long
 ) extends JPanel {
 
   /** The pictures we've been requested to render, but have not yet done so.
-    * Access to this should only be done via the Swing thread.
+    * Pictures are added from any thread and removed on the Swing thread.
     */
-  private val requests: mutable.Queue[RenderRequest[?]] = mutable.Queue()
+  private val requests: ConcurrentLinkedQueue[RenderRequest[?]] =
+    ConcurrentLinkedQueue()
+
+  /** The average time, in milliseconds, taken to paint this panel, used for
+    * adaptive [[Pacing]]. Access to this should only be done via the Swing
+    * thread.
+    */
+  private var renderMillis: Double = 0.0
+
+  /** The number of images allocated since the last frame, and the number of
+    * redraws dropped as of the last frame, for [[RenderMetrics]]. Access to
+    * these should only be done via the Swing thread.
+    */
+  private var imagesAllocated: Int = 0
+  private var lastDroppedRedraws: Long = 0L
 
   /** The pictures we've rendered, along with the bounding box for each picture.
-    * Ordered so the last element is the most recent picture (which should be
-    * rendered last).
+    * Only used when the [[Frame]] uses [[Retention.RetainPictures]]. Ordered so
+    * the last element is the most recent picture (which should be rendered
+    * last).
     *
     * Default size is 1 as the most common case is being asked to render only
     * one picture.
@@ -65,10 +86,19 @@ final class Java2DPanel(
     * As an optimization we check the [[Redraw]] property of the [[Frame]], and
     * if we use an opaque color to redraw we only keep the last element around.
     * See [[opaqueRedraw]].
+    *
+    * Pictures are kept as a [[DisplayList]], as they are redrawn on every
+    * repaint.
     */
-  private val pictures: ArrayBuffer[(BoundingBox, List[Reified])] =
+  private val pictures: ArrayBuffer[(BoundingBox, DisplayList)] =
     new ArrayBuffer(1)
 
+  /** When the [[Frame]] uses a [[Retention.BackingStore]], the image that
+    * pictures are drawn into as they arrive. Null until the first picture is
+    * drawn. Access to this should only be done via the Swing thread.
+    */
+  private var backingStore: BufferedImage = null
+
   /** Converts from the screen coordinates to Doodle's coordinates. Must only be
     * accessed from the Swing thread to avoid race conditions.
     */
@@ -121,7 +151,7 @@ final class Java2DPanel(
   // A fixed size frame allows us to set the panel size and inverse transform
   // without a picture present
   frame.size match {
-    case FitToImage(border)       => ()
+    case FitToImage(border) => ()
     case FixedSize(width, height) =>
       setSize(width.toInt, height.toInt)
       // resize(width, height)
@@ -140,20 +170,31 @@ final class Java2DPanel(
 
   /** Queue a picture to be drawn. Returns a CompletableFuture that will be
     * completed when the pictures has been drawn.
+    *
+    * Pictures are drawn on the next frame, when the [[Java2dWindow]] calls
+    * [[nextFrame]]. If the picture is overdrawn by a later picture in the same
+    * frame it is not drawn, but the CompletableFuture is still completed,
+    * after laying out the picture on the given executor.
     */
-  def render[A](picture: Picture[A]): CompletableFuture[A] = {
+  def render[A](
+      picture: Picture[A],
+      executor: Executor
+  ): CompletableFuture[A] = {
     val f: CompletableFuture[A] = CompletableFuture()
-
-    // This runs on the Swing thread, and so it's safe to access requests
-    SwingUtilities.invokeLater { () =>
-      val request = RenderRequest(picture, f)
-      requests.enqueue(request)
-      this.repaint()
-    }
-
+    requests.add(RenderRequest(picture, f, executor))
     f
   }
 
+  /** Repaint if there are pictures waiting to be drawn, and return the delay,
+    * in milliseconds, until the following frame. Must be called from the Swing
+    * thread.
+    */
+  def nextFrame(): Int = {
+    if !requests.isEmpty() then
+      this.paintImmediately(0, 0, getWidth(), getHeight())
+    frame.pacing.nextFrameDelay(renderMillis)
+  }
+
   /** Draw all images this [[Java2DPanel]] has received. We assume the
     * Graphics2D parameter has already been setup.
     */
@@ -193,17 +234,7 @@ final class Java2DPanel(
 
         // Draw remaining images, redrawing *before* each image
         pictures.foreach { case (bb, reified) =>
-          frame.redraw match {
-            case Redraw.ClearToBackground =>
-              frame.background.foreach { c =>
-                gc.setColor(Java2D.toAwtColor(c))
-                gc.fillRect(0, 0, getWidth(), getHeight())
-              }
-
-            case Redraw.ClearToColor(c) =>
-              gc.setColor(Java2D.toAwtColor(c))
-              gc.fillRect(0, 0, getWidth(), getHeight())
-          }
+          redraw(gc, getWidth(), getHeight())
 
           val tx = Java2d.transform(
             bb,
@@ -218,34 +249,167 @@ final class Java2DPanel(
     }
   }
 
+  /** Clear as specified by the [[Frame]]'s [[Redraw]]. */
+  private def redraw(gc: Graphics2D, width: Int, height: Int): Unit =
+    Java2d.redraw(gc, frame, width, height)
+
+  /** Draw a newly rendered picture into the backing store, first clearing as
+    * specified by the [[Redraw]] if this is not the first picture. The backing
+    * store is created, or resized to match the panel, as needed.
+    */
+  private def drawToBackingStore(bb: BoundingBox, reified: List[Reified]) = {
+    val width = getWidth().max(1)
+    val height = getHeight().max(1)
+    val first = backingStore == null
+
+    if first || backingStore.getWidth() != width || backingStore
+        .getHeight() != height
+    then {
+      val store = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+      imagesAllocated = imagesAllocated + 1
+      val gc = store.createGraphics()
+      frame.background.foreach { c =>
+        gc.setColor(Java2D.toAwtColor(c))
+        gc.fillRect(0, 0, width, height)
+      }
+      // Keep what has been drawn so far, centered in the new store
+      if !first then
+        gc.drawImage(
+          backingStore,
+          (width - backingStore.getWidth()) / 2,
+          (height - backingStore.getHeight()) / 2,
+          null
+        )
+      gc.dispose()
+      backingStore = store
+    }
+
+    val gc = Java2d.setup(backingStore.createGraphics())
+    if !first then redraw(gc, width, height)
+    val tx = Java2d.transform(bb, width.toDouble, height.toDouble, frame.center)
+    Java2d.render(gc, reified, tx)
+    gc.dispose()
+  }
+
   override def paintComponent(context: Graphics): Unit = {
     super.paintComponents(context)
     val gc = context.asInstanceOf[Graphics2D]
     Java2d.setup(gc)
 
     val algebra = Algebra(gc)
+    val start = System.nanoTime()
+    val instrumented = frame.metrics != Instrumentation.Disabled
+
+    var queued = 0L
+    var layout = 0L
+    var reification = 0L
+    var rasterization = 0L
+    var instructions = Map.empty[String, Int]
+
+    // Take every pending request before rendering any of them. Only the last
+    // picture is visible if later pictures are drawn over it with an opaque
+    // color, so the earlier ones are skipped without being rendered.
+    val pending = ArrayBuffer.empty[RenderRequest[?]]
+    var request = requests.poll()
+    while request != null do {
+      pending += request
+      request = requests.poll()
+    }
 
-    while requests.size > 0 do {
-      val r = requests.dequeue
-      val result = r.render(frame, algebra)
+    val skipped =
+      if opaqueRedraw && pending.nonEmpty then pending.size - 1 else 0
+    var idx = 0
+    while idx < skipped do {
+      pending(idx).skip()
+      idx = idx + 1
+    }
 
-      val bb = result.boundingBox
-      val reified = result.reified
+    while idx < pending.size do {
+      val result = pending(idx).render(frame, algebra)
+
+      if instrumented then {
+        queued = queued.max(result.queued)
+        imagesAllocated = imagesAllocated + result.images
+        layout = layout + result.layout
+        reification = reification + result.reification
+        RenderMetrics.count(result.reified).foreach { (name, count) =>
+          instructions = instructions.updated(
+            name,
+            instructions.getOrElse(name, 0) + count
+          )
+        }
+      }
 
-      resize(result.width, result.height)
-      if opaqueRedraw && pictures.size > 0 then
-        pictures.update(0, (bb, reified))
-      else pictures += ((bb, reified))
+      val drawStart = System.nanoTime()
+      drawResult(result)
+      rasterization = rasterization + (System.nanoTime() - drawStart)
+      idx = idx + 1
+    }
 
-      inverseTx = Java2d.inverseTransform(
-        result.boundingBox,
-        result.width,
-        result.height,
-        frame.center
+    val paintStart = System.nanoTime()
+
+    frame.retention match {
+      case Retention.BackingStore =>
+        frame.background.foreach { c =>
+          gc.setColor(Java2D.toAwtColor(c))
+          gc.fillRect(0, 0, getWidth(), getHeight())
+        }
+        if backingStore != null then gc.drawImage(backingStore, 0, 0, null)
+
+      case Retention.RetainPictures =>
+        draw(gc)
+    }
+    Toolkit.getDefaultToolkit().sync()
+
+    val end = System.nanoTime()
+    val elapsed = (end - start) / 1.0e6
+    renderMillis =
+      if renderMillis == 0.0 then elapsed
+      else renderMillis * 0.8 + elapsed * 0.2
+
+    if instrumented then {
+      val dropped = droppedRedraws()
+      RenderMetrics.publish(
+        RenderMetrics(
+          source = "canvas",
+          queued = queued.nanos,
+          layout = layout.nanos,
+          reification = reification.nanos,
+          rasterization = (rasterization + (end - paintStart)).nanos,
+          instructions = instructions,
+          images = imagesAllocated,
+          skippedPictures = skipped,
+          droppedRedraws = dropped - lastDroppedRedraws
+        ),
+        frame.metrics
       )
+      imagesAllocated = 0
+      lastDroppedRedraws = dropped
+    }
+  }
+
+  /** Keep the result of rendering a picture so it can be drawn. */
+  private def drawResult(result: RenderResult[?]): Unit = {
+    val bb = result.boundingBox
+
+    resize(result.width, result.height)
+    frame.retention match {
+      case Retention.BackingStore =>
+        drawToBackingStore(bb, result.reified)
+
+      case Retention.RetainPictures =>
+        val reified = DisplayList(result.reified)
+        if opaqueRedraw && pictures.size > 0 then
+          pictures.update(0, (bb, reified))
+        else pictures += ((bb, reified))
     }
 
-    draw(gc)
+    inverseTx = Java2d.inverseTransform(
+      result.boundingBox,
+      result.width,
+      result.height,
+      frame.center
+    )
   }
 
 }
@@ -19,18 +19,18 @@ package java2d
 package effect
 
 import cats.effect.IO
-import doodle.algebra.generic.*
+import cats.syntax.parallel.*
 import doodle.core.BoundingBox
 import doodle.core.Color
-import doodle.core.Transform
 import doodle.core.Transform as Tx
 import doodle.java2d.algebra.Algebra
 import doodle.java2d.algebra.Graphics2DGraphicsContext
 import doodle.java2d.algebra.Java2D as Java2dAlgebra
-import doodle.java2d.algebra.reified.Reification
+import doodle.java2d.algebra.reified.DisplayList
 import doodle.java2d.algebra.reified.Reified
 
 import java.awt.Graphics2D
+import java.awt.Rectangle
 import java.awt.RenderingHints
 import java.awt.image.BufferedImage
 
@@ -108,23 +108,155 @@ object Java2d {
     image.foreach { _.render(gc, transform)(Graphics2DGraphicsContext) }
   }
 
+  def render(gc: Graphics2D, image: DisplayList, transform: Tx): Unit =
+    image.render(gc, transform)
+
+  /** When tiled rendering is enabled, with `Frame.withTiledRendering`,
+    * pictures rendered to a `BufferedImage` with at least this many pixels are
+    * split into tiles that are rasterized in parallel, if more than one
+    * processor is available.
+    */
+  val tiledRenderingThreshold: Long = 1024L * 1024L
+
+  /** The width and height, in pixels, of the tiles used for tiled rendering. */
+  val tileSize: Int = 512
+
+  /** Render picture into an image created by makeImage. If tiled is true, large
+    * images are rasterized in parallel tiles. See [[tiledRenderingThreshold]].
+    */
   def renderBufferedImage[A](
       size: Size,
       center: Center,
       background: Option[Color],
-      picture: Picture[A]
+      picture: Picture[A],
+      tiled: Boolean = false
   )(makeImage: (Int, Int) => BufferedImage): IO[(BufferedImage, A)] =
+    renderBufferedImageMetered(size, center, background, picture, tiled)(
+      makeImage
+    ).map((image, result, _) => (image, result.value))
+
+  /** As [[renderBufferedImage]], but also return the [[RenderResult]], which
+    * records the time taken to lay out and reify the picture, and the time
+    * taken, in nanoseconds, to rasterize it.
+    */
+  private[effect] def renderBufferedImageMetered[A](
+      size: Size,
+      center: Center,
+      background: Option[Color],
+      picture: Picture[A],
+      tiled: Boolean
+  )(
+      makeImage: (Int, Int) => BufferedImage
+  ): IO[(BufferedImage, RenderResult[A], Long)] =
     for {
-      rendered <- renderGraphics2D(size, center, background, picture) { bb =>
-        IO {
-          val (w, h) = Java2d.size(bb, size)
-          val image = makeImage(w.toInt, h.toInt)
+      result <- reify(picture, size)
+      bb = result.boundingBox
+      r = result.reified
+      (width, height) = (result.width, result.height)
+      tx = Java2d.transform(bb, width, height, center)
+      image <- IO { makeImage(width.toInt, height.toInt) }
+      rendered = result.copy(images = result.images + 1)
+      pixels = image.getWidth().toLong * image.getHeight()
+      start <- IO(System.nanoTime())
+      _ <-
+        if tiled && pixels >= tiledRenderingThreshold &&
+          Runtime.getRuntime().availableProcessors() > 1
+        then renderTiled(image, background, r, tx, tileSize)
+        else
+          IO {
+            val gc = Java2d.setup(image.createGraphics())
+            fillBackground(gc, background, width.toInt, height.toInt)
+            Java2d.render(gc, r, tx)
+            gc.dispose()
+          }
+      end <- IO(System.nanoTime())
+    } yield (image, rendered, end - start)
 
-          (Java2d.setup(image.createGraphics()), image)
-        }
+  /** Render into image by splitting it into square tiles of the given size and
+    * rasterizing the tiles in parallel on the compute pool.
+    *
+    * Each tile is rendered into its own tile sized image, translated so the
+    * tile's corner is at the origin and clipped to the tile, and only renders
+    * the instructions whose bounds touch the tile. Finished tiles are copied
+    * into image. Tiles share nothing but the read only display list, so they
+    * never write to the same pixels.
+    *
+    * Rectangles, and shapes that lie entirely inside one tile, are rasterized
+    * exactly as a single threaded render would. Java2D clips other shapes to
+    * the tile before it rasterizes them, which can change the antialiased
+    * coverage of curves and dashes that cross a seam between tiles by a small
+    * amount, so tiled rendering is not guaranteed to be pixel for pixel
+    * identical to rendering the whole image at once. Shapes that cross several
+    * tiles are rasterized once per tile, though each tile only does the work
+    * for its clipped part.
+    *
+    * Gradients depend on where Java2D starts filling them, and blended layers
+    * read what is beneath them, so pictures that use either are rendered in a
+    * single pass.
+    */
+  private[java2d] def renderTiled(
+      image: BufferedImage,
+      background: Option[Color],
+      reified: List[Reified],
+      transform: Tx,
+      tileSize: Int
+  ): IO[Unit] =
+    IO { DisplayList(reified) }.flatMap { displayList =>
+      val width = image.getWidth()
+      val height = image.getHeight()
+
+      def renderTile(tile: Rectangle): Unit = {
+        val raster = image.getRaster()
+        val tileRaster =
+          raster.createCompatibleWritableRaster(tile.width, tile.height)
+        tileRaster.setDataElements(
+          0,
+          0,
+          raster
+            .createChild(tile.x, tile.y, tile.width, tile.height, 0, 0, null)
+        )
+        val tileImage = new BufferedImage(
+          image.getColorModel(),
+          tileRaster,
+          image.isAlphaPremultiplied(),
+          null
+        )
+
+        val gc = Java2d.setup(tileImage.createGraphics())
+        gc.translate(-tile.x, -tile.y)
+        gc.setClip(tile)
+        fillBackground(gc, background, width, height)
+        displayList.render(
+          gc,
+          transform,
+          new Rectangle(0, 0, tile.width, tile.height)
+        )
+        gc.dispose()
+
+        raster.setDataElements(tile.x, tile.y, tileRaster)
       }
-      (image, a) = rendered
-    } yield (image, a)
+
+      if displayList.hasOnlySolidPaints then {
+        val tiles =
+          for {
+            y <- 0.until(height, tileSize).toList
+            x <- 0.until(width, tileSize).toList
+          } yield new Rectangle(
+            x,
+            y,
+            tileSize.min(width - x),
+            tileSize.min(height - y)
+          )
+
+        tiles.parTraverse_(tile => IO { renderTile(tile) })
+      } else
+        IO {
+          val gc = Java2d.setup(image.createGraphics())
+          fillBackground(gc, background, width, height)
+          displayList.render(gc, transform)
+          gc.dispose()
+        }
+    }
 
   private[java2d] def renderGraphics2D[A, I](
       size: Size,
@@ -133,22 +265,63 @@ object Java2d {
       picture: Picture[A]
   )(graphicsContext: BoundingBox => IO[(Graphics2D, I)]): IO[(I, A)] =
     for {
-      gc <- IO {
-        val bi = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB)
-        Java2d.setup(bi.createGraphics())
-      }
-      drawing: Finalized[Reification, A] <- IO { picture(Algebra(gc)) }
-      (bb, rdr) = drawing.run(List.empty).value
-      (_, fa) = rdr.run(Transform.identity).value
-      (r, a) = fa.run.value
+      reified <- reify(picture)
+      (bb, r, a) = reified
       (width, height) = Java2d.size(bb, size)
       tx = Java2d.transform(bb, width, height, center)
       contextWithImage <- graphicsContext(bb)
       (gc, image) = contextWithImage
-      _ = background.foreach { c =>
-        gc.setColor(Java2dAlgebra.toAwtColor(c))
-        gc.fillRect(0, 0, width.toInt, height.toInt)
-      }
+      _ = fillBackground(gc, background, width.toInt, height.toInt)
       _ = Java2d.render(gc, r, tx)
     } yield (image, a)
+
+  /** Lay out picture and convert it to `Reified` instructions. */
+  private[java2d] def reify[A](
+      picture: Picture[A]
+  ): IO[(BoundingBox, List[Reified], A)] =
+    reify(picture, Size.fitToPicture(0)).map(result =>
+      (result.boundingBox, result.reified, result.value)
+    )
+
+  /** Lay out picture and convert it to `Reified` instructions, sized as
+    * specified by size.
+    */
+  private[effect] def reify[A](
+      picture: Picture[A],
+      size: Size
+  ): IO[RenderResult[A]] =
+    IO {
+      val bi = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB)
+      val gc = Java2d.setup(bi.createGraphics())
+      // The image allocated to measure text
+      RenderResult.render(picture, Algebra(gc), size).copy(images = 1)
+    }
+
+  private[effect] def fillBackground(
+      gc: Graphics2D,
+      background: Option[Color],
+      width: Int,
+      height: Int
+  ): Unit =
+    background.foreach { c =>
+      gc.setColor(Java2dAlgebra.toAwtColor(c))
+      gc.fillRect(0, 0, width, height)
+    }
+
+  /** Clear before drawing a picture over earlier pictures, as specified by the
+    * frame's [[Redraw]].
+    */
+  private[effect] def redraw(
+      gc: Graphics2D,
+      frame: Frame,
+      width: Int,
+      height: Int
+  ): Unit =
+    frame.redraw match {
+      case Redraw.ClearToBackground =>
+        fillBackground(gc, frame.background, width, height)
+
+      case Redraw.ClearToColor(c) =>
+        fillBackground(gc, Some(c), width, height)
+    }
 }
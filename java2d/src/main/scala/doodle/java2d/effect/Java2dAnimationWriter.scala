@@ -20,49 +20,201 @@ package effect
 
 import cats.Monoid
 import cats.effect.IO
+import cats.effect.Resource
 import doodle.core.format.Gif
 import doodle.interact.effect.AnimationWriter
+import fs2.Chunk
+import fs2.Pipe
+import fs2.Pull
 import fs2.Stream
 
 import java.awt.image.BufferedImage
+import java.io.BufferedOutputStream
+import java.io.ByteArrayOutputStream
 import java.io.File
 import java.io.FileOutputStream
+import java.io.OutputStream
 
 /** Write an animation as an animated GIF. The GIF file format doesn't support
   * transparency to the degree we need to faithfully render Java2d images. In
   * particular it doesn't support semi-transparent redraw. As a result we just
   * fill with the background color on each frame, if the background is set.
+  *
+  * Frames are rendered and quantized on up to `parallelism` frames at once.
+  * Only LZW encoding and writing of the bytes is done in sequence, in frame
+  * order, so the output is the same whatever the degree of parallelism. The
+  * `palette` determines how the colors of each frame are chosen. When
+  * `deltaFrames` is true only the region of each frame that changed from the
+  * previous frame is encoded.
   */
-object Java2dAnimationWriter
-    extends AnimationWriter[doodle.java2d.Algebra, Frame, Gif] {
+class Java2dAnimationWriter(
+    val parallelism: Int,
+    val palette: GifPalette,
+    val deltaFrames: Boolean
+) extends AnimationWriter[doodle.java2d.Algebra, Frame, Gif] {
+
+  private def copy(
+      parallelism: Int = parallelism,
+      palette: GifPalette = palette,
+      deltaFrames: Boolean = deltaFrames
+  ): Java2dAnimationWriter =
+    new Java2dAnimationWriter(parallelism, palette, deltaFrames)
+
+  /** Create a writer that renders and quantizes up to `parallelism` frames
+    * concurrently.
+    */
+  def withParallelism(parallelism: Int): Java2dAnimationWriter =
+    copy(parallelism = parallelism.max(1))
+
+  /** Create a writer that chooses colors using the given palette. */
+  def withPalette(palette: GifPalette): Java2dAnimationWriter =
+    copy(palette = palette)
+
+  /** Create a writer that learns a single palette from the first `sampleFrames`
+    * frames and uses it for the whole animation.
+    */
+  def withGlobalPalette(sampleFrames: Int = 5): Java2dAnimationWriter =
+    withPalette(GifPalette.global(sampleFrames))
+
+  /** Create a writer that only encodes the bounding rectangle of the pixels
+    * that changed from the previous frame. This greatly reduces file size and
+    * encoding time when only a small part of the picture moves.
+    */
+  def withDeltaFrames(deltaFrames: Boolean = true): Java2dAnimationWriter =
+    copy(deltaFrames = deltaFrames)
 
   val gifEncoder: IO[GifEncoder] =
     IO { new GifEncoder() }
 
   def write[A](file: File, frame: Frame, frames: Stream[IO, Picture[A]])(
       implicit m: Monoid[A]
-  ): IO[A] = {
-    for {
-      ge <- gifEncoder
-      _ = ge.start(new FileOutputStream(file))
-      _ = ge.setDelay(20)
-      a <- frames
-        .evalMap { picture =>
-          for {
-            result <- doodle.java2d.effect.Java2d
-              .renderBufferedImage(
-                frame.size,
-                frame.center,
-                frame.background,
-                picture
-              )((w, h) => new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB))
-            (bi, a2) = result
-            _ = ge.addFrame(bi)
-          } yield a2
+  ): IO[A] =
+    write(
+      Resource.fromAutoCloseable(
+        IO(new BufferedOutputStream(new FileOutputStream(file)))
+      ),
+      frame,
+      frames
+    )
+
+  /** Write the animation to the `OutputStream` acquired from the given
+    * `Resource`. Bytes are written as each frame is encoded, and the stream is
+    * released when the animation has been written or an error occurs.
+    */
+  def write[A](
+      output: Resource[IO, OutputStream],
+      frame: Frame,
+      frames: Stream[IO, Picture[A]]
+  )(implicit m: Monoid[A]): IO[A] =
+    output.use(out => encode(out, frame, frames).compile.foldMonoid)
+
+  /** Encode the animation as a stream of bytes. The bytes for each frame are
+    * emitted as soon as that frame is encoded, so the time to the first byte
+    * does not depend on the length of the animation, and only the frames that
+    * are being encoded are held in memory.
+    */
+  def stream[A](
+      frame: Frame,
+      frames: Stream[IO, Picture[A]]
+  ): Stream[IO, Byte] =
+    Stream.eval(IO(new ByteArrayOutputStream())).flatMap { buffer =>
+      val drain =
+        Stream.evalUnChunk(IO {
+          val bytes = buffer.toByteArray()
+          buffer.reset()
+          Chunk.array(bytes)
+        })
+
+      encode(buffer, frame, frames).flatMap(_ => drain) ++ drain
+    }
+
+  /** A `Pipe` that encodes a stream of pictures as the bytes of an animated
+    * GIF. See [[stream]].
+    */
+  def pipe[A](frame: Frame): Pipe[IO, Picture[A], Byte] =
+    frames => stream(frame, frames)
+
+  /** Encode the frames as a GIF written to `output`, emitting the value
+    * produced by each frame once that frame has been written. The stream is not
+    * closed.
+    */
+  private def encode[A](
+      output: OutputStream,
+      frame: Frame,
+      frames: Stream[IO, Picture[A]]
+  ): Stream[IO, A] = {
+    // The number of frames we look at before we start quantizing
+    val sampleFrames =
+      palette match {
+        case GifPalette.PerFrame             => 1
+        case GifPalette.Global(sampleFrames) => sampleFrames
+      }
+
+    // The first frame determines the size of every frame, and the first
+    // sampleFrames determine the palette if we're using a global palette. Each
+    // frame is paired with a snapshot of the settings, so frames are quantized
+    // in parallel without reading the encoder while it writes.
+    def setup(
+        ge: GifEncoder,
+        rendered: Stream[IO, (BufferedImage, A)]
+    ): Stream[IO, (GifEncoder.QuantizeSettings, BufferedImage, A)] =
+      rendered.pull
+        .unconsN(sampleFrames, allowFewer = true)
+        .flatMap {
+          case Some((head, tail)) =>
+            val samples = head.map(_._1)
+            val first = samples(0)
+            Pull
+              .eval(IO {
+                ge.setSize(first.getWidth(), first.getHeight())
+                palette match {
+                  case GifPalette.PerFrame  => ()
+                  case GifPalette.Global(_) => ge.setPalette(samples.toArray)
+                }
+                ge.quantizeSettings()
+              })
+              .flatMap { settings =>
+                (Stream.chunk(head) ++ tail)
+                  .map((bi, a) => (settings, bi, a))
+                  .pull
+                  .echo
+              }
+
+          case None => Pull.done
+        }
+        .stream
+
+    val encoder =
+      gifEncoder.flatTap(ge =>
+        IO {
+          ge.start(output)
+          ge.setDelay(20)
+          ge.setFrameDifferencing(deltaFrames)
         }
-        .compile
-        .foldMonoid
-      _ = ge.finish()
-    } yield a
+      )
+
+    Stream.eval(encoder).flatMap { ge =>
+      val rendered = frames.parEvalMap(parallelism) { picture =>
+        doodle.java2d.effect.Java2d
+          .renderBufferedImage(
+            frame.size,
+            frame.center,
+            frame.background,
+            picture,
+            frame.tiledRendering
+          )((w, h) => new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB))
+      }
+
+      setup(ge, rendered).zipWithPrevious
+        .parEvalMap(parallelism) { case (previous, (settings, bi, a2)) =>
+          val prev = if deltaFrames then previous.map(_._2).orNull else null
+          IO(ge.quantize(bi, prev, settings)).map(quantized => (quantized, a2))
+        }
+        .evalMap { case (quantized, a2) =>
+          IO(ge.addQuantizedFrame(quantized)).as(a2)
+        } ++ Stream.exec(IO(ge.finish()).void)
+    }
   }
 }
+object Java2dAnimationWriter
+    extends Java2dAnimationWriter(1, GifPalette.perFrame, false)
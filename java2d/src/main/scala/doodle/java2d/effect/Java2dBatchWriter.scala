@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package effect
+
+import cats.effect.IO
+import cats.effect.Resource
+import cats.effect.std.Queue
+import cats.syntax.applicative.*
+import doodle.core.format.Format
+import doodle.java2d.algebra.Algebra
+import fs2.Stream
+
+import java.awt.AlphaComposite
+import java.awt.Color as AwtColor
+import java.awt.image.BufferedImage
+import java.io.ByteArrayOutputStream
+import java.nio.file.Files
+import java.nio.file.Path
+import scala.concurrent.duration.*
+
+/** The result of writing one picture in a batch: the value of the picture, or
+  * the error that stopped it being written.
+  */
+final case class BatchResult[A](path: Path, result: Either[Throwable, A])
+
+/** Write many pictures to files, in the format of the given
+  * [[Java2dRasterWriter]].
+  *
+  * Up to `parallelism` pictures are rendered and encoded at once, and files are
+  * written on the blocking pool. Each worker keeps its own graphics context for
+  * measuring text and reuses its image from one picture to the next when the
+  * size does not change. Pictures are pulled from the input only as workers
+  * become free, so a large batch does not need to be held in memory.
+  *
+  * Only raster formats are supported, so PDF, which has no
+  * [[Java2dRasterWriter]], cannot be written in a batch.
+  */
+final class Java2dBatchWriter[Fmt <: Format](
+    val writer: Java2dRasterWriter[Fmt],
+    val parallelism: Int
+) {
+
+  /** Create a writer that renders and encodes up to `parallelism` pictures
+    * concurrently.
+    */
+  def withParallelism(parallelism: Int): Java2dBatchWriter[Fmt] =
+    new Java2dBatchWriter(writer, parallelism.max(1))
+
+  /** Write each picture to its path. The results are emitted in the same order
+    * as the pictures. An error writing one picture is reported in its
+    * [[BatchResult]] and does not stop the rest of the batch.
+    */
+  def write[A](
+      frame: Frame,
+      pictures: Stream[IO, (Path, Picture[A])]
+  ): Stream[IO, BatchResult[A]] =
+    Stream.resource(workers).flatMap { pool =>
+      pictures.parEvalMap(parallelism) { (path, picture) =>
+        Resource
+          .make(pool.take)(pool.offer)
+          .use(worker => IO(worker.encode(frame, picture)))
+          .flatMap { (bytes, a) =>
+            IO.blocking(Files.write(path, bytes)).as(a)
+          }
+          .attempt
+          .map(result => BatchResult(path, result))
+      }
+    }
+
+  private def workers: Resource[IO, Queue[IO, Worker]] =
+    for {
+      pool <- Resource.eval(Queue.bounded[IO, Worker](parallelism))
+      _ <- worker.evalMap(pool.offer).replicateA_(parallelism)
+    } yield pool
+
+  /** A worker whose graphics context is disposed when it is released. */
+  private def worker: Resource[IO, Worker] =
+    Resource.make(IO(Worker()))(worker => IO(worker.dispose()))
+
+  /** The state each worker reuses from one picture to the next. A worker is
+    * only used by one picture at a time.
+    */
+  private final class Worker() {
+    private val graphics = Java2d.setup(
+      new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics()
+    )
+    private val algebra = Algebra(graphics)
+    private var buffer: BufferedImage = null
+    private val output = new ByteArrayOutputStream()
+
+    /** Get an image of the given size, reusing the last image if it is the
+      * right size. A reused image is cleared. Returns the image and whether it
+      * was allocated.
+      */
+    private def image(width: Int, height: Int): (BufferedImage, Boolean) =
+      if buffer != null && buffer.getWidth() == width &&
+        buffer.getHeight() == height
+      then {
+        val gc = buffer.createGraphics()
+        gc.setComposite(AlphaComposite.Src)
+        gc.setColor(new AwtColor(0, 0, 0, 0))
+        gc.fillRect(0, 0, width, height)
+        gc.dispose()
+        (buffer, false)
+      } else {
+        buffer = writer.makeImage(width, height)
+        (buffer, true)
+      }
+
+    /** Release the graphics context used to measure text. */
+    def dispose(): Unit =
+      graphics.dispose()
+
+    /** Render and encode the picture, returning the encoded bytes. */
+    def encode[A](frame: Frame, picture: Picture[A]): (Array[Byte], A) = {
+      val result = RenderResult.render(picture, algebra, frame.size)
+      val width = result.width.toInt
+      val height = result.height.toInt
+
+      val start = System.nanoTime()
+      val (bi, allocated) = image(width, height)
+      val gc = Java2d.setup(bi.createGraphics())
+      Java2d.fillBackground(gc, frame.background, width, height)
+      Java2d.render(
+        gc,
+        result.reified,
+        Java2d.transform(
+          result.boundingBox,
+          result.width,
+          result.height,
+          frame.center
+        )
+      )
+      gc.dispose()
+      val end = System.nanoTime()
+
+      output.reset()
+      writer.encode(bi, output)
+
+      if frame.metrics != Instrumentation.Disabled then
+        RenderMetrics.publish(
+          RenderMetrics(
+            source = writer.format,
+            queued = Duration.Zero,
+            layout = result.layout.nanos,
+            reification = result.reification.nanos,
+            rasterization = (end - start).nanos,
+            instructions = RenderMetrics.count(result.reified),
+            images = if allocated then 1 else 0,
+            skippedPictures = 0,
+            droppedRedraws = 0L
+          ),
+          frame.metrics
+        )
+
+      (output.toByteArray(), result.value)
+    }
+  }
+}
+object Java2dBatchWriter {
+
+  /** Create a batch writer for the given writer's format that uses as many
+    * workers as there are processors.
+    */
+  def apply[Fmt <: Format](
+      writer: Java2dRasterWriter[Fmt]
+  ): Java2dBatchWriter[Fmt] =
+    new Java2dBatchWriter(writer, Runtime.getRuntime().availableProcessors())
+}
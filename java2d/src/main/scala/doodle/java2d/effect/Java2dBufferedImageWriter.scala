@@ -37,7 +37,8 @@ object Java2dBufferedImageWriter
       frame.size,
       frame.center,
       frame.background,
-      picture
+      picture,
+      frame.tiledRendering
     )(makeImage _)
     (bi, a) = result
   } yield (a, bi)
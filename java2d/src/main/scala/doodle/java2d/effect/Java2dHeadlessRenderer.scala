@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package effect
+
+import cats.effect.IO
+import cats.effect.Resource
+import doodle.effect.Renderer
+
+/** A [[Renderer]] that draws to a headless [[Canvas]], for running interactive
+  * pictures, animations, and reactors without a display. Bring it into scope in
+  * place of [[Java2dRenderer]]:
+  *
+  * ```
+  * given Renderer[Algebra, Frame, Canvas] = Java2dHeadlessRenderer
+  * ```
+  *
+  * The canvases it creates are headless, so [[Canvas.headless]] always returns
+  * the [[HeadlessCanvas]], whose [[HeadlessCanvas.frames]] are the rendered
+  * frames and whose [[HeadlessCanvas.click]] and [[HeadlessCanvas.move]]
+  * simulate mouse events. [[headless]] gets it from a canvas created here.
+  */
+object Java2dHeadlessRenderer extends Renderer[Algebra, Frame, Canvas] {
+  def canvas(description: Frame): Resource[IO, Canvas] =
+    Canvas.headless(description).map(_.canvas)
+
+  def render[A](canvas: Canvas)(picture: Picture[A]): IO[A] =
+    canvas.render(picture)
+
+  /** The [[HeadlessCanvas]] behind a canvas created by this renderer. */
+  def headless(canvas: Canvas): HeadlessCanvas =
+    canvas.headless.getOrElse(
+      throw new IllegalArgumentException(
+        "The canvas was not created by Java2dHeadlessRenderer"
+      )
+    )
+}
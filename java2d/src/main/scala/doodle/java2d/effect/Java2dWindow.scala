@@ -26,6 +26,7 @@ import java.awt.event.ActionListener
 import java.awt.event.WindowAdapter
 import java.awt.event.WindowEvent
 import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executor
 import javax.swing.JFrame
 import javax.swing.SwingUtilities
 import javax.swing.Timer
@@ -36,14 +37,23 @@ import scala.concurrent.duration.FiniteDuration
 final class Java2dWindow(
     frame: Frame,
     frameDelay: FiniteDuration,
-    redrawQueue: BlockingCircularQueue[Int],
-    mouseClickQueue: BlockingCircularQueue[Point],
-    mouseMoveQueue: BlockingCircularQueue[Point]
+    redrawQueue: EventRing[Int],
+    mouseClickQueue: EventRing[Point],
+    mouseMoveQueue: EventRing[Point]
 ) extends JFrame(frame.title) {
-  private val panel = Java2DPanel(frame, mouseClickQueue, mouseMoveQueue)
+  private val panel =
+    Java2DPanel(
+      frame,
+      mouseClickQueue,
+      mouseMoveQueue,
+      () => redrawQueue.dropped
+    )
 
-  def render[A](picture: Picture[A]): CompletableFuture[A] =
-    panel.render(picture)
+  def render[A](
+      picture: Picture[A],
+      executor: Executor
+  ): CompletableFuture[A] =
+    panel.render(picture, executor)
 
   /** This `CompletedFuture` is completed when this `Java2dWindow` is closed. */
   val closed: CompletableFuture[Boolean] = CompletableFuture()
@@ -61,8 +71,9 @@ final class Java2dWindow(
     closed
   }
 
-  /** Event listener for redraw events. Translates events into the time since
-    * the last frame, in milliseconds.
+  /** Event listener for redraw events. Draws any pictures waiting in the panel,
+    * paces the following frame as specified by the [[Frame]]'s [[Pacing]], and
+    * translates events into the time since the last frame, in milliseconds.
     */
   private val frameEvent: ActionListener = {
 
@@ -72,6 +83,7 @@ final class Java2dWindow(
     new ActionListener {
       def actionPerformed(e: ActionEvent): Unit = {
         val now = e.getWhen()
+        timer.setDelay(panel.nextFrame())
         if firstFrame then {
           firstFrame = false
           lastFrameTime = now
@@ -85,7 +97,7 @@ final class Java2dWindow(
     }
   }
 
-  /** Timer that ticks every frameDelay */
+  /** Timer that ticks every frame, starting with frameDelay */
   private val timer = new Timer(frameDelay.toMillis.toInt, frameEvent)
 
   this.addWindowListener(
@@ -29,12 +29,16 @@ import doodle.effect.*
 import doodle.java2d.effect.Java2d as Java2dEffect
 
 import java.awt.image.BufferedImage
+import java.io.BufferedOutputStream
 import java.io.ByteArrayOutputStream
 import java.io.File
 import java.io.FileOutputStream
+import java.io.IOException
 import java.io.OutputStream
 import java.util.Base64 as JBase64
 import javax.imageio.ImageIO
+import scala.concurrent.duration.*
+import scala.util.Using
 
 trait Java2dWriter[Fmt <: Format]
     extends FileWriter[doodle.java2d.Algebra, Frame, Fmt]
@@ -46,18 +50,63 @@ trait Java2dWriter[Fmt <: Format]
   // with alpha channels as described in https://bugs.openjdk.java.net/browse/JDK-8119048
   def makeImage(w: Int, h: Int): BufferedImage
 
+  /** Encode the image in this writer's format, writing it to output. The output
+    * is not closed.
+    */
+  def encode(image: BufferedImage, output: OutputStream): Unit =
+    if !ImageIO.write(image, format, output) then
+      throw new IOException(
+        s"There is no ImageIO writer for the format ${format}."
+      )
+
   def write[A](file: File, frame: Frame, picture: Picture[A]): IO[A] = {
     for {
-      result <- Java2d.renderBufferedImage(
+      result <- render(frame, picture)
+      (bi, a) = result
+      _ <- IO(
+        Using.resource(new BufferedOutputStream(new FileOutputStream(file)))(
+          output => encode(bi, output)
+        )
+      )
+    } yield a
+  }
+
+  /** Render the picture to a `BufferedImage`, publishing [[RenderMetrics]] if
+    * the frame enables them.
+    */
+  private def render[A](
+      frame: Frame,
+      picture: Picture[A]
+  ): IO[(BufferedImage, A)] =
+    Java2dEffect
+      .renderBufferedImageMetered(
         frame.size,
         frame.center,
         frame.background,
-        picture
+        picture,
+        frame.tiledRendering
       )(makeImage _)
-      (bi, a) = result
-      _ = ImageIO.write(bi, format, file)
-    } yield a
-  }
+      .flatMap { (image, result, rasterization) =>
+        IO {
+          if frame.metrics != Instrumentation.Disabled then
+            RenderMetrics.publish(
+              RenderMetrics(
+                source = format,
+                queued = Duration.Zero,
+                layout = result.layout.nanos,
+                reification = result.reification.nanos,
+                rasterization = rasterization.nanos,
+                instructions = RenderMetrics.count(result.reified),
+                images = result.images,
+                skippedPictures = 0,
+                droppedRedraws = 0L
+              ),
+              frame.metrics
+            )
+
+          (image, result.value)
+        }
+      }
 
   def base64[A](frame: Frame, image: Picture[A]): IO[(A, B64[Fmt])] =
     for {
@@ -72,15 +121,10 @@ trait Java2dWriter[Fmt <: Format]
       picture: Picture[A]
   ): IO[A] = {
     for {
-      result <- Java2dEffect.renderBufferedImage(
-        frame.size,
-        frame.center,
-        frame.background,
-        picture
-      )(makeImage _)
+      result <- render(frame, picture)
       (bi, a) = result
       _ <- IO {
-        ImageIO.write(bi, format, output)
+        encode(bi, output)
         output.flush()
         output.close()
       }
@@ -89,19 +133,55 @@ trait Java2dWriter[Fmt <: Format]
 
 }
 
-object Java2dGifWriter extends Java2dWriter[Gif] {
+/** A [[Java2dWriter]] for a format that is encoded from a rendered
+  * `BufferedImage`, which is every format except PDF. Only these writers can
+  * write many pictures at once with [[batch]].
+  */
+trait Java2dRasterWriter[Fmt <: Format] extends Java2dWriter[Fmt] {
+
+  /** A writer for many pictures at once, in this writer's format. See
+    * [[Java2dBatchWriter]].
+    */
+  def batch: Java2dBatchWriter[Fmt] =
+    Java2dBatchWriter(this)
+}
+
+object Java2dGifWriter extends Java2dRasterWriter[Gif] {
   val format = "gif"
 
   def makeImage(width: Int, height: Int): BufferedImage =
     new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
 }
-object Java2dPngWriter extends Java2dWriter[Png] {
+object Java2dPngWriter extends Java2dRasterWriter[Png] {
   val format = "png"
 
   def makeImage(width: Int, height: Int): BufferedImage =
     new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+
+  /** A PNG writer that encodes with the given [[PngEncoder]] instead of
+    * ImageIO, for control over compression. For example, use
+    * `Java2dPngWriter.withEncoder(PngEncoder.fast)` to export many pictures
+    * quickly, or `PngEncoder.small` for the smallest files.
+    */
+  def withEncoder(encoder: PngEncoder): Java2dPngEncoderWriter =
+    Java2dPngEncoderWriter(encoder)
+}
+
+/** A PNG writer that encodes using a [[PngEncoder]]. */
+final case class Java2dPngEncoderWriter(encoder: PngEncoder)
+    extends Java2dRasterWriter[Png] {
+  val format = "png"
+
+  def makeImage(width: Int, height: Int): BufferedImage =
+    new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+
+  def withEncoder(encoder: PngEncoder): Java2dPngEncoderWriter =
+    this.copy(encoder = encoder)
+
+  override def encode(image: BufferedImage, output: OutputStream): Unit =
+    encoder.encode(image, output)
 }
-object Java2dJpgWriter extends Java2dWriter[Jpg] {
+object Java2dJpgWriter extends Java2dRasterWriter[Jpg] {
   val format = "jpeg"
 
   def makeImage(width: Int, height: Int): BufferedImage =
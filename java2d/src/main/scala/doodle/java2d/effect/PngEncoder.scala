@@ -0,0 +1,661 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle.java2d.effect
+
+import doodle.java2d.algebra.BandPool
+
+import java.awt.image.BufferedImage
+import java.awt.image.DataBufferInt
+import java.awt.image.SinglePixelPackedSampleModel
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.OutputStream
+import java.nio.charset.StandardCharsets
+import java.util.zip.Adler32
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+
+/** The filter applied to each row of a PNG before it is compressed. Filters
+  * make rows more compressible by storing the difference from neighbouring
+  * pixels. `Adaptive` chooses the best filter for each row, which gives the
+  * smallest files but takes longest. `NoFilter` is fastest. Indexed images are
+  * always encoded without a filter, as filters rarely help them.
+  */
+enum PngFilter(val code: Int) {
+  case NoFilter extends PngFilter(0)
+  case Sub extends PngFilter(1)
+  case Up extends PngFilter(2)
+  case Average extends PngFilter(3)
+  case Paeth extends PngFilter(4)
+  case Adaptive extends PngFilter(-1)
+}
+
+/** Encodes a `BufferedImage` as a PNG, with control over the trade off between
+  * file size and encoding time.
+  *
+  *   - `compressionLevel` is the deflate level, from 0 (no compression) to 9
+  *     (smallest files).
+  *   - `filter` is the [[PngFilter]] applied to each row.
+  *   - `parallelism` is the maximum number of threads that compress the image.
+  *     The image is split into bands of rows that are compressed separately and
+  *     joined into one stream, which makes files slightly larger.
+  *   - When `reduceColors` is true the pixels are examined and the image is
+  *     written as grayscale, or with a palette of at most 256 colors, if that
+  *     loses no information, and without an alpha channel if it is opaque.
+  *
+  * `TYPE_INT_ARGB` and `TYPE_INT_RGB` images are read directly from their
+  * raster. Other images are read a row at a time.
+  */
+final case class PngEncoder(
+    compressionLevel: Int,
+    filter: PngFilter,
+    parallelism: Int,
+    reduceColors: Boolean
+) {
+  import PngEncoder.*
+
+  def withCompressionLevel(compressionLevel: Int): PngEncoder =
+    this.copy(compressionLevel = compressionLevel.max(0).min(9))
+
+  def withFilter(filter: PngFilter): PngEncoder =
+    this.copy(filter = filter)
+
+  def withParallelism(parallelism: Int): PngEncoder =
+    this.copy(parallelism = parallelism.max(1))
+
+  def withColorReduction(reduceColors: Boolean = true): PngEncoder =
+    this.copy(reduceColors = reduceColors)
+
+  /** Encode the image as a PNG, writing it to output. The output is not closed.
+    */
+  def encode(image: BufferedImage, output: OutputStream): Unit = {
+    val pixels = Pixels(image)
+    val format = Format.choose(pixels, reduceColors)
+    val rowFilter =
+      if format.colorType == ColorType.Indexed then PngFilter.NoFilter else filter
+
+    val bands = compress(pixels, format, rowFilter)
+
+    val out = new DataOutputStream(output)
+    out.write(Signature)
+    writeChunk(out, "IHDR", header(pixels, format))
+    format.palette.foreach { palette =>
+      writeChunk(out, "PLTE", palette.rgb)
+      if palette.alpha.nonEmpty then writeChunk(out, "tRNS", palette.alpha)
+    }
+
+    // The compressed bands are concatenated into one zlib stream
+    val adler = bands.foldLeft(1L)((adler, band) =>
+      combineAdler32(adler, band.adler, band.length)
+    )
+    bands.indices.foreach { i =>
+      val band = bands(i)
+      val prefix = if i == 0 then zlibHeader(compressionLevel) else Empty
+      val suffix =
+        if i == bands.length - 1 then
+          Array(
+            (adler >>> 24).toByte,
+            (adler >>> 16).toByte,
+            (adler >>> 8).toByte,
+            adler.toByte
+          )
+        else Empty
+      writeChunk(out, "IDAT", prefix, band.compressed, suffix)
+    }
+    writeChunk(out, "IEND")
+    out.flush()
+  }
+
+  /** Filter and compress the rows of the image in bands, in parallel if there
+    * is more than one band. There are at most `parallelism` bands. The first is
+    * compressed by the calling thread and the rest on the shared `BandPool`.
+    */
+  private def compress(
+      pixels: Pixels,
+      format: Format,
+      rowFilter: PngFilter
+  ): Array[Band] = {
+    val rowBytes = format.rowBytes(pixels.width).toLong
+    val minRows =
+      ((MinBandBytes + rowBytes - 1) / rowBytes).toInt.max(1)
+    val rows =
+      ((pixels.height + parallelism - 1) / parallelism).max(minRows)
+    val count = (pixels.height + rows - 1) / rows
+
+    def band(i: Int): Band =
+      compressBand(
+        pixels,
+        format,
+        rowFilter,
+        i * rows,
+        ((i + 1) * rows).min(pixels.height),
+        i == count - 1
+      )
+
+    BandPool.map(count)(band)
+  }
+
+  private def compressBand(
+      pixels: Pixels,
+      format: Format,
+      rowFilter: PngFilter,
+      from: Int,
+      until: Int,
+      last: Boolean
+  ): Band = {
+    val rowBytes = format.rowBytes(pixels.width)
+    val bpp = format.filterBytesPerPixel
+    val reader = pixels.reader()
+    var previous = new Array[Byte](rowBytes)
+    var current = new Array[Byte](rowBytes)
+    val filtered = Array.fill(if rowFilter == PngFilter.Adaptive then 5 else 1)(
+      new Array[Byte](rowBytes + 1)
+    )
+
+    val deflater = new Deflater(compressionLevel, true)
+    val output = new ByteArrayOutputStream()
+    val buffer = new Array[Byte](BufferSize)
+    val adler = new Adler32()
+
+    if from > 0 then format.raw(reader, from - 1, previous)
+
+    var y = from
+    while y < until do {
+      format.raw(reader, y, current)
+      val row = filterRow(rowFilter, current, previous, bpp, filtered)
+      adler.update(row, 0, rowBytes + 1)
+      deflater.setInput(row, 0, rowBytes + 1)
+      while !deflater.needsInput() do {
+        val n = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH)
+        output.write(buffer, 0, n)
+      }
+
+      val swap = previous
+      previous = current
+      current = swap
+      y = y + 1
+    }
+
+    if last then {
+      deflater.finish()
+      while !deflater.finished() do {
+        val n = deflater.deflate(buffer)
+        output.write(buffer, 0, n)
+      }
+    } else {
+      // Flush to a byte boundary without ending the stream, so the next band
+      // can follow on
+      var n = buffer.length
+      while n == buffer.length do {
+        n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH)
+        output.write(buffer, 0, n)
+      }
+    }
+    deflater.end()
+
+    Band(
+      output.toByteArray(),
+      adler.getValue(),
+      (until - from).toLong * (rowBytes + 1)
+    )
+  }
+}
+object PngEncoder {
+
+  /** Compress with deflate level 6, choose the best filter for each row, and
+    * reduce colors when possible.
+    */
+  val default: PngEncoder =
+    PngEncoder(
+      6,
+      PngFilter.Adaptive,
+      Runtime.getRuntime().availableProcessors(),
+      true
+    )
+
+  /** Encode as quickly as possible, at the cost of larger files. */
+  val fast: PngEncoder =
+    PngEncoder(
+      1,
+      PngFilter.Sub,
+      Runtime.getRuntime().availableProcessors(),
+      false
+    )
+
+  /** Encode the smallest files, at the cost of encoding time. */
+  val small: PngEncoder =
+    default.withCompressionLevel(9)
+
+  private val Signature: Array[Byte] =
+    Array(0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n').map(_.toByte)
+  private val Empty: Array[Byte] = Array.empty
+
+  /** Bands are at least this many bytes, before compression, so that small
+    * images are not split.
+    */
+  private val MinBandBytes = 128 * 1024
+  private val BufferSize = 64 * 1024
+
+  /** A band of rows compressed as part of a deflate stream, with the Adler-32
+    * checksum and length of the uncompressed bytes.
+    */
+  private final case class Band(
+      compressed: Array[Byte],
+      adler: Long,
+      length: Long
+  )
+
+  private enum ColorType(val code: Int, val channels: Int) {
+    case Gray extends ColorType(0, 1)
+    case Rgb extends ColorType(2, 3)
+    case Indexed extends ColorType(3, 1)
+    case GrayAlpha extends ColorType(4, 2)
+    case Rgba extends ColorType(6, 4)
+  }
+
+  /** The colors of an indexed image. Colors that are not opaque come first, so
+    * the alpha table only needs an entry for each of them.
+    */
+  private final class Palette(colors: Array[Int]) {
+    val index: IntMap = IntMap()
+    colors.indices.foreach(i => index.put(colors(i), i))
+
+    val rgb: Array[Byte] =
+      colors.flatMap(c => Array((c >>> 16).toByte, (c >>> 8).toByte, c.toByte))
+    val alpha: Array[Byte] =
+      colors.takeWhile(c => (c >>> 24) != 0xff).map(c => (c >>> 24).toByte)
+
+    val size: Int = colors.length
+  }
+
+  /** How the pixels are stored in the PNG. */
+  private final case class Format(
+      colorType: ColorType,
+      bitDepth: Int,
+      palette: Option[Palette]
+  ) {
+    def rowBytes(width: Int): Int =
+      (width * colorType.channels * bitDepth + 7) / 8
+
+    /** The distance, in bytes, to the corresponding byte of the previous pixel,
+      * as used by filters.
+      */
+    def filterBytesPerPixel: Int =
+      ((colorType.channels * bitDepth) / 8).max(1)
+
+    /** Write the samples for row y into row. */
+    def raw(reader: Reader, y: Int, row: Array[Byte]): Unit = {
+      val width = reader.width
+      val data = reader.read(y)
+      val offset = reader.offset
+      val opaque = reader.opaque
+      var x = 0
+      colorType match {
+        case ColorType.Gray =>
+          while x < width do {
+            row(x) = data(offset + x).toByte
+            x = x + 1
+          }
+
+        case ColorType.GrayAlpha =>
+          while x < width do {
+            val p = data(offset + x) | opaque
+            row(2 * x) = p.toByte
+            row(2 * x + 1) = (p >>> 24).toByte
+            x = x + 1
+          }
+
+        case ColorType.Rgb =>
+          while x < width do {
+            val p = data(offset + x)
+            row(3 * x) = (p >>> 16).toByte
+            row(3 * x + 1) = (p >>> 8).toByte
+            row(3 * x + 2) = p.toByte
+            x = x + 1
+          }
+
+        case ColorType.Rgba =>
+          while x < width do {
+            val p = data(offset + x) | opaque
+            row(4 * x) = (p >>> 16).toByte
+            row(4 * x + 1) = (p >>> 8).toByte
+            row(4 * x + 2) = p.toByte
+            row(4 * x + 3) = (p >>> 24).toByte
+            x = x + 1
+          }
+
+        case ColorType.Indexed =>
+          val index = palette.get.index
+          if bitDepth == 8 then
+            while x < width do {
+              row(x) = index.get(data(offset + x) | opaque).toByte
+              x = x + 1
+            }
+          else {
+            java.util.Arrays.fill(row, 0.toByte)
+            val perByte = 8 / bitDepth
+            while x < width do {
+              val i = index.get(data(offset + x) | opaque)
+              val shift = 8 - bitDepth * (x % perByte + 1)
+              row(x / perByte) = (row(x / perByte) | (i << shift)).toByte
+              x = x + 1
+            }
+          }
+      }
+    }
+  }
+  private object Format {
+
+    /** Choose the smallest format that represents the pixels exactly. */
+    def choose(pixels: Pixels, reduceColors: Boolean): Format =
+      if !reduceColors then
+        if pixels.opaqueType then Format(ColorType.Rgb, 8, None)
+        else Format(ColorType.Rgba, 8, None)
+      else {
+        val reader = pixels.reader()
+        val colors = IntMap()
+        var opaque = true
+        var gray = true
+        var y = 0
+        while y < pixels.height do {
+          val data = reader.read(y)
+          var x = 0
+          while x < pixels.width do {
+            val p = data(reader.offset + x) | reader.opaque
+            if (p >>> 24) != 0xff then opaque = false
+            val r = (p >>> 16) & 0xff
+            if r != ((p >>> 8) & 0xff) || r != (p & 0xff) then gray = false
+            if colors.size <= 256 then colors.put(p, 0)
+            x = x + 1
+          }
+          y = y + 1
+        }
+
+        if opaque && gray then Format(ColorType.Gray, 8, None)
+        else if colors.size <= 256 then {
+          val palette = Palette(
+            colors.entries.sortBy(c => if (c >>> 24) == 0xff then 1 else 0)
+          )
+          val depth =
+            if palette.size <= 2 then 1
+            else if palette.size <= 4 then 2
+            else if palette.size <= 16 then 4
+            else 8
+          Format(ColorType.Indexed, depth, Some(palette))
+        } else if gray then Format(ColorType.GrayAlpha, 8, None)
+        else if opaque then Format(ColorType.Rgb, 8, None)
+        else Format(ColorType.Rgba, 8, None)
+      }
+  }
+
+  /** Access to the ARGB pixels of an image. */
+  private final class Pixels(image: BufferedImage) {
+    val width: Int = image.getWidth()
+    val height: Int = image.getHeight()
+
+    private val raster = image.getRaster()
+    private val direct: Boolean =
+      (image.getType() == BufferedImage.TYPE_INT_ARGB ||
+        image.getType() == BufferedImage.TYPE_INT_RGB) &&
+        raster.getDataBuffer().isInstanceOf[DataBufferInt] &&
+        raster.getSampleModel().isInstanceOf[SinglePixelPackedSampleModel]
+
+    /** True if the image has no alpha channel. */
+    val opaqueType: Boolean = !image.getColorModel().hasAlpha()
+
+    /** A reader for the pixels. Each thread must use its own reader. */
+    def reader(): Reader =
+      if direct then {
+        val buffer = raster.getDataBuffer().asInstanceOf[DataBufferInt]
+        val stride = raster
+          .getSampleModel()
+          .asInstanceOf[SinglePixelPackedSampleModel]
+          .getScanlineStride()
+        val base = buffer.getOffset() -
+          raster.getSampleModelTranslateY() * stride -
+          raster.getSampleModelTranslateX()
+
+        new Reader(
+          width,
+          if opaqueType then 0xff000000 else 0,
+          buffer.getData(),
+          base,
+          stride,
+          null
+        )
+      } else new Reader(width, 0, null, 0, 0, image)
+  }
+
+  /** Reads rows of ARGB pixels, either directly from the raster's data or, for
+    * other types of image, by converting into a buffer. After calling `read`,
+    * the pixels of the row start at `offset` in the returned array. Pixels must
+    * be or'ed with `opaque` to set their alpha.
+    */
+  private final class Reader(
+      val width: Int,
+      val opaque: Int,
+      data: Array[Int],
+      base: Int,
+      stride: Int,
+      image: BufferedImage
+  ) {
+    private val row: Array[Int] =
+      if data == null then new Array[Int](width) else null
+    var offset: Int = 0
+
+    def read(y: Int): Array[Int] =
+      if data != null then {
+        offset = base + y * stride
+        data
+      } else {
+        image.getRGB(0, y, width, 1, row, 0, width)
+        offset = 0
+        row
+      }
+  }
+
+  /** Apply the filter to the current row, returning an array holding the filter
+    * type followed by the filtered row.
+    */
+  private def filterRow(
+      filter: PngFilter,
+      current: Array[Byte],
+      previous: Array[Byte],
+      bpp: Int,
+      filtered: Array[Array[Byte]]
+  ): Array[Byte] =
+    filter match {
+      case PngFilter.Adaptive =>
+        // Choose the filter with the smallest sum of absolute differences
+        var best = filtered(0)
+        var bestSum = Long.MaxValue
+        var code = 0
+        while code < 5 do {
+          val out = filtered(code)
+          applyFilter(code, current, previous, bpp, out)
+          var sum = 0L
+          var i = 1
+          while i < out.length do {
+            sum = sum + math.abs(out(i).toInt)
+            i = i + 1
+          }
+          if sum < bestSum then {
+            bestSum = sum
+            best = out
+          }
+          code = code + 1
+        }
+        best
+
+      case other =>
+        applyFilter(other.code, current, previous, bpp, filtered(0))
+        filtered(0)
+    }
+
+  private def applyFilter(
+      code: Int,
+      current: Array[Byte],
+      previous: Array[Byte],
+      bpp: Int,
+      out: Array[Byte]
+  ): Unit = {
+    out(0) = code.toByte
+    val n = current.length
+    var i = 0
+    code match {
+      case 0 =>
+        System.arraycopy(current, 0, out, 1, n)
+
+      case 1 =>
+        while i < n do {
+          val a = if i >= bpp then current(i - bpp) else 0
+          out(i + 1) = (current(i) - a).toByte
+          i = i + 1
+        }
+
+      case 2 =>
+        while i < n do {
+          out(i + 1) = (current(i) - previous(i)).toByte
+          i = i + 1
+        }
+
+      case 3 =>
+        while i < n do {
+          val a = if i >= bpp then current(i - bpp) & 0xff else 0
+          val b = previous(i) & 0xff
+          out(i + 1) = (current(i) - ((a + b) >>> 1)).toByte
+          i = i + 1
+        }
+
+      case _ =>
+        while i < n do {
+          val a = if i >= bpp then current(i - bpp) & 0xff else 0
+          val b = previous(i) & 0xff
+          val c = if i >= bpp then previous(i - bpp) & 0xff else 0
+          out(i + 1) = (current(i) - paeth(a, b, c)).toByte
+          i = i + 1
+        }
+    }
+  }
+
+  private def paeth(a: Int, b: Int, c: Int): Int = {
+    val p = a + b - c
+    val pa = math.abs(p - a)
+    val pb = math.abs(p - b)
+    val pc = math.abs(p - c)
+    if pa <= pb && pa <= pc then a else if pb <= pc then b else c
+  }
+
+  private def header(pixels: Pixels, format: Format): Array[Byte] = {
+    val bytes = new ByteArrayOutputStream(13)
+    val out = new DataOutputStream(bytes)
+    out.writeInt(pixels.width)
+    out.writeInt(pixels.height)
+    out.writeByte(format.bitDepth)
+    out.writeByte(format.colorType.code)
+    out.writeByte(0) // Deflate compression
+    out.writeByte(0) // Adaptive filtering
+    out.writeByte(0) // No interlacing
+    bytes.toByteArray()
+  }
+
+  /** The zlib header for a deflate stream compressed at the given level. */
+  private def zlibHeader(level: Int): Array[Byte] = {
+    val cmf = 0x78
+    val flevel =
+      if level <= 1 then 0
+      else if level <= 5 then 1
+      else if level == 6 then 2
+      else 3
+    val flg = flevel << 6
+    Array(cmf.toByte, (flg + 31 - ((cmf * 256 + flg) % 31)).toByte)
+  }
+
+  /** Write a chunk whose data is the concatenation of parts. */
+  private def writeChunk(
+      out: DataOutputStream,
+      chunkType: String,
+      parts: Array[Byte]*
+  ): Unit = {
+    val typeBytes = chunkType.getBytes(StandardCharsets.US_ASCII)
+    val crc = new CRC32()
+    crc.update(typeBytes)
+    out.writeInt(parts.map(_.length).sum)
+    out.write(typeBytes)
+    parts.foreach { part =>
+      out.write(part)
+      crc.update(part)
+    }
+    out.writeInt(crc.getValue().toInt)
+  }
+
+  /** The Adler-32 checksum of two byte sequences concatenated, given the
+    * checksum of each and the length of the second. This is zlib's
+    * `adler32_combine`.
+    */
+  private[effect] def combineAdler32(
+      adler1: Long,
+      adler2: Long,
+      length2: Long
+  ): Long = {
+    val Base = 65521L
+    val rem = length2 % Base
+    var sum1 = adler1 & 0xffff
+    var sum2 = (rem * sum1) % Base
+    sum1 = sum1 + (adler2 & 0xffff) + Base - 1
+    sum2 = sum2 + ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) +
+      Base - rem
+    if sum1 >= Base then sum1 = sum1 - Base
+    if sum1 >= Base then sum1 = sum1 - Base
+    if sum2 >= (Base << 1) then sum2 = sum2 - (Base << 1)
+    if sum2 >= Base then sum2 = sum2 - Base
+    sum1 | (sum2 << 16)
+  }
+
+  /** A small open addressing map from ARGB colors to palette indices. It is
+    * only used for palettes, so holds at most a few hundred colors.
+    */
+  private final class IntMap() {
+    private val Capacity = 1024
+    private val keys = new Array[Int](Capacity)
+    private val values = new Array[Int](Capacity)
+    private val used = new Array[Boolean](Capacity)
+    var size: Int = 0
+
+    private def slot(key: Int): Int = {
+      var i = (key * 0x9e3779b9) >>> 22
+      while used(i) && keys(i) != key do i = (i + 1) & (Capacity - 1)
+      i
+    }
+
+    def put(key: Int, value: Int): Unit = {
+      val i = slot(key)
+      if !used(i) then {
+        used(i) = true
+        keys(i) = key
+        size = size + 1
+      }
+      values(i) = value
+    }
+
+    def get(key: Int): Int =
+      values(slot(key))
+
+    def entries: Array[Int] =
+      keys.indices.filter(used).map(keys).toArray
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle.java2d.effect
+
+import cats.effect.IO
+import cats.effect.std.Dispatcher
+import cats.effect.std.Queue
+import doodle.java2d.algebra.reified.Reified
+import fs2.Stream
+import jdk.jfr.Category
+import jdk.jfr.Description
+import jdk.jfr.Label
+import jdk.jfr.Name
+import jdk.jfr.Timespan
+
+import java.util.concurrent.CopyOnWriteArrayList
+import scala.collection.mutable
+import scala.concurrent.duration.*
+
+/** Where the time went in rendering one frame on a [[Canvas]], or one picture
+  * with a writer. Metrics are only recorded when the [[Frame]] enables them,
+  * with `Frame.withMetrics`, and are published to the [[MetricsRecorder]] given
+  * to it.
+  *
+  * @param source
+  *   What did the rendering: `"canvas"`, or the format of a writer such as
+  *   `"png"`.
+  * @param queued
+  *   The longest time a picture waited between being passed to `Canvas.render`
+  *   and being rendered. Zero for writers.
+  * @param layout
+  *   The time spent laying out pictures, i.e. running the `Finalized` stage.
+  * @param reification
+  *   The time spent converting laid out pictures into `Reified` instructions.
+  * @param rasterization
+  *   The time spent drawing `Reified` instructions with Java2D.
+  * @param instructions
+  *   The number of `Reified` instructions of each type, keyed by the name of
+  *   the type.
+  * @param images
+  *   The number of images allocated to render the frame. Blended layers are
+  *   drawn into images from the shared `LayerPool`, which are not counted here.
+  * @param skippedPictures
+  *   The number of pictures that were not drawn because a later picture in the
+  *   same frame would be drawn over them.
+  * @param droppedRedraws
+  *   The number of redraw events dropped since the last frame because they were
+  *   not consumed in time.
+  */
+final case class RenderMetrics(
+    source: String,
+    queued: FiniteDuration,
+    layout: FiniteDuration,
+    reification: FiniteDuration,
+    rasterization: FiniteDuration,
+    instructions: Map[String, Int],
+    images: Int,
+    skippedPictures: Int,
+    droppedRedraws: Long
+)
+object RenderMetrics {
+
+  /** Count the `Reified` instructions of each type, including those inside
+    * layers.
+    */
+  def count(reified: List[Reified]): Map[String, Int] = {
+    val counts = mutable.HashMap.empty[String, Int]
+    def loop(reified: List[Reified]): Unit =
+      reified.foreach { r =>
+        counts.update(r.productPrefix, counts.getOrElse(r.productPrefix, 0) + 1)
+        r match {
+          case Reified.Layer(_, _, _, contents) => loop(contents)
+          case _                                => ()
+        }
+      }
+
+    loop(reified)
+    counts.toMap
+  }
+
+  /** Send metrics to the [[MetricsRecorder]] of the [[Frame]] and, if the
+    * [[Frame]] asks for it, commit them as a JFR event.
+    */
+  def publish(metrics: RenderMetrics, instrumentation: Instrumentation): Unit =
+    instrumentation match {
+      case Instrumentation.Disabled          => ()
+      case Instrumentation.Metrics(recorder) => recorder.send(metrics)
+      case Instrumentation.MetricsAndJfr(recorder) =>
+        recorder.send(metrics)
+        RenderEvent.commit(metrics)
+    }
+}
+
+/** Receives the [[RenderMetrics]] of the canvases and writers whose [[Frame]]
+  * it is given to, with `Frame.withMetrics`, and publishes them to [[stream]].
+  * Each recorder has its own subscribers, so metrics from canvases and writers
+  * using different recorders are kept apart.
+  */
+final class MetricsRecorder {
+  private val listeners: CopyOnWriteArrayList[RenderMetrics => Unit] =
+    new CopyOnWriteArrayList()
+
+  /** A stream of the metrics published to this recorder, starting from when the
+    * stream is run. If the stream falls behind, the oldest metrics are dropped.
+    */
+  def stream: Stream[IO, RenderMetrics] =
+    for {
+      dispatcher <- Stream.resource(Dispatcher.sequential[IO])
+      queue <- Stream.eval(Queue.circularBuffer[IO, RenderMetrics](64))
+      listener = (m: RenderMetrics) =>
+        dispatcher.unsafeRunAndForget(queue.offer(m))
+      _ <- Stream.bracket(IO(listeners.add(listener)))(_ =>
+        IO(listeners.remove(listener)).void
+      )
+      metrics <- Stream.fromQueueUnterminated(queue)
+    } yield metrics
+
+  private[effect] def send(metrics: RenderMetrics): Unit =
+    listeners.forEach(listener => listener(metrics))
+}
+
+/** Whether a [[Frame]] records [[RenderMetrics]]. */
+enum Instrumentation {
+
+  /** Do not record metrics. */
+  case Disabled
+
+  /** Publish metrics to the recorder. */
+  case Metrics(recorder: MetricsRecorder)
+
+  /** Publish metrics to the recorder, and commit each as a
+    * `doodle.java2d.Render` JFR event.
+    */
+  case MetricsAndJfr(recorder: MetricsRecorder)
+}
+
+/** The JFR event for [[RenderMetrics]]. */
+@Name("doodle.java2d.Render")
+@Label("Doodle Render")
+@Category(Array("Doodle"))
+@Description("Time spent in each stage of rendering a frame or picture")
+final class RenderEvent extends jdk.jfr.Event {
+  @Label("Source")
+  var source: String = ""
+
+  @Label("Queued")
+  @Timespan(Timespan.NANOSECONDS)
+  var queued: Long = 0L
+
+  @Label("Layout")
+  @Timespan(Timespan.NANOSECONDS)
+  var layout: Long = 0L
+
+  @Label("Reification")
+  @Timespan(Timespan.NANOSECONDS)
+  var reification: Long = 0L
+
+  @Label("Rasterization")
+  @Timespan(Timespan.NANOSECONDS)
+  var rasterization: Long = 0L
+
+  @Label("Instructions")
+  @Description("The number of instructions of each type")
+  var instructions: String = ""
+
+  @Label("Images")
+  var images: Int = 0
+
+  @Label("Skipped Pictures")
+  var skippedPictures: Int = 0
+
+  @Label("Dropped Redraws")
+  var droppedRedraws: Long = 0L
+}
+object RenderEvent {
+  def commit(metrics: RenderMetrics): Unit = {
+    val event = new RenderEvent()
+    if event.isEnabled() then {
+      event.source = metrics.source
+      event.queued = metrics.queued.toNanos
+      event.layout = metrics.layout.toNanos
+      event.reification = metrics.reification.toNanos
+      event.rasterization = metrics.rasterization.toNanos
+      event.instructions = metrics.instructions.toList.sorted
+        .map((name, count) => s"$name=$count")
+        .mkString(",")
+      event.images = metrics.images
+      event.skippedPictures = metrics.skippedPictures
+      event.droppedRedraws = metrics.droppedRedraws
+      event.commit()
+    }
+  }
+}
@@ -16,21 +16,24 @@
 
 package doodle.java2d.effect
 
-import doodle.algebra.generic.Finalized
-import doodle.core.Transform
 import doodle.java2d.Picture
 import doodle.java2d.algebra.Algebra
-import doodle.java2d.algebra.reified.Reification
-import doodle.java2d.algebra.reified.Reified
 
+import java.awt.image.BufferedImage
 import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executor
 
 /** Event that is passed into Java2DPanel to request rendering of a Picture.
   * This crosses the boundary between the Cats Effect and Swing threading model.
+  *
+  * The executor runs work for a request that is not drawn, and is usually the
+  * compute pool of the Cats Effect runtime that made the request.
   */
 private[effect] final case class RenderRequest[A](
     picture: Picture[A],
-    onComplete: CompletableFuture[A]
+    onComplete: CompletableFuture[A],
+    executor: Executor,
+    created: Long = System.nanoTime()
 ) {
 
   /** Convert the picture into a form that can drawn and as a side effect
@@ -40,14 +43,31 @@ private[effect] final case class RenderRequest[A](
       frame: Frame,
       algebra: Algebra
   ): RenderResult[A] = {
-    val drawing: Finalized[Reification, A] = picture(algebra)
-    val (bb, rdr) = drawing.run(List.empty).value
-    val (w, h) = Java2d.size(bb, frame.size)
-    val (_, fa) = rdr.run(Transform.identity).value
-    val (reified, a) = fa.run.value
-
-    val result = RenderResult(reified, bb, w, h, a)
-    onComplete.complete(a)
+    val queued = System.nanoTime() - created
+    val result =
+      RenderResult.render(picture, algebra, frame.size).copy(queued = queued)
+    onComplete.complete(result.value)
     result
   }
+
+  /** Complete onComplete without drawing the picture, because it would be
+    * overdrawn by a later picture in the same frame.
+    *
+    * The value of a picture is only known once it has been laid out and
+    * reified, so this is still done, but on the request's executor and with an
+    * offscreen algebra, so it does not hold up the Swing thread.
+    */
+  def skip(): Unit = {
+    onComplete.completeAsync(
+      () => {
+        val image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB)
+        val gc = Java2d.setup(image.createGraphics())
+        try
+          RenderResult.render(picture, Algebra(gc), Size.fitToPicture(0)).value
+        finally gc.dispose()
+      },
+      executor
+    )
+    ()
+  }
 }
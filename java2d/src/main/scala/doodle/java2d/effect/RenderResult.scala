@@ -16,17 +16,58 @@
 
 package doodle.java2d.effect
 
+import doodle.algebra.generic.Finalized
 import doodle.core.BoundingBox
+import doodle.core.Transform
+import doodle.java2d.Picture
+import doodle.java2d.algebra.Algebra
+import doodle.java2d.algebra.reified.Reification
 import doodle.java2d.algebra.reified.Reified
 
 /** Event that is returned from Java2DPanel to represent result of rendering of
   * a Picture. This crosses the boundary between the Cats Effect and Swing
   * threading model.
+  *
+  * The time, in nanoseconds, spent in each stage of rendering, and the number
+  * of images allocated along the way, are recorded for [[RenderMetrics]].
   */
 private[effect] final case class RenderResult[A](
     reified: List[Reified],
     boundingBox: BoundingBox,
     width: Double,
     height: Double,
-    value: A
+    value: A,
+    queued: Long = 0L,
+    layout: Long = 0L,
+    reification: Long = 0L,
+    images: Int = 0
 )
+private[effect] object RenderResult {
+
+  /** Lay out the picture and convert it into `Reified` instructions, timing
+    * each stage.
+    */
+  def render[A](
+      picture: Picture[A],
+      algebra: Algebra,
+      size: Size
+  ): RenderResult[A] = {
+    val start = System.nanoTime()
+    val drawing: Finalized[Reification, A] = picture(algebra)
+    val (bb, rdr) = drawing.run(List.empty).value
+    val (w, h) = Java2d.size(bb, size)
+    val laidOut = System.nanoTime()
+    val (_, fa) = rdr.run(Transform.identity).value
+    val (reified, a) = fa.run.value
+
+    RenderResult(
+      reified,
+      bb,
+      w,
+      h,
+      a,
+      layout = laidOut - start,
+      reification = System.nanoTime() - laidOut
+    )
+  }
+}
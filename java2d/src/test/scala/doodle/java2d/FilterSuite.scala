@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle.java2d
+
+import cats.effect.IO
+import doodle.core.Color
+import doodle.syntax.all.*
+import munit.CatsEffectSuite
+
+import java.awt.image.BufferedImage
+
+class FilterSuite extends CatsEffectSuite {
+  val square: Picture[Unit] =
+    Picture.square(40).fillColor(Color.red).noStroke
+
+  def render(picture: Picture[Unit]): IO[BufferedImage] =
+    picture
+      .margin(20)
+      .bufferedImageToIO()
+      .map((_, image) => image)
+
+  /** The color of the pixel at the given offset from the centre of the image,
+    * with y increasing downwards.
+    */
+  def pixel(image: BufferedImage, dx: Int, dy: Int): Int =
+    image.getRGB(image.getWidth() / 2 + dx, image.getHeight() / 2 + dy)
+
+  val white = 0xffffffff
+  val red = 0xffff0000
+  val black = 0xff000000
+
+  test("blurred pictures spread beyond their edges") {
+    for {
+      sharp <- render(square)
+      blurred <- render(square.blur(3.0))
+    } yield {
+      assertEquals(sharp.getWidth(), blurred.getWidth())
+      // Just outside the square's left edge
+      assertEquals(pixel(sharp, -22, 0), white)
+      assertNotEquals(pixel(blurred, -22, 0), white)
+      // The centre is unchanged
+      assertEquals(pixel(blurred, 0, 0), red)
+    }
+  }
+
+  test("blur scales with the picture") {
+    for {
+      small <- render(square.blur(2.0))
+      large <- render(square.blur(2.0).scale(2, 2))
+    } yield {
+      // The same relative point just outside the left edge
+      val s = pixel(small, -22, 0) & 0xff
+      val l = pixel(large, -44, 0) & 0xff
+      assert(math.abs(s - l) < 24, s"$s and $l")
+    }
+  }
+
+  test("drop shadows are drawn below and to the right") {
+    render(square.dropShadow(6, 6, 0.0, Color.black)).map { image =>
+      assertEquals(pixel(image, 0, 0), red)
+      assertEquals(pixel(image, 23, 23), black)
+      assertEquals(pixel(image, -23, -23), white)
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package algebra
+
+import doodle.algebra.generic.BlendMode
+import doodle.core.Color
+import doodle.java2d.effect.Center
+import doodle.java2d.effect.Java2d
+import doodle.java2d.effect.Size
+import doodle.syntax.all.*
+import munit.CatsEffectSuite
+
+import java.awt.image.BufferedImage
+
+class BlendSuite extends CatsEffectSuite {
+  def blend(mode: BlendMode, source: Int, backdrop: Int): Int = {
+    val result = new Array[Float](4)
+    BlendComposite.blend(mode, source, backdrop, result)
+    def c(v: Float): Int = math.round(v * 255.0f)
+    (c(result(0)) << 24) | (c(result(1)) << 16) | (c(result(2)) << 8) |
+      c(result(3))
+  }
+
+  def render(picture: doodle.java2d.Picture[Unit]): BufferedImage =
+    Java2d
+      .renderBufferedImage(
+        Size.fitToPicture(0),
+        Center.CenteredOnPicture,
+        None,
+        picture
+      )((w, h) => new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB))
+      .unsafeRunSync()
+      ._1
+
+  def center(image: BufferedImage): Int =
+    image.getRGB(image.getWidth() / 2, image.getHeight() / 2)
+
+  test("separable blend modes follow the compositing specification") {
+    val source = 0xff804020
+    val backdrop = 0xff408060
+
+    assertEquals(blend(BlendMode.Normal, source, backdrop), source)
+    assertEquals(blend(BlendMode.Multiply, source, backdrop), 0xff20200c)
+    assertEquals(blend(BlendMode.Screen, source, backdrop), 0xffa0a074)
+    assertEquals(blend(BlendMode.Darken, source, backdrop), 0xff404020)
+    assertEquals(blend(BlendMode.Lighten, source, backdrop), 0xff808060)
+    assertEquals(blend(BlendMode.Difference, source, backdrop), 0xff404040)
+  }
+
+  test("non-separable blend modes keep the luminosity they should") {
+    val gray = 0xff808080
+    val red = 0xffff0000
+
+    // A gray source has no hue or saturation, so the result is gray
+    val hue = blend(BlendMode.Hue, gray, red)
+    assertEquals((hue >>> 16) & 0xff, hue & 0xff)
+    // Luminosity from a gray source takes the backdrop's hue
+    val luminosity = blend(BlendMode.Luminosity, gray, red)
+    assert(((luminosity >>> 16) & 0xff) > (luminosity & 0xff))
+  }
+
+  test("blending with a transparent backdrop gives the source") {
+    val source = 0xc0804020
+    List(BlendMode.Multiply, BlendMode.Difference, BlendMode.Color).foreach {
+      mode => assertEquals(blend(mode, source, 0x00000000), source)
+    }
+  }
+
+  test("blended pictures are blended with what is beneath them") {
+    val base = Picture.square(40).fillColor(Color.rgb(64, 128, 96)).noStroke
+    val top = Picture.square(20).fillColor(Color.rgb(128, 64, 32)).noStroke
+
+    val normal = render(top.on(base))
+    val multiplied = render(top.multiply.on(base))
+
+    assertEquals(center(normal), 0xff804020)
+    assertEquals(center(multiplied), 0xff20200c)
+    // Outside the top square the base is unchanged
+    assertEquals(multiplied.getRGB(2, 2), normal.getRGB(2, 2))
+  }
+
+  test("nested blended pictures reuse layers from the pool") {
+    val picture =
+      (1 to 6).foldLeft(
+        Picture.circle(20).fillColor(Color.crimson).noStroke
+      ) { (picture, i) =>
+        Picture
+          .circle(20.0 + i * 10)
+          .fillColor(Color.gold)
+          .noStroke
+          .on(picture.screen)
+          .difference
+      }
+
+    render(picture)
+    val allocated = LayerPool.allocated
+    render(picture)
+    render(picture)
+
+    assertEquals(LayerPool.allocated, allocated)
+  }
+
+  test("a layer that fails to draw is released and restores the context") {
+    val image = new BufferedImage(4000, 10, BufferedImage.TYPE_INT_ARGB)
+    val gc = Java2d.setup(image.createGraphics())
+    gc.translate(2000, 5)
+    val transform = gc.getTransform()
+    val composite = gc.getComposite()
+    val bounds = doodle.core.BoundingBox.centered(3990, 8)
+
+    intercept[IllegalStateException] {
+      Graphics2DGraphicsContext.layer(gc)(
+        doodle.core.Transform.identity,
+        BlendMode.Multiply,
+        bounds
+      )(_ => throw new IllegalStateException("draw failed"))
+    }
+    assertEquals(gc.getTransform(), transform)
+    assertEquals(gc.getComposite(), composite)
+
+    // The layer's image went back to the pool, so drawing the same layer
+    // again reuses it
+    val allocated = LayerPool.allocated
+    Graphics2DGraphicsContext.layer(gc)(
+      doodle.core.Transform.identity,
+      BlendMode.Multiply,
+      bounds
+    )(_ => ())
+    gc.dispose()
+    assertEquals(LayerPool.allocated, allocated)
+  }
+}
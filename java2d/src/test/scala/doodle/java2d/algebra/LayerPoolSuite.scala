@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle.java2d.algebra
+
+import munit.FunSuite
+
+class LayerPoolSuite extends FunSuite {
+  val MiB: Long = 1024L * 1024L
+
+  test("layers are at most 63 pixels larger than requested in each dimension") {
+    val pool = new LayerPool(16 * MiB)
+    val image = pool.acquire(1100, 1100)
+    assertEquals(image.getWidth(), 1152)
+    assertEquals(image.getHeight(), 1152)
+
+    val small = pool.acquire(1, 70)
+    assertEquals(small.getWidth(), 64)
+    assertEquals(small.getHeight(), 128)
+  }
+
+  test("released images are reused for layers of a similar size") {
+    val pool = new LayerPool(16 * MiB)
+    val image = pool.acquire(100, 100)
+    image.setRGB(10, 10, 0xff00ff00)
+    pool.release(image)
+
+    val reused = pool.acquire(110, 120)
+    assert(reused eq image)
+    assertEquals(reused.getRGB(10, 10), 0)
+    assertEquals(pool.allocated, 1L)
+    assertEquals(pool.reused, 1L)
+    assertEquals(pool.retainedBytes, 0L)
+  }
+
+  test("retained bytes stay within the limit") {
+    val pool = new LayerPool(4 * MiB)
+    // Each image is 512 by 512 pixels, which is 1MiB
+    val images = List.fill(10)(pool.acquire(512, 512))
+    images.foreach { image =>
+      pool.release(image)
+      assert(pool.retainedBytes <= pool.maxRetainedBytes)
+    }
+    assertEquals(pool.retainedBytes, 4 * MiB)
+
+    // The most recently released images are kept
+    val reused = List.fill(4)(pool.acquire(512, 512))
+    assert(reused.forall(image => images.drop(6).exists(_ eq image)))
+    assertEquals(pool.retainedBytes, 0L)
+  }
+
+  test("images larger than the limit are not retained") {
+    val pool = new LayerPool(1 * MiB)
+    pool.release(pool.acquire(1024, 1024))
+    assertEquals(pool.retainedBytes, 0L)
+  }
+}
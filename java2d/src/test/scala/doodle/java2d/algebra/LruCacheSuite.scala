@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle.java2d.algebra
+
+import doodle.core.font.Font
+import munit.FunSuite
+
+import java.awt.image.BufferedImage
+
+class LruCacheSuite extends FunSuite {
+  test("values are computed once for each key and counted") {
+    var computed = 0
+    val cache = new LruCache[String, Int](10)
+    def lookup(key: String) =
+      cache.getOrElseUpdate(
+        key, {
+          computed = computed + 1
+          key.length
+        }
+      )
+
+    assertEquals(lookup("doodle"), 6)
+    assertEquals(lookup("doodle"), 6)
+    assertEquals(lookup("java2d"), 6)
+
+    assertEquals(computed, 2)
+    assertEquals(cache.hits, 1L)
+    assertEquals(cache.misses, 2L)
+    assertEquals(cache.size, 2)
+  }
+
+  test("the least recently used entry is discarded when full") {
+    val cache = new LruCache[Int, Int](2)
+    cache.getOrElseUpdate(1, 1)
+    cache.getOrElseUpdate(2, 2)
+    // Use 1 so that 2 is the least recently used
+    cache.getOrElseUpdate(1, -1)
+    cache.getOrElseUpdate(3, 3)
+
+    assertEquals(cache.size, 2)
+    assertEquals(cache.getOrElseUpdate(1, -1), 1)
+    assertEquals(cache.getOrElseUpdate(2, -2), -2)
+  }
+
+  test("resizing discards entries that no longer fit") {
+    val cache = new LruCache[Int, Int](10)
+    (1 to 10).foreach(i => cache.getOrElseUpdate(i, i))
+    cache.resize(3)
+
+    assertEquals(cache.capacity, 3)
+    assertEquals(cache.size, 3)
+    assertEquals(cache.getOrElseUpdate(10, -10), 10)
+    assertEquals(cache.getOrElseUpdate(1, -1), -1)
+  }
+
+  test("the cache can be used from several threads") {
+    val cache = new LruCache[Int, Int](64)
+    val threads = List.tabulate(8) { t =>
+      new Thread(() =>
+        (0 until 10000).foreach { i =>
+          val key = (i * 7 + t) % 100
+          assertEquals(cache.getOrElseUpdate(key, key * 2), key * 2)
+        }
+      )
+    }
+    threads.foreach(_.start())
+    threads.foreach(_.join())
+
+    assertEquals(cache.hits + cache.misses, 80000L)
+    assert(cache.size <= 64)
+  }
+
+  test("text bounds are measured once and returned as a copy") {
+    val gc = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB)
+      .createGraphics()
+    val font = Font.defaultSansSerif
+    val text = "LruCacheSuite"
+    // Other suites may use the cache at the same time, so the counts can only
+    // be checked to have increased
+    val hits = Java2D.textBoundsCache.hits
+
+    val bounds1 = Java2D.textBounds(gc, text, font)
+    bounds1.setRect(0, 0, 0, 0)
+    val bounds2 = Java2D.textBounds(gc, text, font)
+
+    assert(Java2D.textBoundsCache.hits > hits)
+    assert(bounds2.getWidth() > 0)
+    assert(Java2D.toAwtFont(font) eq Java2D.toAwtFont(font))
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package algebra
+
+import doodle.algebra.Kernel
+import doodle.core.Color
+import munit.FunSuite
+
+import java.awt.Color as AwtColor
+import java.awt.image.BufferedImage
+
+class RasterFilterSuite extends FunSuite {
+  val width = 61
+  val height = 47
+
+  /** A translucent gradient with an opaque rectangle in it. */
+  val image: BufferedImage = {
+    val image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+    for {
+      y <- 0 until height
+      x <- 0 until width
+    } image.setRGB(x, y, ((x * 4) << 24) | ((y * 5) << 16) | (x << 8) | 90)
+    val gc = image.createGraphics()
+    gc.setColor(AwtColor.orange)
+    gc.fillRect(20, 15, 12, 9)
+    gc.dispose()
+    image
+  }
+
+  /** The premultiplied channels of a pixel: alpha, red, green, and blue. */
+  def channels(image: BufferedImage, x: Int, y: Int): Array[Int] = {
+    val p = image.getRaster().getDataElements(x, y, null) match {
+      case data: Array[Int] => data(0)
+      case _                => throw new AssertionError("Not an int raster")
+    }
+    Array(p >>> 24, (p >>> 16) & 0xff, (p >>> 8) & 0xff, p & 0xff)
+  }
+
+  /** A straightforward 2D convolution of the premultiplied image, treating
+    * pixels outside the image as transparent.
+    */
+  def naive(
+      image: BufferedImage,
+      radius: Int,
+      weight: (Int, Int) => Double
+  ): Array[Array[Double]] = {
+    val pre = RasterFilter.boxBlur(image, 0)
+    Array.tabulate(width * height) { i =>
+      val x = i % width
+      val y = i / width
+      val sums = new Array[Double](4)
+      for {
+        dy <- -radius to radius
+        dx <- -radius to radius
+        if x + dx >= 0 && x + dx < width && y + dy >= 0 && y + dy < height
+      } {
+        val c = channels(pre, x + dx, y + dy)
+        val w = weight(dx, dy)
+        (0 until 4).foreach(j => sums(j) = sums(j) + w * c(j))
+      }
+      sums
+    }
+  }
+
+  def assertClose(
+      actual: BufferedImage,
+      expected: Array[Array[Double]],
+      tolerance: Double
+  )(using munit.Location): Unit =
+    for {
+      y <- 0 until height
+      x <- 0 until width
+    } {
+      val a = channels(actual, x, y)
+      val e = expected(y * width + x)
+      (0 until 4).foreach(j =>
+        assert(
+          math.abs(a(j) - e(j)) <= tolerance,
+          s"Channel $j of ($x, $y) was ${a(j)}, expected ${e(j)}"
+        )
+      )
+    }
+
+  test("box blur matches a 2D box filter") {
+    List(1, 3, 10).foreach { radius =>
+      val n = (2 * radius + 1) * (2 * radius + 1)
+      assertClose(
+        RasterFilter.boxBlur(image, radius),
+        naive(image, radius, (_, _) => 1.0 / n),
+        1.0
+      )
+    }
+  }
+
+  test("gaussian blur matches a 2D gaussian filter") {
+    List(0.8, 2.0, 5.0).foreach { sd =>
+      val radius = math.ceil(sd * 3).toInt
+      val g = (-radius to radius).map(i => math.exp(-(i * i) / (2 * sd * sd)))
+      val total = g.sum
+      assertClose(
+        RasterFilter.gaussianBlur(image, sd),
+        naive(
+          image,
+          radius,
+          (dx, dy) => g(dx + radius) * g(dy + radius) / (total * total)
+        ),
+        1.0
+      )
+    }
+  }
+
+  test("convolving with the identity kernel does not change the image") {
+    val identity = Kernel(3, 3, IArray(0, 0, 0, 0, 1, 0, 0, 0, 0))
+    val result = RasterFilter.convolve(image, identity, 1.0, 0.0)
+    val pre = RasterFilter.boxBlur(image, 0)
+
+    for {
+      y <- 0 until height
+      x <- 0 until width
+    } assertEquals(channels(result, x, y).toList, channels(pre, x, y).toList)
+  }
+
+  test("convolution rotates the kernel and repeats edge pixels") {
+    // As in feConvolveMatrix, a kernel that reads the pixel to the left moves
+    // each pixel one to the left
+    val shift = Kernel(3, 3, IArray(0, 0, 0, 1, 0, 0, 0, 0, 0))
+    val result = RasterFilter.convolve(image, shift, 1.0, 0.0)
+    val pre = RasterFilter.boxBlur(image, 0)
+
+    assertEquals(channels(result, 5, 5).toList, channels(pre, 6, 5).toList)
+    assertEquals(
+      channels(result, width - 1, 5).toList,
+      channels(pre, width - 1, 5).toList
+    )
+  }
+
+  test("drop shadows are drawn below and offset from the image") {
+    val square = new BufferedImage(40, 40, BufferedImage.TYPE_INT_ARGB)
+    val gc = square.createGraphics()
+    gc.setColor(AwtColor.white)
+    gc.fillRect(10, 10, 10, 10)
+    gc.dispose()
+
+    val result = RasterFilter.dropShadow(square, 6, 6, 0.0, Color.black)
+    // The square is unchanged
+    assertEquals(channels(result, 15, 15).toList, List(255, 255, 255, 255))
+    // The shadow is opaque black, below and to the right
+    assertEquals(channels(result, 24, 24).toList, List(255, 0, 0, 0))
+    // And nothing is above and to the left
+    assertEquals(channels(result, 8, 8).toList, List(0, 0, 0, 0))
+  }
+}
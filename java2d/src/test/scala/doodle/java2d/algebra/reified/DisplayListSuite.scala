@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle.java2d.algebra.reified
+
+import doodle.core.*
+import doodle.java2d.*
+import doodle.java2d.effect.Center
+import doodle.java2d.effect.Java2d
+import doodle.syntax.all.*
+import munit.FunSuite
+
+import java.awt.image.BufferedImage
+
+class DisplayListSuite extends FunSuite {
+  val bitmap: Picture[Unit] = {
+    val image = new BufferedImage(20, 10, BufferedImage.TYPE_INT_ARGB)
+    val gc = image.createGraphics()
+    gc.setColor(java.awt.Color.ORANGE)
+    gc.fillRect(0, 0, 10, 10)
+    gc.dispose()
+    image.toPicture[Algebra]
+  }
+
+  val picture: Picture[Unit] =
+    circle[Algebra](40)
+      .fillColor(Color.crimson)
+      .strokeWidth(3.0)
+      .beside(square[Algebra](30).fillColor(Color.royalBlue).noStroke)
+      .beside(triangle[Algebra](30, 30).strokeColor(Color.darkGreen))
+      .above(
+        OpenPath.empty
+          .moveTo(0, 0)
+          .curveTo(10, 20, 30, 20, 40, 0)
+          .path[Algebra]
+          .strokeDash(Array(3.0, 2.0))
+          .beside(
+            ClosedPath.empty
+              .lineTo(20, 0)
+              .lineTo(10, 20)
+              .path[Algebra]
+              .fillGradient(
+                Gradient.dichromaticHorizontal(Color.red, Color.blue, 20)
+              )
+          )
+          .beside(text[Algebra]("Doodle").strokeColor(Color.black))
+          .beside(bitmap)
+      )
+      .rotate(15.degrees)
+
+  def reify(picture: Picture[Unit]): (BoundingBox, List[Reified]) = {
+    val gc = Java2d.setup(
+      new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics()
+    )
+    val (bb, rdr) =
+      picture(doodle.java2d.algebra.Algebra(gc)).run(List.empty).value
+    val (_, fa) = rdr.run(Transform.identity).value
+    val (reified, _) = fa.run.value
+    (bb, reified)
+  }
+
+  def draw(bb: BoundingBox)(f: (java.awt.Graphics2D, Transform) => Unit) = {
+    val width = bb.width.toInt + 20
+    val height = bb.height.toInt + 20
+    val image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+    val gc = Java2d.setup(image.createGraphics())
+    f(gc, Java2d.transform(bb, width, height, Center.CenteredOnPicture))
+    gc.dispose()
+    image.getRGB(0, 0, width, height, null, 0, width)
+  }
+
+  test("display list renders the same pixels as the list of reified") {
+    val (bb, reified) = reify(picture)
+    val expected = draw(bb)((gc, tx) => Java2d.render(gc, reified, tx))
+    val actual =
+      draw(bb)((gc, tx) => Java2d.render(gc, DisplayList(reified), tx))
+
+    assert(expected.exists(_ != 0))
+    assert(expected.sameElements(actual))
+  }
+
+  test("display list renders blended layers the same as the list of reified") {
+    val blended =
+      square[Algebra](50)
+        .fillColor(Color.gold)
+        .on(circle[Algebra](30).fillColor(Color.crimson).multiply)
+        .difference
+        .on(picture)
+    val (bb, reified) = reify(blended)
+    val expected = draw(bb)((gc, tx) => Java2d.render(gc, reified, tx))
+    val actual =
+      draw(bb)((gc, tx) => Java2d.render(gc, DisplayList(reified), tx))
+
+    assert(reified.exists(_.isInstanceOf[Reified.Layer]))
+    assert(expected.sameElements(actual))
+  }
+
+  test("display list grows to hold all instructions") {
+    val (_, reified) = reify(picture)
+    val displayList = new DisplayList(1)
+    (1 to 100).foreach(_ => displayList.addAll(reified))
+
+    assert(reified.size > 1)
+    assertEquals(displayList.size, reified.size * 100)
+  }
+
+  test("rendering restores the original transform") {
+    val (bb, reified) = reify(picture)
+    val displayList = DisplayList(reified)
+    draw(bb) { (gc, tx) =>
+      val original = gc.getTransform()
+      displayList.render(gc, tx)
+      assertEquals(gc.getTransform(), original)
+    }
+  }
+
+  test("a built display list renders the same from several threads at once") {
+    val (bb, reified) = reify(picture)
+    val displayList = DisplayList(reified)
+    val expected = draw(bb)((gc, tx) => displayList.render(gc, tx))
+
+    val results = new Array[Array[Int]](4)
+    val threads = results.indices.map { idx =>
+      new Thread(() =>
+        results(idx) = draw(bb)((gc, tx) => displayList.render(gc, tx))
+      )
+    }
+    threads.foreach(_.start())
+    threads.foreach(_.join())
+
+    results.foreach(actual => assert(expected.sameElements(actual)))
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle.java2d.effect
+
+import cats.effect.IO
+import cats.syntax.all.*
+import munit.CatsEffectSuite
+
+import scala.concurrent.duration.*
+
+class EventRingSuite extends CatsEffectSuite {
+  val count = 200000
+
+  /** Start a thread that adds 0 until count to the queue. */
+  def produce(q: EventRing[Int]): Thread = {
+    val producer = new Thread(() => (0 until count).foreach(i => q.add(i)))
+    producer.start()
+    producer
+  }
+
+  /** Check the values a consumer received are in order, without duplicates, and
+    * end with the last value added.
+    */
+  def assertOrdered(received: Vector[Int]): Unit = {
+    assert(received.nonEmpty)
+    assert(
+      received.zip(received.tail).forall((a, b) => a < b),
+      "values were duplicated or out of order"
+    )
+    assertEquals(received.last, count - 1)
+  }
+
+  test("Sequential access returns expected values") {
+    val q = EventRing[Int](4)
+    q.add(1)
+    q.add(2)
+    q.add(3)
+    q.add(4)
+
+    assertEquals(1, q.take())
+    assertEquals(2, q.take())
+    assertEquals(3, q.take())
+    assertEquals(4, q.take())
+
+    q.add(5)
+    q.add(6)
+
+    assertEquals(5, q.take())
+    assertEquals(6, q.take())
+    assertEquals(None, q.poll())
+
+    q.add(7)
+    q.add(8)
+    q.add(9)
+    q.add(10)
+    q.add(11)
+
+    assertEquals(8, q.take())
+    assertEquals(9, q.take())
+    assertEquals(10, q.take())
+    assertEquals(11, q.take())
+  }
+
+  test("Concurrent blocking consumer sees values in order") {
+    val q = EventRing[Int](8)
+    val producer = produce(q)
+
+    val received = Vector.newBuilder[Int]
+    var last = -1
+    while last != count - 1 do {
+      last = q.take()
+      received += last
+    }
+    producer.join()
+
+    assertOrdered(received.result())
+  }
+
+  test("Concurrent stream consumer sees values in order") {
+    val q = EventRing[Int](8)
+
+    IO(produce(q))
+      .flatMap(producer =>
+        q.stream
+          .takeThrough(_ != count - 1)
+          .compile
+          .toVector
+          .flatTap(_ => IO.blocking(producer.join()))
+      )
+      .map(assertOrdered)
+  }
+
+  test("Stream consumer waits for values") {
+    val q = EventRing[Int](8)
+
+    (
+      q.stream.take(3).compile.toList,
+      IO.sleep(50.millis) >> IO {
+        q.add(1)
+        q.add(2)
+        q.add(3)
+      }
+    ).parTupled
+      .map((received, _) => assertEquals(received, List(1, 2, 3)))
+  }
+
+  test("Blocking consumer is interrupted while waiting") {
+    val q = EventRing[Int](8)
+    IO.interruptible(q.take())
+      .timeout(50.millis)
+      .attempt
+      .map(result => assert(result.isLeft))
+  }
+}
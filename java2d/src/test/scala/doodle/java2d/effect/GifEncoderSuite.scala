@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle.java2d.effect
+
+import munit.FunSuite
+
+import java.awt.Color
+import java.awt.image.BufferedImage
+import java.io.ByteArrayOutputStream
+
+class GifEncoderSuite extends FunSuite {
+  def frame(i: Int, imageType: Int): BufferedImage = {
+    val image = new BufferedImage(64, 48, imageType)
+    val g = image.createGraphics()
+    g.setColor(Color.white)
+    g.fillRect(0, 0, 64, 48)
+    g.setColor(new Color(200, 40 + i * 10, 90))
+    g.fillOval(i * 4, 10, 20, 20)
+    g.dispose()
+    image
+  }
+
+  def encode(imageType: Int, differencing: Boolean): Array[Byte] = {
+    val output = new ByteArrayOutputStream()
+    val encoder = new GifEncoder()
+    encoder.start(output)
+    encoder.setFrameDifferencing(differencing)
+    (0 until 8).foreach(i => encoder.addFrame(frame(i, imageType)))
+    encoder.finish()
+    output.toByteArray()
+  }
+
+  test("images that are not INT_ARGB encode the same as INT_ARGB images") {
+    List(false, true).foreach { differencing =>
+      val argb = encode(BufferedImage.TYPE_INT_ARGB, differencing)
+      val rgb = encode(BufferedImage.TYPE_INT_RGB, differencing)
+      val bgr = encode(BufferedImage.TYPE_3BYTE_BGR, differencing)
+
+      assert(argb.sameElements(rgb))
+      assert(argb.sameElements(bgr))
+    }
+  }
+
+  test("encoder can be reused after finishing") {
+    val encoder = new GifEncoder()
+    val outputs = (0 until 2).map { _ =>
+      val output = new ByteArrayOutputStream()
+      encoder.start(output)
+      (0 until 4).foreach(i =>
+        encoder.addFrame(frame(i, BufferedImage.TYPE_INT_ARGB))
+      )
+      encoder.finish()
+      output.toByteArray()
+    }
+
+    assert(outputs(0).sameElements(outputs(1)))
+  }
+
+  test("frames quantized with settings ignore later changes to the encoder") {
+    val frames = (0 until 4).map(i => frame(i, BufferedImage.TYPE_INT_ARGB))
+    val encoder = new GifEncoder()
+    encoder.setSize(64, 48)
+    encoder.setPalette(frames.toArray)
+    val settings = encoder.quantizeSettings()
+    val expected = encoder.quantize(frames(1))
+
+    encoder.clearPalette()
+    encoder.setSize(32, 24)
+    encoder.setTransparent(Color.white)
+    val actual = encoder.quantize(frames(1), null, settings)
+
+    assertEquals(actual.width, 64)
+    assertEquals(actual.height, 48)
+    assertEquals(actual.transIndex, -1)
+    assert(actual.colorTab.sameElements(expected.colorTab))
+    assert(actual.indexedPixels.sameElements(expected.indexedPixels))
+  }
+
+  test("translucent frames encode the same as frames drawn onto black") {
+    // Every alpha and a spread of colors, drawn over a transparent background
+    def translucent(i: Int): BufferedImage = {
+      val image = new BufferedImage(256, 48, BufferedImage.TYPE_INT_ARGB)
+      for {
+        x <- 0 until 256
+        y <- 0 until 48
+      } image.setRGB(
+        x,
+        y,
+        (x << 24) | (((y * 5 + i * 17) & 0xff) << 16) |
+          (((x + y * 3) & 0xff) << 8) | ((255 - x + i) & 0xff)
+      )
+      image
+    }
+
+    // The conversion used before INT_ARGB pixels were read directly
+    def ontoBlack(image: BufferedImage): BufferedImage = {
+      val bgr = new BufferedImage(
+        image.getWidth(),
+        image.getHeight(),
+        BufferedImage.TYPE_3BYTE_BGR
+      )
+      val g = bgr.createGraphics()
+      g.drawImage(image, 0, 0, null)
+      g.dispose()
+      bgr
+    }
+
+    def encodeFrames(frames: Seq[BufferedImage]): Array[Byte] = {
+      val output = new ByteArrayOutputStream()
+      val encoder = new GifEncoder()
+      encoder.start(output)
+      frames.foreach(f => encoder.addFrame(f))
+      encoder.finish()
+      output.toByteArray()
+    }
+
+    val frames = (0 until 4).map(translucent)
+
+    assert(
+      encodeFrames(frames).sameElements(encodeFrames(frames.map(ontoBlack)))
+    )
+  }
+}
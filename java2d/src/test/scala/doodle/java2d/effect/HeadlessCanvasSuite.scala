@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package effect
+
+import cats.effect.IO
+import doodle.core.Color
+import doodle.core.Point
+import doodle.syntax.all.*
+import fs2.Stream
+import munit.CatsEffectSuite
+
+import scala.concurrent.duration.*
+
+class HeadlessCanvasSuite extends CatsEffectSuite {
+  val frame = Frame.default.withSize(100, 100)
+
+  def square(color: Color): Picture[Unit] =
+    doodle.syntax.all.square[Algebra](50).fillColor(color).noStroke
+
+  test("frames are published as pictures are drawn") {
+    Canvas.headless(frame).use { headless =>
+      headless.frames
+        .take(2)
+        .concurrently(
+          Stream(Color.red, Color.blue)
+            .evalMap(c => headless.canvas.render(square(c)))
+            .delayBy(50.millis)
+        )
+        .compile
+        .toList
+        .map { images =>
+          assertEquals(images.map(_.getWidth()), List(100, 100))
+          assertEquals(images(0).getRGB(50, 50), 0xffff0000)
+          assertEquals(images(1).getRGB(50, 50), 0xff0000ff)
+          // Outside the square is the background
+          assertEquals(images(1).getRGB(5, 5), 0xffffffff)
+        }
+    }
+  }
+
+  test("frames and mouse events are reachable through the renderer") {
+    Java2dHeadlessRenderer.canvas(frame).use { canvas =>
+      val headless = Java2dHeadlessRenderer.headless(canvas)
+      val frames =
+        headless.frames
+          .take(1)
+          .concurrently(
+            Stream
+              .eval(Java2dHeadlessRenderer.render(canvas)(square(Color.red)))
+              .delayBy(50.millis)
+          )
+          .compile
+          .lastOrError
+      val click =
+        canvas.mouseClick
+          .take(1)
+          .concurrently(
+            Stream.repeatEval(headless.click(Point(3, 4))).metered(10.millis)
+          )
+          .compile
+          .lastOrError
+
+      (frames, click).parTupled.map { (image, point) =>
+        assertEquals(image.getRGB(50, 50), 0xffff0000)
+        assertEquals(point, Point(3, 4))
+      }
+    }
+  }
+
+  test("frames are only copied while there is a subscriber") {
+    val recorder = MetricsRecorder()
+    Canvas.headless(frame.withMetrics(recorder)).use { headless =>
+      recorder.stream
+        .take(2)
+        .concurrently(
+          Stream(Color.red, Color.blue)
+            .evalMap(c => headless.canvas.render(square(c)))
+            .delayBy(50.millis)
+        )
+        .compile
+        .toList
+        .map { metrics =>
+          // The image used to measure text, and for the first picture the
+          // image drawn into, but never a copy
+          assertEquals(metrics.map(_.images), List(2, 1))
+        }
+    }
+  }
+
+  test("the virtual clock drives animations without waiting") {
+    Canvas.headless(frame).use { headless =>
+      val count = 500
+      val pictures =
+        Stream.range(0, count).map(i => square(Color.red).at(i % 20, 0))
+
+      headless.canvas.redraw
+        .zip(pictures)
+        .evalMap((delay, picture) => headless.canvas.render(picture).as(delay))
+        .compile
+        .toList
+        .timeout(30.seconds)
+        .map { delays =>
+          assertEquals(delays.size, count)
+          assertEquals(delays.head, 0)
+          assert(delays.tail.forall(_ == 16))
+        }
+    }
+  }
+
+  test("mouse clicks are simulated") {
+    Canvas.headless(frame).use { headless =>
+      headless.canvas.mouseClick
+        .take(1)
+        .concurrently(
+          Stream.repeatEval(headless.click(Point(3, 4))).metered(10.millis)
+        )
+        .compile
+        .lastOrError
+        .map(point => assertEquals(point, Point(3, 4)))
+    }
+  }
+
+  test("closing the canvas ends its streams") {
+    Canvas.headless(frame).use { headless =>
+      (
+        headless.canvas.redraw.compile.drain,
+        IO.sleep(50.millis) >> headless.canvas.close()
+      ).parTupled.timeout(5.seconds).void
+    }
+  }
+}
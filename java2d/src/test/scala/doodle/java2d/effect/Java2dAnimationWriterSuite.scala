@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package effect
+
+import cats.effect.IO
+import cats.effect.Ref
+import cats.effect.Resource
+import doodle.core.Color
+import doodle.syntax.all.*
+import fs2.Stream
+import munit.CatsEffectSuite
+
+import java.awt.image.BufferedImage
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.nio.file.Files
+import javax.imageio.ImageIO
+
+class Java2dAnimationWriterSuite extends CatsEffectSuite {
+  val frame = Frame.default.withSize(100, 100)
+
+  val frames: Stream[IO, Picture[Unit]] =
+    Stream
+      .range(0, 12)
+      .map(i =>
+        circle[Algebra](10.0 + i * 5)
+          .fillColor(Color.crimson.spin((i * 30).degrees))
+          .at(i * 3.0, 0.0)
+      )
+      .covary[IO]
+
+  def writeBytes(writer: Java2dAnimationWriter, name: String): IO[Array[Byte]] =
+    for {
+      file <- IO(File.createTempFile(name, ".gif"))
+      _ <- writer.write(file, frame, frames)
+      bytes <- IO(Files.readAllBytes(file.toPath()))
+      _ <- IO(file.delete())
+    } yield bytes
+
+  test("parallel output is byte identical to sequential output") {
+    for {
+      sequential <- writeBytes(Java2dAnimationWriter, "sequential")
+      parallel <- writeBytes(
+        Java2dAnimationWriter.withParallelism(4),
+        "parallel"
+      )
+    } yield {
+      assert(sequential.nonEmpty)
+      assert(sequential.sameElements(parallel))
+    }
+  }
+
+  test("global palette output is smaller and has every frame") {
+    for {
+      perFrame <- writeBytes(Java2dAnimationWriter, "per-frame")
+      global <- writeBytes(
+        Java2dAnimationWriter.withGlobalPalette(3).withParallelism(4),
+        "global"
+      )
+      frameCount <- IO {
+        val reader = ImageIO.getImageReadersByFormatName("gif").next()
+        reader.setInput(
+          ImageIO.createImageInputStream(new ByteArrayInputStream(global))
+        )
+        reader.getNumImages(true)
+      }
+    } yield {
+      assertEquals(frameCount, 12)
+      assert(global.length < perFrame.length)
+    }
+  }
+
+  test("delta frames output is smaller and decodes to the same frames") {
+    // Decode each frame and draw it over the previous frames, as a GIF viewer
+    // would, returning the pixels seen after each frame is drawn.
+    def decode(bytes: Array[Byte]): IO[List[List[Int]]] =
+      IO {
+        val reader = ImageIO.getImageReadersByFormatName("gif").next()
+        reader.setInput(
+          ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))
+        )
+        val canvas = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB)
+        val graphics = canvas.createGraphics()
+        (0 until reader.getNumImages(true)).toList.map { i =>
+          val descriptor = reader
+            .getImageMetadata(i)
+            .getAsTree("javax_imageio_gif_image_1.0")
+            .getChildNodes()
+            .item(0)
+            .getAttributes()
+          val left =
+            descriptor.getNamedItem("imageLeftPosition").getNodeValue().toInt
+          val top =
+            descriptor.getNamedItem("imageTopPosition").getNodeValue().toInt
+          graphics.drawImage(reader.read(i), left, top, null)
+          canvas.getRGB(0, 0, 100, 100, null, 0, 100).toList
+        }
+      }
+
+    val writer = Java2dAnimationWriter.withGlobalPalette(12)
+    for {
+      full <- writeBytes(writer, "full")
+      delta <- writeBytes(writer.withDeltaFrames(), "delta")
+      fullFrames <- decode(full)
+      deltaFrames <- decode(delta)
+    } yield {
+      assert(delta.length < full.length)
+      assertEquals(deltaFrames.size, 12)
+      assert(deltaFrames == fullFrames)
+    }
+  }
+
+  test("streamed bytes are the same as the bytes written to a file") {
+    for {
+      written <- writeBytes(Java2dAnimationWriter, "written")
+      streamed <- frames
+        .through(Java2dAnimationWriter.pipe(frame))
+        .compile
+        .to(Array)
+    } yield assert(written.sameElements(streamed))
+  }
+
+  test("the output stream is released once the animation is written") {
+    for {
+      closed <- Ref[IO].of(false)
+      output = Resource.make(IO(new ByteArrayOutputStream()))(_ =>
+        closed.set(true)
+      )
+      _ <- Java2dAnimationWriter.write(output, frame, frames.take(2))
+      wasClosed <- closed.get
+    } yield assert(wasClosed)
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package effect
+
+import cats.effect.IO
+import cats.syntax.all.*
+import doodle.core.Color
+import doodle.syntax.all.*
+import fs2.Stream
+import munit.CatsEffectSuite
+
+import java.awt.image.BufferedImage
+import java.nio.file.Files
+import java.nio.file.Path
+import javax.imageio.ImageIO
+
+class Java2dBatchWriterSuite extends CatsEffectSuite {
+  val frame = Frame.default.withSizedToPicture(10)
+
+  // Sizes repeat so workers both reuse and reallocate their images
+  def picture(i: Int): Picture[Unit] =
+    circle[Algebra](20.0 + (i % 3) * 10)
+      .fillColor(Color.crimson.spin((i * 20).degrees))
+      .beside(text[Algebra](i.toString))
+
+  def pixels(path: Path): Array[Int] = {
+    val image: BufferedImage = ImageIO.read(path.toFile())
+    image.getRGB(
+      0,
+      0,
+      image.getWidth(),
+      image.getHeight(),
+      null,
+      0,
+      image.getWidth()
+    )
+  }
+
+  val directory = ResourceFunFixture(
+    cats.effect.Resource.make(IO(Files.createTempDirectory("batch")))(dir =>
+      IO(dir.toFile().listFiles().foreach(_.delete())) >>
+        IO(Files.delete(dir))
+    )
+  )
+
+  directory.test("batch output matches writing each picture on its own") {
+    dir =>
+      val count = 24
+      val pictures = Stream
+        .range(0, count)
+        .map(i => (dir.resolve(s"batch-$i.png"), picture(i)))
+        .covary[IO]
+
+      for {
+        results <- Java2dPngWriter.batch
+          .withParallelism(4)
+          .write(frame, pictures)
+          .compile
+          .toList
+        _ <- (0 until count).toList.traverse_(i =>
+          Java2dPngWriter.write(
+            dir.resolve(s"single-$i.png").toFile(),
+            frame,
+            picture(i)
+          )
+        )
+      } yield {
+        assertEquals(
+          results.map(_.result),
+          List.fill(count)(Right(()))
+        )
+        (0 until count).foreach { i =>
+          assert(
+            pixels(dir.resolve(s"batch-$i.png"))
+              .sameElements(pixels(dir.resolve(s"single-$i.png"))),
+            s"picture $i differs"
+          )
+        }
+      }
+  }
+
+  directory.test("an error writing one picture does not stop the batch") {
+    dir =>
+      val pictures = Stream(
+        (dir.resolve("first.png"), picture(1)),
+        (dir.resolve("missing").resolve("second.png"), picture(2)),
+        (dir.resolve("third.png"), picture(3))
+      ).covary[IO]
+
+      Java2dPngWriter.batch
+        .write(frame, pictures)
+        .compile
+        .toList
+        .map { results =>
+          assertEquals(results(0).result, Right(()))
+          assert(results(1).result.isLeft)
+          assertEquals(results(2).result, Right(()))
+          assert(Files.exists(dir.resolve("third.png")))
+        }
+  }
+
+  test("PDF cannot be written in a batch") {
+    assert(compileErrors("Java2dPdfWriter.batch").nonEmpty)
+    assert(compileErrors("Java2dBatchWriter(Java2dPdfWriter)").nonEmpty)
+    assertEquals(compileErrors("Java2dJpgWriter.batch"), "")
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle.java2d.effect
+
+import munit.FunSuite
+
+class PacingSuite extends FunSuite {
+  test("Fixed pacing ignores render time") {
+    val pacing = Frame.default.withFrameRate(50).pacing
+    assertEquals(pacing.nextFrameDelay(0.0), 20)
+    assertEquals(pacing.nextFrameDelay(100.0), 20)
+  }
+
+  test("Adaptive pacing slows down for slow pictures") {
+    val pacing = Frame.default.withAdaptiveFrameRate(50).pacing
+    assertEquals(pacing.nextFrameDelay(5.0), 20)
+    assertEquals(pacing.nextFrameDelay(40.0), 60)
+  }
+
+  test("Frame rates that are not positive are rejected") {
+    List(0.0, -30.0, Double.NaN).foreach { fps =>
+      intercept[IllegalArgumentException](Frame.default.withFrameRate(fps))
+      intercept[IllegalArgumentException](
+        Frame.default.withAdaptiveFrameRate(fps)
+      )
+    }
+  }
+}
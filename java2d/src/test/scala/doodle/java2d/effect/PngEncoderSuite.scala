@@ -0,0 +1,213 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle.java2d.effect
+
+import doodle.java2d.algebra.BandPool
+import munit.FunSuite
+
+import java.awt.Color
+import java.awt.color.ColorSpace
+import java.awt.image.BufferedImage
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.zip.Adler32
+import javax.imageio.ImageIO
+
+class PngEncoderSuite extends FunSuite {
+  def image(
+      width: Int,
+      height: Int,
+      imageType: Int = BufferedImage.TYPE_INT_ARGB
+  )(pixel: (Int, Int) => Int): BufferedImage = {
+    val image = new BufferedImage(width, height, imageType)
+    for {
+      y <- 0 until height
+      x <- 0 until width
+    } image.setRGB(x, y, pixel(x, y))
+    image
+  }
+
+  val translucent: BufferedImage =
+    image(90, 70)((x, y) => ((x * 3) << 24) | (y << 16) | (x << 8) | (x ^ y))
+  val opaque: BufferedImage =
+    image(90, 70, BufferedImage.TYPE_INT_RGB)((x, y) =>
+      (y * 3 << 16) | (x * 2 << 8) | ((x * y) & 0xff)
+    )
+  val gray: BufferedImage =
+    image(64, 64)((x, y) => 0xff000000 | (x + y) * 0x010101)
+  val grayAlpha: BufferedImage =
+    image(64, 64)((x, y) => ((x * 4) << 24) | (x + y * 2) * 0x010101)
+  def palette(colors: Int): BufferedImage =
+    image(50, 40)((x, y) =>
+      new Color((x + y) % colors, 90, 200, if x < 5 then 128 else 255)
+        .getRGB()
+    )
+
+  def encode(encoder: PngEncoder, image: BufferedImage): Array[Byte] = {
+    val output = new ByteArrayOutputStream()
+    encoder.encode(image, output)
+    output.toByteArray()
+  }
+
+  def decode(bytes: Array[Byte]): BufferedImage =
+    ImageIO.read(new ByteArrayInputStream(bytes))
+
+  /** The ARGB value of a pixel. ImageIO decodes grayscale PNGs into images
+    * whose getRGB converts from linear gray, so read the samples of those.
+    */
+  def argb(image: BufferedImage, x: Int, y: Int): Int =
+    if image.getColorModel().getColorSpace().getType() == ColorSpace.TYPE_GRAY
+    then {
+      val raster = image.getRaster()
+      val gray = raster.getSample(x, y, 0)
+      val alpha =
+        if raster.getNumBands() > 1 then raster.getSample(x, y, 1) else 0xff
+      (alpha << 24) | (gray * 0x010101)
+    } else image.getRGB(x, y)
+
+  def assertSamePixels(actual: BufferedImage, expected: BufferedImage)(using
+      munit.Location
+  ): Unit = {
+    assertEquals(actual.getWidth(), expected.getWidth())
+    assertEquals(actual.getHeight(), expected.getHeight())
+    for {
+      y <- 0 until expected.getHeight()
+      x <- 0 until expected.getWidth()
+    } assertEquals(
+      argb(actual, x, y),
+      expected.getRGB(x, y),
+      s"Pixel ($x, $y)"
+    )
+  }
+
+  /** The color type byte of the IHDR chunk. */
+  def colorType(png: Array[Byte]): Int = png(25).toInt
+
+  val images: List[(String, BufferedImage)] =
+    List(
+      "translucent" -> translucent,
+      "opaque" -> opaque,
+      "gray" -> gray,
+      "gray and alpha" -> grayAlpha,
+      "2 colors" -> palette(2),
+      "3 colors" -> palette(3),
+      "10 colors" -> palette(10),
+      "200 colors" -> palette(200)
+    )
+
+  test("encoded images decode to the same pixels") {
+    for {
+      (name, img) <- images
+      filter <- PngFilter.values.toList
+      reduce <- List(false, true)
+    } {
+      val encoder =
+        PngEncoder.default.withFilter(filter).withColorReduction(reduce)
+      assertSamePixels(decode(encode(encoder, img)), img)
+    }
+  }
+
+  test("images are stored in the smallest color type") {
+    assertEquals(colorType(encode(PngEncoder.default, translucent)), 6)
+    assertEquals(colorType(encode(PngEncoder.default, opaque)), 2)
+    assertEquals(colorType(encode(PngEncoder.default, gray)), 0)
+    assertEquals(colorType(encode(PngEncoder.default, grayAlpha)), 4)
+    assertEquals(colorType(encode(PngEncoder.default, palette(10))), 3)
+    assertEquals(colorType(encode(PngEncoder.fast, palette(10))), 6)
+  }
+
+  test("images compressed in parallel decode to the same pixels") {
+    val tall =
+      image(300, 1000)((x, y) => 0xff000000 | (y * 31 + x * 7) * 0x010203)
+    val serial = encode(PngEncoder.default.withParallelism(1), tall)
+    val parallel = encode(PngEncoder.default.withParallelism(4), tall)
+
+    assertSamePixels(decode(serial), tall)
+    assertSamePixels(decode(parallel), tall)
+  }
+
+  test("images compressed in parallel by several threads at once") {
+    val tall =
+      image(300, 1000)((x, y) => 0xff000000 | (y * 31 + x * 7) * 0x010203)
+    val expected = encode(PngEncoder.default.withParallelism(4), tall)
+
+    val results = new Array[Array[Byte]](4)
+    val threads = results.indices.map { i =>
+      new Thread(() =>
+        results(i) = encode(PngEncoder.default.withParallelism(4), tall)
+      )
+    }
+    threads.foreach(_.start())
+    threads.foreach(_.join())
+
+    results.foreach(actual => assert(actual.sameElements(expected)))
+  }
+
+  test("concurrent encodes use at most one compression thread per processor") {
+    val tall =
+      image(300, 1000)((x, y) => 0xff000000 | (y * 31 + x * 7) * 0x010203)
+    val processors = Runtime.getRuntime().availableProcessors()
+    val encoder = PngEncoder.default.withParallelism(processors * 2)
+
+    val threads = (0 until processors * 2).map { _ =>
+      new Thread(() => { encode(encoder, tall); () })
+    }
+    threads.foreach(_.start())
+    threads.foreach(_.join())
+
+    val compressors = Thread
+      .getAllStackTraces()
+      .keySet()
+      .toArray(Array.empty[Thread])
+      .count(_.getName() == BandPool.ThreadName)
+    assert(compressors <= processors, s"$compressors compression threads")
+  }
+
+  test("higher compression levels give smaller files") {
+    val none = encode(PngEncoder.default.withCompressionLevel(0), opaque)
+    val best = encode(PngEncoder.small, opaque)
+
+    assertSamePixels(decode(none), opaque)
+    assert(best.length < none.length)
+  }
+
+  test("images that are not INT_ARGB encode the same as INT_ARGB images") {
+    val bgr = new BufferedImage(90, 70, BufferedImage.TYPE_3BYTE_BGR)
+    bgr.createGraphics().drawImage(opaque, 0, 0, null)
+    val argb = new BufferedImage(90, 70, BufferedImage.TYPE_INT_ARGB)
+    argb.createGraphics().drawImage(opaque, 0, 0, null)
+
+    assert(
+      encode(PngEncoder.default, bgr)
+        .sameElements(encode(PngEncoder.default, argb))
+    )
+  }
+
+  test("combined Adler-32 checksums match the checksum of the whole") {
+    val bytes = Array.tabulate[Byte](100000)(i => (i * 31 + i / 7).toByte)
+    def adler(from: Int, until: Int): Long = {
+      val a = new Adler32()
+      a.update(bytes, from, until - from)
+      a.getValue()
+    }
+
+    assertEquals(
+      PngEncoder.combineAdler32(adler(0, 40000), adler(40000, 100000), 60000),
+      adler(0, 100000)
+    )
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package java2d
+package effect
+
+import cats.effect.IO
+import doodle.core.Color
+import doodle.syntax.all.*
+import fs2.Stream
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordingFile
+import munit.CatsEffectSuite
+
+import java.io.File
+import java.nio.file.Files
+import scala.concurrent.duration.*
+import scala.jdk.CollectionConverters.*
+
+class RenderMetricsSuite extends CatsEffectSuite {
+  val picture: Picture[Unit] =
+    circle[Algebra](40)
+      .fillColor(Color.crimson)
+      .beside(square[Algebra](30).fillColor(Color.royalBlue))
+      .beside(circle[Algebra](20))
+
+  def write(frame: Frame): IO[Unit] =
+    for {
+      file <- IO(File.createTempFile("metrics", ".png"))
+      _ <- Java2dPngWriter.write(file, frame, picture)
+      _ <- IO(file.delete())
+    } yield ()
+
+  test("writers publish metrics when the frame enables them") {
+    val recorder = MetricsRecorder()
+    recorder.stream
+      .concurrently(
+        Stream
+          .repeatEval(write(Frame.default.withMetrics(recorder)))
+          .metered(20.millis)
+      )
+      .head
+      .compile
+      .lastOrError
+      .map { metrics =>
+        assertEquals(metrics.source, "png")
+        assertEquals(
+          metrics.instructions,
+          Map(
+            "FillCircle" -> 1,
+            "StrokeCircle" -> 2,
+            "FillRect" -> 1,
+            "StrokeRect" -> 1
+          )
+        )
+        assert(metrics.rasterization > Duration.Zero)
+      }
+  }
+
+  test("writers do not publish metrics by default") {
+    val recorder = MetricsRecorder()
+    recorder.stream
+      .concurrently(Stream.repeatEval(write(Frame.default)).metered(20.millis))
+      .interruptAfter(300.millis)
+      .compile
+      .toList
+      .map(metrics => assertEquals(metrics, List.empty))
+  }
+
+  test("metrics are only published to the recorder of the frame") {
+    val recorder = MetricsRecorder()
+    val other = MetricsRecorder()
+    other.stream
+      .concurrently(
+        Stream
+          .repeatEval(write(Frame.default.withMetrics(recorder)))
+          .metered(20.millis)
+      )
+      .interruptAfter(300.millis)
+      .compile
+      .toList
+      .map(metrics => assertEquals(metrics, List.empty))
+  }
+
+  test("instructions inside layers are counted") {
+    val blended = picture.on(square[Algebra](50).fillColor(Color.gold).multiply)
+    for {
+      reified <- Java2d.reify(blended)
+      (_, r, _) = reified
+    } yield {
+      val counts = RenderMetrics.count(r)
+      assertEquals(counts.get("Layer"), Some(1))
+      assertEquals(counts.get("FillRect"), Some(2))
+      assertEquals(counts.get("FillCircle"), Some(1))
+    }
+  }
+
+  test("metrics are recorded as JFR events") {
+    for {
+      recording <- IO {
+        val recording = new Recording()
+        recording.enable("doodle.java2d.Render")
+        recording.start()
+        recording
+      }
+      _ <- write(Frame.default.withMetricsAndJfr(MetricsRecorder()))
+      events <- IO {
+        recording.stop()
+        val path = Files.createTempFile("metrics", ".jfr")
+        recording.dump(path)
+        recording.close()
+        val events = RecordingFile.readAllEvents(path).asScala.toList
+        Files.delete(path)
+        events.filter(_.getEventType().getName() == "doodle.java2d.Render")
+      }
+    } yield {
+      assertEquals(events.size, 1)
+      assertEquals(events.head.getString("source"), "png")
+      // The image used to measure text, and the image rendered into
+      assertEquals(events.head.getInt("images"), 2)
+    }
+  }
+}
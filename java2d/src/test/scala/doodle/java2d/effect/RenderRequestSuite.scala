@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle.java2d.effect
+
+import cats.syntax.all.*
+import doodle.core.*
+import doodle.java2d.*
+import doodle.syntax.all.*
+import munit.FunSuite
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class RenderRequestSuite extends FunSuite {
+  test("skip completes with the value of the picture") {
+    val future = new CompletableFuture[Int]()
+    val picture = circle[Algebra](20).fillColor(Color.crimson).map(_ => 42)
+
+    val executor = Executors.newSingleThreadExecutor()
+
+    RenderRequest(picture, future, executor).skip()
+    try assertEquals(future.get(10, TimeUnit.SECONDS), 42)
+    finally executor.shutdown()
+  }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle.java2d.effect
+
+import cats.effect.IO
+import doodle.core.*
+import doodle.java2d.*
+import doodle.syntax.all.*
+import munit.CatsEffectSuite
+
+import java.awt.image.BufferedImage
+
+class TiledRenderingSuite extends CatsEffectSuite {
+  val element: Picture[Unit] =
+    circle[Algebra](40)
+      .fillColor(Color.crimson)
+      .strokeWidth(3.0)
+      .beside(square[Algebra](30).fillColor(Color.royalBlue).noStroke)
+      .beside(rectangle[Algebra](25, 35).strokeWidth(4.0).fillColor(Color.gold))
+      .beside(
+        triangle[Algebra](30, 30)
+          .strokeColor(Color.darkGreen)
+          .strokeWidth(9.0)
+      )
+      .above(
+        OpenPath.empty
+          .moveTo(0, 0)
+          .curveTo(10, 20, 30, 20, 40, 0)
+          .path[Algebra]
+          .strokeDash(Array(3.0, 2.0))
+          .beside(
+            ClosedPath.empty
+              .lineTo(20, 0)
+              .lineTo(10, 20)
+              .path[Algebra]
+              .fillColor(Color.orange)
+          )
+          .beside(text[Algebra]("Doodle").strokeColor(Color.black))
+      )
+
+  val picture: Picture[Unit] =
+    (0 until 12)
+      .map(i => element.rotate((i * 17).degrees).scale(1.0 + i * 0.1, 1.0))
+      .grouped(4)
+      .map(_.reduce(_.beside(_)))
+      .reduce(_.above(_))
+
+  // Large curves, dashes, and text that cross many tiles
+  val curves: Picture[Unit] = {
+    val curve =
+      OpenPath.empty
+        .moveTo(-400, 0)
+        .curveTo(-300, 900, 300, -900, 400, 0)
+
+    circle[Algebra](900)
+      .strokeWidth(5.0)
+      .fillColor(Color.red)
+      .on(
+        circle[Algebra](700).strokeWidth(1.5).rotate(10.degrees).scale(1.3, 0.7)
+      )
+      .on(text[Algebra]("Doodle").strokeColor(Color.black).scale(5, 5))
+      .on(curve.path[Algebra].strokeWidth(7.0))
+      .on(
+        curve
+          .path[Algebra]
+          .strokeWidth(3.0)
+          .strokeDash(Array(9.0, 4.0))
+          .rotate(-20.degrees)
+      )
+  }
+
+  def singleThreaded(picture: Picture[Unit], frame: Frame): IO[BufferedImage] =
+    for {
+      reified <- Java2d.reify(picture)
+      (bb, r, _) = reified
+      (width, height) = Java2d.size(bb, frame.size)
+      image = new BufferedImage(
+        width.toInt,
+        height.toInt,
+        BufferedImage.TYPE_INT_ARGB
+      )
+      _ = {
+        val gc = Java2d.setup(image.createGraphics())
+        frame.background.foreach { c =>
+          gc.setColor(doodle.java2d.algebra.Java2D.toAwtColor(c))
+          gc.fillRect(0, 0, width.toInt, height.toInt)
+        }
+        Java2d.render(gc, r, Java2d.transform(bb, width, height, frame.center))
+        gc.dispose()
+      }
+    } yield image
+
+  def tiled(
+      picture: Picture[Unit],
+      frame: Frame,
+      tileSize: Int
+  ): IO[BufferedImage] =
+    for {
+      reified <- Java2d.reify(picture)
+      (bb, r, _) = reified
+      (width, height) = Java2d.size(bb, frame.size)
+      image = new BufferedImage(
+        width.toInt,
+        height.toInt,
+        BufferedImage.TYPE_INT_ARGB
+      )
+      tx = Java2d.transform(bb, width, height, frame.center)
+      _ <- Java2d.renderTiled(image, frame.background, r, tx, tileSize)
+    } yield image
+
+  def pixels(image: BufferedImage): Array[Int] =
+    image.getRGB(
+      0,
+      0,
+      image.getWidth(),
+      image.getHeight(),
+      null,
+      0,
+      image.getWidth()
+    )
+
+  /** Assert that actual matches expected, except that antialiased edges may
+    * differ a little. Java2D clips shapes that cross a seam between tiles
+    * before it rasterizes them, which slightly changes the coverage of curves
+    * and dashes. Every other pixel must be identical.
+    */
+  def assertCloseTo(actual: BufferedImage, expected: BufferedImage): Unit = {
+    val a = pixels(actual)
+    val e = pixels(expected)
+    assertEquals(a.length, e.length)
+
+    var differing = 0
+    var idx = 0
+    while idx < e.length do {
+      if a(idx) != e(idx) then {
+        differing = differing + 1
+        var shift = 0
+        while shift < 32 do {
+          val difference =
+            Math.abs(((a(idx) >>> shift) & 0xff) - ((e(idx) >>> shift) & 0xff))
+          assert(
+            difference <= 48,
+            s"pixel $idx differs by $difference in one channel"
+          )
+          shift = shift + 8
+        }
+      }
+      idx = idx + 1
+    }
+
+    assert(differing <= e.length / 100, s"$differing pixels differ")
+  }
+
+  val frame = Frame.default.withBackground(Color.white)
+
+  test("tiled rendering matches single threaded rendering") {
+    for {
+      expected <- singleThreaded(picture, frame)
+      actual <- tiled(picture, frame, 37)
+    } yield {
+      assert(pixels(expected).exists(_ != java.awt.Color.WHITE.getRGB()))
+      assertCloseTo(actual, expected)
+    }
+  }
+
+  test("tiled rendering matches for large curves crossing many tiles") {
+    for {
+      expected <- singleThreaded(curves, frame)
+      actual <- tiled(curves, frame, 37)
+    } yield assertCloseTo(actual, expected)
+  }
+
+  test("pictures with gradients are rendered identically") {
+    val gradient =
+      picture.on(
+        circle[Algebra](300).fillGradient(
+          Gradient.dichromaticHorizontal(Color.red, Color.blue, 300)
+        )
+      )
+
+    for {
+      expected <- singleThreaded(gradient, frame)
+      actual <- tiled(gradient, frame, 37)
+    } yield assert(pixels(expected).sameElements(pixels(actual)))
+  }
+
+  test("rectangles are identical along the seams between tiles") {
+    val tileSize = 32
+    // Spacing that does not divide the tile size, so rectangles land at every
+    // offset across the seams
+    val grid =
+      (0 until 10)
+        .map { row =>
+          (0 until 10)
+            .map(col =>
+              rectangle[Algebra](17, 9)
+                .strokeWidth(2.0)
+                .fillColor(Color.crimson)
+                .on(square[Algebra](12).fillColor(Color.royalBlue).noStroke)
+                .at(col * 23.1, row * 23.3)
+            )
+            .reduce(_.on(_))
+        }
+        .reduce(_.on(_))
+
+    for {
+      expected <- singleThreaded(grid, frame)
+      actual <- tiled(grid, frame, tileSize)
+    } yield {
+      val width = expected.getWidth()
+      val height = expected.getHeight()
+      val seams =
+        for {
+          y <- 0 until height
+          x <- 0 until width
+          if x % tileSize == 0 || x % tileSize == tileSize - 1 ||
+            y % tileSize == 0 || y % tileSize == tileSize - 1
+        } yield (x, y)
+
+      assert(width > tileSize * 4 && height > tileSize * 4)
+      assert(
+        seams.exists((x, y) =>
+          expected.getRGB(x, y) != java.awt.Color.WHITE.getRGB()
+        )
+      )
+      seams.foreach((x, y) =>
+        assertEquals(actual.getRGB(x, y), expected.getRGB(x, y), s"($x, $y)")
+      )
+      assert(pixels(expected).sameElements(pixels(actual)))
+    }
+  }
+
+  test("pictures with blended layers are rendered identically") {
+    val blended =
+      circle[Algebra](200)
+        .fillColor(Color.gold)
+        .multiply
+        .on(picture)
+
+    for {
+      expected <- singleThreaded(blended, frame)
+      actual <- tiled(blended, frame, 37)
+    } yield assert(pixels(expected).sameElements(pixels(actual)))
+  }
+
+  test("tiled rendering without a background matches") {
+    for {
+      expected <- singleThreaded(curves, Frame.default)
+      actual <- tiled(curves, Frame.default, 64)
+    } yield assertCloseTo(actual, expected)
+  }
+
+  test("tiled rendering handles tiles larger than the image") {
+    for {
+      expected <- singleThreaded(picture, frame)
+      actual <- tiled(picture, frame, 10000)
+    } yield assert(pixels(expected).sameElements(pixels(actual)))
+  }
+
+  test("renderBufferedImage matches for large tiled images") {
+    val large = frame.withSize(1200, 1000).withTiledRendering
+    for {
+      expected <- singleThreaded(picture, large)
+      result <- Java2d.renderBufferedImage(
+        large.size,
+        large.center,
+        large.background,
+        picture,
+        large.tiledRendering
+      )((w, h) => new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB))
+      (actual, _) = result
+    } yield {
+      assert(
+        actual.getWidth().toLong * actual
+          .getHeight() >= Java2d.tiledRenderingThreshold
+      )
+      assertCloseTo(actual, expected)
+    }
+  }
+}
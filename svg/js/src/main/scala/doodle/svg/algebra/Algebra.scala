@@ -24,6 +24,7 @@ import doodle.algebra.generic.Renderable
 import doodle.core.BoundingBox
 import doodle.core.font.Font
 import doodle.svg.effect.Canvas
+import doodle.svg.effect.SvgFormat
 import org.scalajs.dom.svg.Rect
 
 trait JsAlgebraModule
@@ -50,6 +51,8 @@ trait JsAlgebraModule
       with Image
       with JsTagged
       with Text {
+    def svgFormat: SvgFormat = canvas.frame.format
+
     def textBoundingBox(text: String, font: Font): (BoundingBox, Rect) =
       canvas.textBoundingBox(text, font)
 
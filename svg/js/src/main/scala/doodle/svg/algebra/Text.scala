@@ -25,11 +25,9 @@ import doodle.core.font.Font
 import org.scalajs.dom.svg.Rect
 import scalatags.JsDom.svgAttrs
 
-import scala.collection.mutable
-
 trait TextModule extends JsBase {
   trait Text extends GenericText[SvgResult] {
-    self: HasTextBoundingBox[Rect] with Algebra {
+    self: HasTextBoundingBox[Rect] with HasSvgFormat with Algebra {
       type Drawing[A] = Finalized[SvgResult, A]
     } =>
     val TextApi = new TextApi {
@@ -47,22 +45,23 @@ trait TextModule extends JsBase {
           bounds: Rect
       ): SvgResult[Unit] = {
         import bundle.implicits.{Tag as _, *}
-        val set = mutable.Set.empty[Tag]
+        val set = Defs.empty[Tag]
         // (0,0) of the bounds Rect is the left baseline. See
         // https://www.w3.org/Graphics/SVG/IG/resources/svgprimer.html#getBBox
         //
         // For Doodle (0,0) is the center of the bounding box.
-        val style = Svg.toStyle(stroke, fill, set)
+        val style = Svg.toStyle(stroke, fill, set, self.svgFormat)
         val elt = Svg.textTag(text, font, style)(
           // Our y coordinates are reversed (y increases as we move up in
           // Doodle, and decreases in SVG). The transform takes care of this but
           // means the text will be drawn upside down, so we must flip it before
           // rendering
           svgAttrs.transform := Svg.toSvgTransform(
-            Tx.verticalReflection.andThen(tx)
+            Tx.verticalReflection.andThen(tx),
+            self.svgFormat
           ),
-          svgAttrs.x := -(bounds.x + bounds.width) / 2.0,
-          svgAttrs.y := (bounds.y + bounds.height) / 2.0,
+          svgAttrs.x := self.svgFormat.number(-(bounds.x + bounds.width) / 2.0),
+          svgAttrs.y := self.svgFormat.number((bounds.y + bounds.height) / 2.0),
           // Setting baseline to the middle allows us to accurately layout the
           // text. Otherwise we don't know how far the baseline is offset from
           // the bounding box we're given.
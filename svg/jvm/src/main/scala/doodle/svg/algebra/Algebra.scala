@@ -24,6 +24,7 @@ import doodle.algebra.generic.Renderable
 import doodle.core.BoundingBox
 import doodle.core.font.Font
 import doodle.java2d.algebra.Java2D
+import doodle.svg.effect.SvgFormat
 
 import java.awt.geom.Rectangle2D
 import javax.swing.JPanel
@@ -41,7 +42,7 @@ trait JvmAlgebraModule
     with JvmBase {
   type Algebra = JvmAlgebra
 
-  final class JvmAlgebra()
+  final class JvmAlgebra(val svgFormat: SvgFormat = SvgFormat.default)
       extends JPanel(false)
       with BaseAlgebra
       with Text
@@ -51,6 +52,10 @@ trait JvmAlgebraModule
       with Image
       with HasTextBoundingBox[Rectangle2D] {
 
+    /** An algebra that writes numbers and paths in the given format. */
+    def withSvgFormat(format: SvgFormat): JvmAlgebra =
+      new JvmAlgebra(format)
+
     def textBoundingBox(
         text: String,
         font: Font
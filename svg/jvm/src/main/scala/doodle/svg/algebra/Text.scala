@@ -23,11 +23,10 @@ import doodle.core.*
 import doodle.core.font.Font
 
 import java.awt.geom.Rectangle2D
-import scala.collection.mutable
 
 trait TextModule extends JvmBase {
   trait Text extends GenericText[SvgResult] {
-    self: HasTextBoundingBox[Rectangle2D] with Algebra {
+    self: HasTextBoundingBox[Rectangle2D] with HasSvgFormat with Algebra {
       type Drawing[A] = Finalized[SvgResult, A]
     } =>
     val TextApi = new TextApi {
@@ -48,16 +47,21 @@ trait TextModule extends JvmBase {
           bounds: Rectangle2D
       ): SvgResult[Unit] = {
         import bundle.implicits.{Tag as _, *}
-        val set = mutable.Set.empty[Tag]
+        val set = Defs.empty[Tag]
         // (0,0) of the Rectangle2D is the left baseline. For Doodle (0,0) is the
         // center of the bounding box.
-        val style = Svg.toStyle(stroke, fill, set)
+        val style = Svg.toStyle(stroke, fill, set, self.svgFormat)
         val elt = Svg.textTag(text, font, style)(
           bundle.svgAttrs.transform := Svg.toSvgTransform(
-            Transform.verticalReflection.andThen(tx)
+            Transform.verticalReflection.andThen(tx),
+            self.svgFormat
+          ),
+          bundle.svgAttrs.x := self.svgFormat.number(
+            -(bounds.getMinX() + bounds.getWidth()) / 2.0
+          ),
+          bundle.svgAttrs.y := self.svgFormat.number(
+            (bounds.getMinY() + bounds.getHeight()) / 2.0
           ),
-          bundle.svgAttrs.x := -(bounds.getMinX() + bounds.getWidth()) / 2.0,
-          bundle.svgAttrs.y := (bounds.getMinY() + bounds.getHeight()) / 2.0,
           bundle.svgAttrs.dominantBaseline := "middle"
         )
 
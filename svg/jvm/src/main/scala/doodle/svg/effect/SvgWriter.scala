@@ -24,10 +24,20 @@ import doodle.core.Base64 as B64
 import doodle.core.format
 import doodle.effect.*
 
+import java.io.BufferedWriter
+import java.io.ByteArrayOutputStream
 import java.io.File
+import java.io.OutputStream
+import java.io.OutputStreamWriter
+import java.io.Writer
+import java.nio.charset.StandardCharsets
 import java.nio.file.Files
 import java.util.Base64 as JBase64
+import scala.util.Using
 
+/** Writes SVG by serializing the rendered tags directly to the output, so the
+  * complete document is never held in memory as a `String` or byte array.
+  */
 object SvgWriter
     extends FileWriter[Algebra, Frame, format.Svg]
     with Base64Writer[Algebra, Frame, format.Svg] {
@@ -35,25 +45,83 @@ object SvgWriter
       file: File,
       description: Frame,
       picture: Picture[Algebra, A]
-  ): IO[A] = {
+  ): IO[A] =
     Svg
-      .render[Algebra, A](description, algebraInstance, picture)
-      .flatMap { case (nodes, a) =>
-        IO {
-          Files.write(file.toPath, nodes.getBytes())
+      .renderTag[Algebra, A](description, algebra(description), picture)
+      .flatMap { case (tag, a) =>
+        IO.blocking {
+          Using.resource(
+            Files.newBufferedWriter(file.toPath, StandardCharsets.UTF_8)
+          )(writer => writeTag(tag, writer))
+          a
+        }
+      }
+
+  /** Write the picture as SVG to the given `Writer`. The writer is flushed but
+    * not closed.
+    */
+  def writeTo[A](
+      writer: Writer,
+      frame: Frame,
+      picture: Picture[Algebra, A]
+  ): IO[A] =
+    Svg
+      .renderTag[Algebra, A](frame, algebra(frame), picture)
+      .flatMap { case (tag, a) =>
+        IO.blocking {
+          writeTag(tag, writer)
+          writer.flush()
           a
         }
       }
-  }
+
+  /** Write the picture as UTF-8 encoded SVG to the given `OutputStream`. The
+    * stream is flushed but not closed.
+    */
+  def writeTo[A](
+      output: OutputStream,
+      frame: Frame,
+      picture: Picture[Algebra, A]
+  ): IO[A] =
+    IO(utf8Writer(output)).flatMap(writer => writeTo(writer, frame, picture))
 
   def base64[A](
       frame: Frame,
       image: Picture[Algebra, A]
   ): IO[(A, B64[format.Svg])] =
     for {
-      rendered <- Svg
-        .render[Algebra, A](frame, algebraInstance, image)
-      (nodes, value) = rendered
-      b64 = JBase64.getEncoder.encodeToString(nodes.getBytes())
+      bytes <- IO(new ByteArrayOutputStream())
+      value <- Svg
+        .renderTag[Algebra, A](frame, algebra(frame), image)
+        .flatMap { case (tag, a) =>
+          IO {
+            // Closing the writer makes the encoder write its final padding.
+            // Closing a ByteArrayOutputStream has no effect.
+            Using.resource(utf8Writer(JBase64.getEncoder.wrap(bytes)))(writer =>
+              writeTag(tag, writer)
+            )
+            a
+          }
+        }
+      b64 = bytes.toString(StandardCharsets.US_ASCII)
     } yield (value, B64[format.Svg](b64))
+
+  /** The algebra that writes numbers and paths in the frame's format. */
+  private def algebra(frame: Frame): Algebra =
+    if frame.format == algebraInstance.svgFormat then algebraInstance
+    else algebraInstance.withSvgFormat(frame.format)
+
+  /** `Tag` is the generic ScalaTags tag type, which can only render to a
+    * `String`. On the JVM its builder is a `scalatags.text.Builder`, whose
+    * children are text fragments that can serialize themselves to a `Writer`,
+    * so the tag is added to a builder and written from there.
+    */
+  private def writeTag(tag: Tag, writer: Writer): Unit = {
+    val builder = new scalatags.text.Builder()
+    tag.applyTo(builder)
+    builder.children(0).writeTo(writer)
+  }
+
+  private def utf8Writer(output: OutputStream): Writer =
+    new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))
 }
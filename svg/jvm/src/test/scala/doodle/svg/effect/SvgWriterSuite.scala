@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package svg
+package effect
+
+import cats.effect.IO
+import doodle.core.Color
+import doodle.core.Gradient
+import doodle.syntax.all.*
+import munit.CatsEffectSuite
+
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.StringWriter
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.util.Base64 as JBase64
+
+class SvgWriterSuite extends CatsEffectSuite {
+  val frame: Frame = Frame("svg-writer")
+
+  // Text with non-ASCII characters checks the output is UTF-8
+  val picture: Picture[Unit] =
+    circle[Algebra](40)
+      .fillColor(Color.crimson)
+      .beside(text[Algebra]("Grüße, 世界 & <friends>"))
+      .beside(
+        square[Algebra](30).fillGradient(
+          Gradient.dichromaticVertical(Color.red, Color.blue, 30)
+        )
+      )
+
+  val expected: IO[String] =
+    Svg.render[Algebra, Unit](frame, algebraInstance, picture).map(_._1)
+
+  test("writeTo a Writer writes the same SVG as render") {
+    for {
+      writer <- IO(new StringWriter())
+      _ <- SvgWriter.writeTo(writer, frame, picture)
+      svg <- expected
+    } yield assertEquals(writer.toString, svg)
+  }
+
+  test("writeTo an OutputStream writes the same SVG as render") {
+    for {
+      bytes <- IO(new ByteArrayOutputStream())
+      _ <- SvgWriter.writeTo(bytes, frame, picture)
+      svg <- expected
+    } yield assertEquals(bytes.toString(StandardCharsets.UTF_8), svg)
+  }
+
+  test("write writes the same SVG as render to a file") {
+    for {
+      file <- IO(File.createTempFile("svg-writer", ".svg"))
+      _ <- SvgWriter.write(file, frame, picture)
+      written <- IO(Files.readString(file.toPath, StandardCharsets.UTF_8))
+      _ <- IO(file.delete())
+      svg <- expected
+    } yield assertEquals(written, svg)
+  }
+
+  test("base64 encodes the same SVG as render") {
+    for {
+      result <- SvgWriter.base64(frame, picture)
+      (_, b64) = result
+      svg <- expected
+    } yield assertEquals(
+      new String(JBase64.getDecoder.decode(b64.value), StandardCharsets.UTF_8),
+      svg
+    )
+  }
+
+  test("a precision applies to every coordinate and length") {
+    val third = 100.0 / 3.0
+    val picture =
+      circle[Algebra](third)
+        .fillGradient(Gradient.dichromaticRadial(Color.red, Color.blue, third))
+        .beside(rectangle[Algebra](third, 2 * third))
+        .beside(text[Algebra]("precision"))
+        .beside(
+          square[Algebra](third).fillGradient(
+            Gradient.dichromaticVertical(Color.red, Color.blue, third)
+          )
+        )
+    val attribute =
+      """\s(x|y|r|width|height|cx|cy|fx|fy|x1|y1|x2|y2|offset)="([^"]*)"""".r
+
+    for {
+      writer <- IO(new StringWriter())
+      _ <- SvgWriter.writeTo(writer, frame.withPrecision(2), picture)
+    } yield {
+      val svg = writer.toString
+      val values = attribute.findAllMatchIn(svg).map(_.group(2)).toList
+      assert(values.nonEmpty)
+      values.foreach(value =>
+        assert(!value.matches(""".*\.\d{3,}.*"""), value)
+      )
+      assert(svg.contains("stroke-width: 1px"))
+    }
+  }
+
+  test("writing the same picture twice writes the same bytes") {
+    def bytes: IO[Array[Byte]] =
+      for {
+        output <- IO(new ByteArrayOutputStream())
+        _ <- SvgWriter.writeTo(output, frame, picture)
+      } yield output.toByteArray
+
+    for {
+      first <- bytes
+      second <- bytes
+    } yield assert(first.sameElements(second))
+  }
+}
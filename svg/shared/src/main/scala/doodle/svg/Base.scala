@@ -20,8 +20,6 @@ package svg
 import doodle.algebra.generic.Finalized
 import scalatags.generic.Bundle
 
-import scala.collection.mutable
-
 /** Base trait for SVG implementations, defining common types
   *
   * Used for ML-style modules to ensure the JVM and JS implementations make
@@ -40,11 +38,11 @@ trait Base { self =>
   /** The result is:
     *
     *   - the Tag that should be rendered for this Picture
-    *   - other Tags that should be rendered in a separate group. Used for
-    *     gradients and font styles, which must be specified separately in SVG.
+    *   - the definitions that should be rendered in a separate group. Used for
+    *     gradients and filters, which must be specified separately in SVG.
     *   - the result of evaluating the Picture
     */
-  type SvgResult[A] = (Tag, mutable.Set[Tag], A)
+  type SvgResult[A] = (Tag, Defs[Tag], A)
   type Algebra <: doodle.algebra.Algebra { type Drawing[A] = self.Drawing[A] }
   type Drawing[A] = Finalized[SvgResult, A]
 }
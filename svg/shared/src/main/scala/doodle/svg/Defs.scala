@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package svg
+
+import scala.collection.mutable
+
+/** The definitions, such as gradients and filters, that are rendered in the
+  * `<defs>` element of an SVG document and referred to by id.
+  *
+  * A definition's id is the key that describes its content, escaped by
+  * [[Defs.id]], so equal definitions get the same id wherever and however often
+  * they are used, and different definitions never share an id. Each id is only
+  * defined once, so a gradient or filter used by many elements is only written
+  * once, and because ids do not depend on anything but content a picture
+  * renders to the same SVG every time.
+  *
+  * Definitions are kept in the order they were first defined.
+  */
+final class Defs[T] private (
+    private val definitions: mutable.LinkedHashMap[String, T]
+) {
+
+  /** Define the given id, if it has not already been defined. The definition is
+    * only evaluated if the id is new.
+    */
+  def define(id: String)(definition: => T): Unit =
+    if !definitions.contains(id) then definitions.update(id, definition)
+
+  /** True if the id has been defined. */
+  def contains(id: String): Boolean =
+    definitions.contains(id)
+
+  def isEmpty: Boolean =
+    definitions.isEmpty
+
+  def size: Int =
+    definitions.size
+
+  /** The definitions in both registries, with this registry's definitions
+    * first. Neither registry is changed.
+    */
+  def ++(that: Defs[T]): Defs[T] = {
+    val result = definitions.clone()
+    that.definitions.foreach((id, definition) =>
+      if !result.contains(id) then result.update(id, definition)
+    )
+    new Defs(result)
+  }
+
+  /** The definitions in the order they were first defined. */
+  def toList: List[T] =
+    definitions.valuesIterator.toList
+}
+object Defs {
+  def empty[T]: Defs[T] = new Defs(mutable.LinkedHashMap.empty)
+
+  /** The id of the definition described by the given key. The key must describe
+    * everything about the definition that is rendered, so that different
+    * definitions have different keys, and the prefix must not contain a dash.
+    * The id is the prefix, a dash, and the key with every character other than
+    * an ASCII letter, digit, dot, or dash replaced by its hex code between
+    * underscores. Different keys therefore always give different ids, which a
+    * hash of the key would not guarantee.
+    */
+  def id(prefix: String, key: String): String = {
+    val builder = new StringBuilder(prefix.length + key.length + 1)
+    builder ++= prefix
+    builder += '-'
+    key.foreach { c =>
+      if (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') ||
+        (c >= '0' && c <= '9') || c == '.' || c == '-'
+      then builder += c
+      else builder ++= s"_${Integer.toHexString(c.toInt)}_"
+    }
+    builder.result()
+  }
+}
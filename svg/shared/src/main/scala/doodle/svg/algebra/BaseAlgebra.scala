@@ -42,6 +42,7 @@ trait AlgebraModule {
       with Blend
       with Filter
       with Image
+      with HasSvgFormat
       with GenericDebug[SvgResult]
       with GenericLayout[SvgResult]
       with GenericSize[SvgResult]
@@ -24,33 +24,22 @@ import doodle.algebra.Kernel
 import doodle.algebra.generic.*
 import doodle.core.Color
 
-import scala.util.Random
-
 trait FilterModule { root: Base with SvgModule =>
   trait Filter extends doodle.algebra.Filter {
     self: doodle.algebra.Algebra {
       type Drawing[A] = doodle.algebra.generic.Finalized[SvgResult, A]
     } =>
 
-    def gaussianBlur[A](picture: Drawing[A], stdDeviation: Double): Drawing[A] =
-      picture.flatMap { (bb, rdr) =>
-        Finalized.leaf { dc =>
-          val filterId = s"blur-${Random.nextLong().toHexString}"
-          val filterTag = createGaussianBlurFilter(filterId, stdDeviation)
-
-          val newRdr: Renderable[SvgResult, A] = rdr.map { result =>
-            val (tag, defs, a) = result
-
-            defs += filterTag
-
-            val filteredTag = applyFilter(tag, filterId)
-
-            (filteredTag, defs, a)
-          }
+    def gaussianBlur[A](
+        picture: Drawing[A],
+        stdDeviation: Double
+    ): Drawing[A] = {
+      val filterId = Defs.id("blur", stdDeviation.toString)
 
-          (bb, newRdr)
-        }
-      }
+      filtered(picture, filterId)(
+        createGaussianBlurFilter(filterId, stdDeviation)
+      )
+    }
 
     def boxBlur[A](picture: Drawing[A], radius: Int): Drawing[A] = {
       val size = 2 * radius + 1
@@ -81,25 +70,17 @@ trait FilterModule { root: Base with SvgModule =>
         kernel: Kernel,
         divisor: Option[Double],
         bias: Double
-    ): Drawing[A] =
-      picture.flatMap { (bb, rdr) =>
-        Finalized.leaf { dc =>
-          val filterId = s"convolve-${Random.nextLong().toHexString}"
-          val filterTag = createConvolveFilter(filterId, kernel, divisor, bias)
-
-          val newRdr: Renderable[SvgResult, A] = rdr.map { result =>
-            val (tag, defs, a) = result
-
-            defs += filterTag
-
-            val filteredTag = applyFilter(tag, filterId)
-
-            (filteredTag, defs, a)
-          }
+    ): Drawing[A] = {
+      val div = divisor.getOrElse(kernel.sum)
+      val filterId = Defs.id(
+        "convolve",
+        s"${kernel.width} ${kernel.height} ${kernel.elements.mkString(" ")} $div $bias"
+      )
 
-          (bb, newRdr)
-        }
-      }
+      filtered(picture, filterId)(
+        createConvolveFilter(filterId, kernel, divisor, bias)
+      )
+    }
 
     def dropShadow[A](
         picture: Drawing[A],
@@ -107,17 +88,28 @@ trait FilterModule { root: Base with SvgModule =>
         offsetY: Double,
         blur: Double,
         color: Color
+    ): Drawing[A] = {
+      val filterId = Defs.id("shadow", s"$offsetX $offsetY $blur $color")
+
+      filtered(picture, filterId)(
+        createDropShadowFilter(filterId, offsetX, offsetY, blur, color)
+      )
+    }
+
+    /** Apply the filter with the given id to the picture, adding the filter to
+      * the picture's definitions if it is not already there. The id must be
+      * derived from everything that describes the filter, so that equal filters
+      * share one definition.
+      */
+    private def filtered[A](picture: Drawing[A], filterId: String)(
+        filter: => Tag
     ): Drawing[A] =
       picture.flatMap { (bb, rdr) =>
         Finalized.leaf { dc =>
-          val filterId = s"shadow-${Random.nextLong().toHexString}"
-          val filterTag =
-            createDropShadowFilter(filterId, offsetX, offsetY, blur, color)
-
           val newRdr: Renderable[SvgResult, A] = rdr.map { result =>
             val (tag, defs, a) = result
 
-            defs += filterTag
+            defs.define(filterId)(filter)
 
             val filteredTag = applyFilter(tag, filterId)
 
@@ -23,12 +23,10 @@ import doodle.algebra.generic.*
 import doodle.core.BoundingBox
 import doodle.core.Transform as Tx
 
-import scala.collection.mutable
-
 /** Module for handling bitmap images in SVG via <image> elements */
 trait ImageModule { root: Base with SvgModule =>
   trait Image {
-    self: doodle.algebra.Algebra {
+    self: HasSvgFormat with doodle.algebra.Algebra {
       type Drawing[A] = doodle.algebra.generic.Finalized[SvgResult, A]
     } =>
 
@@ -47,36 +45,36 @@ trait ImageModule { root: Base with SvgModule =>
           import b.implicits.*
           import b.{svgAttrs, svgTags}
 
-          val set = mutable.Set.empty[root.Tag]
+          val set = Defs.empty[root.Tag]
 
           val imgTag = (ref.width, ref.height) match {
             case (Some(w), Some(h)) =>
               svgTags.image(
                 svgAttrs.xLinkHref := ref.href,
-                svgAttrs.width := w,
-                svgAttrs.height := h,
-                svgAttrs.x := -w / 2,
-                svgAttrs.y := -h / 2,
-                svgAttrs.transform := Svg.toSvgTransform(tx)
+                svgAttrs.width := self.svgFormat.number(w),
+                svgAttrs.height := self.svgFormat.number(h),
+                svgAttrs.x := self.svgFormat.number(-w / 2),
+                svgAttrs.y := self.svgFormat.number(-h / 2),
+                svgAttrs.transform := Svg.toSvgTransform(tx, self.svgFormat)
               )
             case (Some(w), None) =>
               svgTags.image(
                 svgAttrs.xLinkHref := ref.href,
-                svgAttrs.width := w,
-                svgAttrs.x := -w / 2,
-                svgAttrs.transform := Svg.toSvgTransform(tx)
+                svgAttrs.width := self.svgFormat.number(w),
+                svgAttrs.x := self.svgFormat.number(-w / 2),
+                svgAttrs.transform := Svg.toSvgTransform(tx, self.svgFormat)
               )
             case (None, Some(h)) =>
               svgTags.image(
                 svgAttrs.xLinkHref := ref.href,
-                svgAttrs.height := h,
-                svgAttrs.y := -h / 2,
-                svgAttrs.transform := Svg.toSvgTransform(tx)
+                svgAttrs.height := self.svgFormat.number(h),
+                svgAttrs.y := self.svgFormat.number(-h / 2),
+                svgAttrs.transform := Svg.toSvgTransform(tx, self.svgFormat)
               )
             case (None, None) =>
               svgTags.image(
                 svgAttrs.xLinkHref := ref.href,
-                svgAttrs.transform := Svg.toSvgTransform(tx)
+                svgAttrs.transform := Svg.toSvgTransform(tx, self.svgFormat)
               )
           }
 
@@ -22,11 +22,9 @@ import doodle.algebra.generic.*
 import doodle.core.PathElement
 import doodle.core.Transform as Tx
 
-import scala.collection.mutable
-
 trait PathModule { root: Base with SvgModule =>
   trait Path extends GenericPath[SvgResult] {
-    self: doodle.algebra.Algebra {
+    self: HasSvgFormat with doodle.algebra.Algebra {
       type Drawing[A] = doodle.algebra.generic.Finalized[SvgResult, A]
     } =>
     object PathApi extends PathApi {
@@ -40,11 +38,11 @@ trait PathModule { root: Base with SvgModule =>
           stroke: Option[Stroke],
           elements: List[PathElement]
       ): SvgResult[Unit] = {
-        val dAttr = Svg.toSvgPath(elements, Svg.Closed)
-        val set = mutable.Set.empty[root.Tag]
-        val style = Svg.toStyle(stroke, fill, set)
+        val dAttr = Svg.toSvgPath(elements, Svg.Closed, self.svgFormat)
+        val set = Defs.empty[root.Tag]
+        val style = Svg.toStyle(stroke, fill, set, self.svgFormat)
         val elt = svgTags.path(
-          svgAttrs.transform := Svg.toSvgTransform(tx),
+          svgAttrs.transform := Svg.toSvgTransform(tx, self.svgFormat),
           svgAttrs.style := style,
           svgAttrs.d := dAttr
         )
@@ -58,11 +56,11 @@ trait PathModule { root: Base with SvgModule =>
           stroke: Option[Stroke],
           elements: List[PathElement]
       ): SvgResult[Unit] = {
-        val dAttr = Svg.toSvgPath(elements, Svg.Open)
-        val set = mutable.Set.empty[root.Tag]
-        val style = Svg.toStyle(stroke, fill, set)
+        val dAttr = Svg.toSvgPath(elements, Svg.Open, self.svgFormat)
+        val set = Defs.empty[root.Tag]
+        val style = Svg.toStyle(stroke, fill, set, self.svgFormat)
         val elt = svgTags.path(
-          svgAttrs.transform := Svg.toSvgTransform(tx),
+          svgAttrs.transform := Svg.toSvgTransform(tx, self.svgFormat),
           svgAttrs.style := style,
           svgAttrs.d := dAttr
         )
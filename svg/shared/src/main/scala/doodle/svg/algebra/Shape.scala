@@ -22,11 +22,9 @@ import doodle.algebra.generic.*
 import doodle.core.Point
 import doodle.core.Transform as Tx
 
-import scala.collection.mutable
-
 trait ShapeModule { root: Base with SvgModule =>
   trait Shape extends GenericShape[SvgResult] {
-    self: doodle.algebra.Algebra {
+    self: HasSvgFormat with doodle.algebra.Algebra {
       type Drawing[A] = doodle.algebra.generic.Finalized[SvgResult, A]
     } =>
     object ShapeApi extends ShapeApi {
@@ -43,15 +41,15 @@ trait ShapeModule { root: Base with SvgModule =>
       ): SvgResult[Unit] = {
         val x = -(width / 2.0)
         val y = -(height / 2.0)
-        val set = mutable.Set.empty[root.Tag]
-        val style = Svg.toStyle(stroke, fill, set)
+        val set = Defs.empty[root.Tag]
+        val style = Svg.toStyle(stroke, fill, set, self.svgFormat)
         val elt = svgTags.rect(
-          svgAttrs.transform := Svg.toSvgTransform(tx),
+          svgAttrs.transform := Svg.toSvgTransform(tx, self.svgFormat),
           svgAttrs.style := style,
-          svgAttrs.x := x,
-          svgAttrs.y := y,
-          svgAttrs.width := width,
-          svgAttrs.height := height
+          svgAttrs.x := self.svgFormat.number(x),
+          svgAttrs.y := self.svgFormat.number(y),
+          svgAttrs.width := self.svgFormat.number(width),
+          svgAttrs.height := self.svgFormat.number(height)
         )
 
         (elt, set, ())
@@ -67,11 +65,11 @@ trait ShapeModule { root: Base with SvgModule =>
         val w = width / 2.0
         val h = height / 2.0
         val points = Array(Point(-w, -h), Point(0, h), Point(w, -h))
-        val dAttr = Svg.toSvgPath(points, Svg.Closed)
-        val set = mutable.Set.empty[root.Tag]
-        val style = Svg.toStyle(stroke, fill, set)
+        val dAttr = Svg.toSvgPath(points, Svg.Closed, self.svgFormat)
+        val set = Defs.empty[root.Tag]
+        val style = Svg.toStyle(stroke, fill, set, self.svgFormat)
         val elt = svgTags.path(
-          svgAttrs.transform := Svg.toSvgTransform(tx),
+          svgAttrs.transform := Svg.toSvgTransform(tx, self.svgFormat),
           svgAttrs.style := style,
           svgAttrs.d := dAttr
         )
@@ -85,19 +83,19 @@ trait ShapeModule { root: Base with SvgModule =>
           stroke: Option[Stroke],
           diameter: Double
       ): SvgResult[Unit] = {
-        val set = mutable.Set.empty[root.Tag]
-        val style = Svg.toStyle(stroke, fill, set)
+        val set = Defs.empty[root.Tag]
+        val style = Svg.toStyle(stroke, fill, set, self.svgFormat)
         val elt = svgTags.circle(
-          svgAttrs.transform := Svg.toSvgTransform(tx),
+          svgAttrs.transform := Svg.toSvgTransform(tx, self.svgFormat),
           svgAttrs.style := style,
-          svgAttrs.r := (diameter / 2.0)
+          svgAttrs.r := self.svgFormat.number(diameter / 2.0)
         )
 
         (elt, set, ())
       }
 
       def unit: SvgResult[Unit] = {
-        (svgTags.g(), mutable.Set.empty, ())
+        (svgTags.g(), Defs.empty, ())
       }
     }
   }
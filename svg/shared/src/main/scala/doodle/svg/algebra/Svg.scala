@@ -28,8 +28,7 @@ import doodle.core.*
 import doodle.core.font.*
 import doodle.core.font.FontSize.Points
 import doodle.svg.effect.Size
-
-import scala.collection.mutable
+import doodle.svg.effect.SvgFormat
 
 trait SvgModule { self: Base =>
   object Svg {
@@ -41,7 +40,7 @@ trait SvgModule { self: Base =>
           val (t1, s1, fab) = ff
           val (t2, s2, a) = fa
 
-          (svg.g(t1, t2), s1.union(s2), fab(a))
+          (svg.g(t1, t2), s1 ++ s2, fab(a))
         }
 
         override def map[A, B](fa: SvgResult[A])(f: (A) => B): SvgResult[B] = {
@@ -50,7 +49,7 @@ trait SvgModule { self: Base =>
         }
 
         def pure[A](x: A): SvgResult[A] =
-          (bundle.svgTags.circle(), mutable.Set.empty, x)
+          (bundle.svgTags.circle(), Defs.empty, x)
       }
 
     val svg = bundle.svgTags
@@ -62,10 +61,22 @@ trait SvgModule { self: Base =>
         frame: Frame,
         algebra: Alg,
         picture: Picture[Alg, A]
-    ): IO[(Output, A)] = {
+    ): IO[(Output, A)] =
+      renderTag(frame, algebra, picture).map { case (tag, a) =>
+        (tag.render, a)
+      }
+
+    /** Render to SVG, returning the root <svg> tag without converting it to
+      * output. Use this to serialize the tag incrementally instead of building
+      * the complete output in memory.
+      */
+    def renderTag[Alg <: self.Algebra, A](
+        frame: Frame,
+        algebra: Alg,
+        picture: Picture[Alg, A]
+    ): IO[(Tag, A)] =
       renderWithoutRootTag(algebra, picture)
-        .map { case (bb, tags, a) => (svgTag(bb, frame)(tags).render, a) }
-    }
+        .map { case (bb, tags, a) => (svgTag(bb, frame)(tags), a) }
 
     /** Render to SVG without wrapping with a root <svg> tag. */
     def renderWithoutRootTag[Alg <: self.Algebra, A](
@@ -75,24 +86,30 @@ trait SvgModule { self: Base =>
       for {
         drawing <- IO { picture(algebra) }
         (bb, rdr) = drawing.run(List.empty).value
-        (_, (tags, set, a)) = rdr.run(Transform.verticalReflection).value
-        tagsWithGradients = svg.g(svg.defs(set.toList*), tags)
+        (_, (tags, defs, a)) = rdr.run(Transform.verticalReflection).value
+        tagsWithGradients = svg.g(svg.defs(defs.toList*), tags)
       } yield (bb, tagsWithGradients, a)
     }
 
     /** Given a bounding box and a size specification create a <svg> tag that
       * has the correct size and viewbox
       */
-    def svgTag(bb: BoundingBox, frame: Frame): Tag =
+    def svgTag(bb: BoundingBox, frame: Frame): Tag = {
+      val format = frame.format
+      def viewBox(x: Double, y: Double, w: Double, h: Double): String =
+        List(x, y, w, h).map(format.number).mkString(" ")
+
       frame.size match {
         case Size.FitToPicture(border) =>
           val w = bb.width + (2 * border)
           val h = bb.height + (2 * border)
+          val x = bb.left - border
+          val y = -bb.top - border
           svg.svg(
             svgAttrs.xmlns := s"http://www.w3.org/2000/svg",
-            svgAttrs.width := w,
-            svgAttrs.height := h,
-            svgAttrs.viewBox := s"${bb.left - border} ${-bb.top - border} ${w} ${h}",
+            svgAttrs.width := format.number(w),
+            svgAttrs.height := format.number(h),
+            svgAttrs.viewBox := viewBox(x, y, w, h),
             bundle.attrs.style :=
               "pointer-events: bounding-box; " ++
                 frame.background
@@ -103,9 +120,9 @@ trait SvgModule { self: Base =>
         case Size.FixedSize(w, h) =>
           svg.svg(
             svgAttrs.xmlns := s"http://www.w3.org/2000/svg",
-            svgAttrs.width := w,
-            svgAttrs.height := h,
-            svgAttrs.viewBox := s"${-w / 2} ${-h / 2} ${w} ${h}",
+            svgAttrs.width := format.number(w),
+            svgAttrs.height := format.number(h),
+            svgAttrs.viewBox := viewBox(-w / 2, -h / 2, w, h),
             bundle.attrs.style :=
               "pointer-events: bounding-box; " ++
                 frame.background
@@ -114,6 +131,7 @@ trait SvgModule { self: Base =>
           )
 
       }
+    }
 
     def textTag(text: String, font: Font, style: String): Tag = {
       val fontFamily =
@@ -168,15 +186,26 @@ trait SvgModule { self: Base =>
       * fill rendered as SVG styles.
       *
       * If the fill specifies a gradient that gradient, represented in SVG form
-      * as a Tag, is added to the given Set as a side-effect.
+      * as a Tag, is added to the given Defs as a side-effect.
       */
     def toStyle(
         stroke: Option[Stroke],
         fill: Option[Fill],
-        gradients: mutable.Set[Tag]
+        gradients: Defs[Tag]
+    ): String =
+      toStyle(stroke, fill, gradients, SvgFormat.default)
+
+    /** As [[toStyle]], writing numbers in the given format. */
+    def toStyle(
+        stroke: Option[Stroke],
+        fill: Option[Fill],
+        gradients: Defs[Tag],
+        format: SvgFormat
     ): String = {
-      val f = fill.fold("fill: none;")(f => this.toStyle(f, gradients))
-      val s = stroke.fold("stroke: none;")(s => this.toStyle(s, gradients))
+      val f =
+        fill.fold("fill: none;")(f => this.toStyle(f, gradients, format))
+      val s =
+        stroke.fold("stroke: none;")(s => this.toStyle(s, gradients, format))
 
       s ++ " " ++ f
     }
@@ -185,37 +214,51 @@ trait SvgModule { self: Base =>
       * being rendered
       *
       * Additionally, if this fill represents a gradient add that gradient to
-      * the given Set as a side-effect. In SVG gradients cannot be specified
+      * the given Defs as a side-effect. In SVG gradients cannot be specified
       * inline. Hence this construction.
       */
-    def toStyle(fill: Fill, gradients: mutable.Set[Tag]): String = {
+    def toStyle(fill: Fill, gradients: Defs[Tag]): String =
+      toStyle(fill, gradients, SvgFormat.default)
+
+    def toStyle(fill: Fill, gradients: Defs[Tag], format: SvgFormat): String = {
       fill match {
         case Fill.ColorFill(c)    => s"fill: ${Svg.toOklch(c)};"
         case Fill.GradientFill(g) =>
-          val (id, gradient) = toSvgGradient(g)
-          gradients += gradient
+          val id = toGradientId(g)
+          gradients.define(id)(toSvgGradient(g, format)._2)
           s"fill: url('#${id}'); "
       }
     }
 
     def toSvgGradient(gradient: Gradient): (String, Tag) =
+      toSvgGradient(gradient, SvgFormat.default)
+
+    def toSvgGradient(gradient: Gradient, format: SvgFormat): (String, Tag) =
       gradient match {
-        case linear: Gradient.Linear => this.toSvgLinearGradient(linear)
-        case radial: Gradient.Radial => this.toSvgRadialGradient(radial)
+        case linear: Gradient.Linear =>
+          this.toSvgLinearGradient(linear, format)
+        case radial: Gradient.Radial =>
+          this.toSvgRadialGradient(radial, format)
       }
 
-    def toSvgLinearGradient(gradient: Gradient.Linear): (String, Tag) = {
+    def toSvgLinearGradient(gradient: Gradient.Linear): (String, Tag) =
+      toSvgLinearGradient(gradient, SvgFormat.default)
+
+    def toSvgLinearGradient(
+        gradient: Gradient.Linear,
+        format: SvgFormat
+    ): (String, Tag) = {
       val (x1, y1, x2, y2) =
         (gradient.start.x, gradient.start.y, gradient.end.x, gradient.end.y)
       val id = Svg.toGradientId(gradient)
       val spreadMethod = Svg.toSvgSpreadMethod(gradient.cycleMethod)
-      val stops = gradient.stops.map(this.toSvgGradientStop)
+      val stops = gradient.stops.map(this.toSvgGradientStop(_, format))
       val domGradient = svg.linearGradient(
         svgAttrs.id := id,
-        svgAttrs.x1 := x1,
-        svgAttrs.y1 := y1,
-        svgAttrs.x2 := x2,
-        svgAttrs.y2 := y2,
+        svgAttrs.x1 := format.number(x1),
+        svgAttrs.y1 := format.number(y1),
+        svgAttrs.x2 := format.number(x2),
+        svgAttrs.y2 := format.number(y2),
         svgAttrs.spreadMethod := spreadMethod,
         svgAttrs.gradientUnits := "objectBoundingBox"
       )(stops*)
@@ -223,7 +266,13 @@ trait SvgModule { self: Base =>
       id -> domGradient
     }
 
-    def toSvgRadialGradient(gradient: Gradient.Radial): (String, Tag) = {
+    def toSvgRadialGradient(gradient: Gradient.Radial): (String, Tag) =
+      toSvgRadialGradient(gradient, SvgFormat.default)
+
+    def toSvgRadialGradient(
+        gradient: Gradient.Radial,
+        format: SvgFormat
+    ): (String, Tag) = {
       val (cx, cy, fx, fy, r) = (
         gradient.outer.x,
         gradient.outer.y,
@@ -233,14 +282,14 @@ trait SvgModule { self: Base =>
       )
       val id = Svg.toGradientId(gradient)
       val spreadMethod = Svg.toSvgSpreadMethod(gradient.cycleMethod)
-      val stops = gradient.stops.map(this.toSvgGradientStop)
+      val stops = gradient.stops.map(this.toSvgGradientStop(_, format))
       val domGradient = svg.radialGradient(
         svgAttrs.id := id,
-        svgAttrs.cx := cx,
-        svgAttrs.cy := cy,
-        svgAttrs.fx := fx,
-        svgAttrs.fy := fy,
-        svgAttrs.r := r,
+        svgAttrs.cx := format.number(cx),
+        svgAttrs.cy := format.number(cy),
+        svgAttrs.fx := format.number(fx),
+        svgAttrs.fy := format.number(fy),
+        svgAttrs.r := format.number(r),
         svgAttrs.spreadMethod := spreadMethod,
         svgAttrs.gradientUnits := "userSpaceOnUse"
       )(stops*)
@@ -248,18 +297,28 @@ trait SvgModule { self: Base =>
       id -> domGradient
     }
 
-    def toSvgGradientStop(tuple: (Color, Double)): Tag = {
+    def toSvgGradientStop(tuple: (Color, Double)): Tag =
+      toSvgGradientStop(tuple, SvgFormat.default)
+
+    def toSvgGradientStop(tuple: (Color, Double), format: SvgFormat): Tag = {
       val (c, offset) = tuple
       val color = Svg.toRgb(c)
       val opacity = c.alpha.get
       svg.stop(
-        svgAttrs.offset := offset,
+        svgAttrs.offset := format.number(offset),
         svgAttrs.stopColor := color,
-        svgAttrs.stopOpacity := opacity
+        svgAttrs.stopOpacity := format.number(opacity)
       )
     }
 
-    def toStyle(stroke: Stroke, gradients: mutable.Set[Tag]): String = {
+    def toStyle(stroke: Stroke, gradients: Defs[Tag]): String =
+      toStyle(stroke, gradients, SvgFormat.default)
+
+    def toStyle(
+        stroke: Stroke,
+        gradients: Defs[Tag],
+        format: SvgFormat
+    ): String = {
       val builder = new StringBuilder(64)
 
       val linecap = stroke.cap match {
@@ -272,13 +331,15 @@ trait SvgModule { self: Base =>
         case Join.Round => "round"
         case Join.Miter => "miter"
       }
-      builder ++= s"stroke-width: ${stroke.width}px; "
+      builder ++= "stroke-width: "
+      format.appendNumber(builder, stroke.width)
+      builder ++= "px; "
       stroke.style match {
         case StrokeStyle.ColorStroke(color) =>
           builder ++= s"stroke: ${toOklch(color)}; "
         case StrokeStyle.GradientStroke(gradient) =>
-          val (id, svgGradient) = toSvgGradient(gradient)
-          gradients += svgGradient
+          val id = toGradientId(gradient)
+          gradients.define(id)(toSvgGradient(gradient, format)._2)
           builder ++= s"stroke: url('#${id}'); "
       }
       builder ++= s"stroke-linecap: ${linecap}; "
@@ -291,60 +352,87 @@ trait SvgModule { self: Base =>
       builder.toString
     }
 
-    def toSvgTransform(tx: Transform): String = {
+    def toSvgTransform(tx: Transform): String =
+      toSvgTransform(tx, SvgFormat.default)
+
+    def toSvgTransform(tx: Transform, format: SvgFormat): String = {
       val elt = tx.elements
-      val a = elt(0)
-      val b = elt(3)
-      val c = elt(1)
-      val d = elt(4)
-      val e = elt(2)
-      val f = elt(5)
-      s"matrix($a,$b,$c,$d,$e,$f)"
+      val builder = new StringBuilder(64)
+      builder ++= "matrix("
+      format.appendCoefficient(builder, elt(0))
+      builder += ','
+      format.appendCoefficient(builder, elt(3))
+      builder += ','
+      format.appendCoefficient(builder, elt(1))
+      builder += ','
+      format.appendCoefficient(builder, elt(4))
+      builder += ','
+      format.appendNumber(builder, elt(2))
+      builder += ','
+      format.appendNumber(builder, elt(5))
+      builder += ')'
+      builder.toString
     }
 
     sealed trait PathType
     case object Open extends PathType
     case object Closed extends PathType
 
-    private def format(d: Double): String =
-      d.toString.replaceFirst("\\.0+$", "")
+    def toSvgPath(elts: List[PathElement], pathType: PathType): String =
+      toSvgPath(elts, pathType, SvgFormat.default)
 
-    def toSvgPath(elts: List[PathElement], pathType: PathType): String = {
+    def toSvgPath(
+        elts: List[PathElement],
+        pathType: PathType,
+        format: SvgFormat
+    ): String = {
       import PathElement.*
-      import scala.collection.mutable.StringBuilder
 
-      val builder = new StringBuilder(64, "M 0,0 ")
+      val builder = new SvgPathBuilder(format, 64)
+      // Paths start at the origin. Compact paths only say so if the path does
+      // not start by moving elsewhere.
+      elts match {
+        case MoveTo(_) :: _ if format.compactPaths => ()
+        case _                                     => builder.moveTo(0, 0)
+      }
       elts.foreach {
         case MoveTo(end) =>
-          builder ++= s"M ${format(end.x)},${format(end.y)} "
+          builder.moveTo(end.x, end.y)
         case LineTo(end) =>
-          builder ++= s"L ${format(end.x)},${format(end.y)} "
+          builder.lineTo(end.x, end.y)
         case BezierCurveTo(cp1, cp2, end) =>
-          builder ++= s"C ${format(cp1.x)},${format(cp1.y)} ${format(
-              cp2.x
-            )},${format(cp2.y)} ${format(end.x)},${format(end.y)} "
+          builder.curveTo(cp1.x, cp1.y, cp2.x, cp2.y, end.x, end.y)
       }
       pathType match {
-        case Open   => builder.toString
-        case Closed => (builder += 'Z').toString
+        case Open => builder.result
+        case Closed =>
+          builder.close()
+          builder.result
       }
     }
 
-    def toSvgPath(points: Array[Point], pathType: PathType): String = {
-      import scala.collection.mutable.StringBuilder
+    def toSvgPath(points: Array[Point], pathType: PathType): String =
+      toSvgPath(points, pathType, SvgFormat.default)
 
-      val builder = new StringBuilder(points.size * 10)
+    def toSvgPath(
+        points: Array[Point],
+        pathType: PathType,
+        format: SvgFormat
+    ): String = {
+      val builder = new SvgPathBuilder(format, points.size * 10)
       var first = true
       points.foreach { pt =>
         if first then {
           first = false
-          builder ++= s"M ${format(pt.x)},${format(pt.y)} "
-        } else builder ++= s"L ${format(pt.x)},${format(pt.y)} "
+          builder.moveTo(pt.x, pt.y)
+        } else builder.lineTo(pt.x, pt.y)
       }
 
       pathType match {
-        case Open   => builder.toString
-        case Closed => (builder += 'Z').toString
+        case Open => builder.result
+        case Closed =>
+          builder.close()
+          builder.result
       }
     }
 
@@ -366,7 +454,8 @@ trait SvgModule { self: Base =>
       s"rgb(${r.get}, ${g.get}, ${b.get})"
     }
 
+    /** The id of the gradient, which is the same for equal gradients. */
     def toGradientId(gradient: Gradient): String =
-      s"gradient-${gradient.hashCode.toString}"
+      Defs.id("gradient", gradient.toString)
   }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package svg
+package algebra
+
+import doodle.svg.effect.SvgFormat
+
+import scala.collection.mutable.StringBuilder
+
+/** Builds the `d` attribute of an SVG path in the given [[SvgFormat]].
+  *
+  * Verbose paths write every command in full, with absolute coordinates.
+  * Compact paths leave repeated commands implicit and only separate numbers
+  * where needed. When the format has a fixed precision compact paths also use
+  * relative coordinates, which are computed from rounded coordinates so that
+  * rounding errors do not accumulate along the path. With full precision
+  * relative coordinates would not read back exactly, so absolute coordinates
+  * are used.
+  */
+private[svg] final class SvgPathBuilder(format: SvgFormat, sizeHint: Int) {
+  private val builder = new StringBuilder(sizeHint)
+  private val compact = format.compactPaths
+  private val relative = compact && format.precision.isDefined
+
+  // The current point and the start of the current subpath, rounded to the
+  // format's precision
+  private var x = 0.0
+  private var y = 0.0
+  private var startX = 0.0
+  private var startY = 0.0
+
+  // The command that applies to the next coordinates if no command is
+  // written, and whether the next number must be separated from the last
+  private var command = ' '
+  private var separate = false
+
+  def moveTo(x: Double, y: Double): Unit = {
+    point('M', x, y)
+    startX = this.x
+    startY = this.y
+    // Coordinates following a move are implicitly lines
+    command = if relative then 'l' else 'L'
+  }
+
+  def lineTo(x: Double, y: Double): Unit =
+    point('L', x, y)
+
+  def curveTo(
+      cp1x: Double,
+      cp1y: Double,
+      cp2x: Double,
+      cp2y: Double,
+      x: Double,
+      y: Double
+  ): Unit =
+    if compact then {
+      writeCommand('C')
+      coordinate(cp1x, cp1y)
+      coordinate(cp2x, cp2y)
+      end(x, y)
+    } else {
+      builder ++= "C "
+      verbosePair(cp1x, cp1y)
+      builder += ' '
+      verbosePair(cp2x, cp2y)
+      builder += ' '
+      verbosePair(x, y)
+      builder += ' '
+    }
+
+  def close(): Unit = {
+    if compact then {
+      builder += 'z'
+      command = 'z'
+      separate = false
+    } else builder += 'Z'
+    x = startX
+    y = startY
+  }
+
+  def result: String = builder.toString
+
+  /** Write a command with a single point, such as a move or line. */
+  private def point(cmd: Char, x: Double, y: Double): Unit =
+    if compact then {
+      writeCommand(cmd)
+      end(x, y)
+    } else {
+      builder += cmd
+      builder += ' '
+      verbosePair(x, y)
+      builder += ' '
+    }
+
+  private def verbosePair(x: Double, y: Double): Unit = {
+    format.appendNumber(builder, x)
+    builder += ','
+    format.appendNumber(builder, y)
+  }
+
+  /** Write the command, in relative form if relative coordinates are used, if
+    * it is not already implied.
+    */
+  private def writeCommand(cmd: Char): Unit = {
+    val c = if relative then cmd.toLower else cmd
+    if c != command then {
+      builder += c
+      command = c
+      separate = false
+    }
+  }
+
+  /** Write the point that ends a command, which becomes the current point. */
+  private def end(x: Double, y: Double): Unit = {
+    val rx = format.round(x)
+    val ry = format.round(y)
+    coordinate(rx, ry)
+    this.x = rx
+    this.y = ry
+  }
+
+  /** Write a point, relative to the current point if relative coordinates are
+    * used.
+    */
+  private def coordinate(x: Double, y: Double): Unit =
+    if relative then {
+      number(format.round(x) - this.x)
+      number(format.round(y) - this.y)
+    } else {
+      number(x)
+      number(y)
+    }
+
+  /** Write a number, separated from the previous number by a space unless it
+    * starts with a minus sign.
+    */
+  private def number(d: Double): Unit = {
+    val start = builder.length
+    if separate then builder += ' '
+    format.appendNumber(builder, d)
+    if separate && builder.charAt(start + 1) == '-' then
+      builder.deleteCharAt(start)
+    separate = true
+  }
+}
@@ -34,7 +34,8 @@ import doodle.core.Color
 final case class Frame(
     id: String,
     size: Size,
-    background: Option[Color] = None
+    background: Option[Color] = None,
+    format: SvgFormat = SvgFormat.default
 ) {
 
   /** Use the given color as the background.
@@ -51,6 +52,24 @@ final case class Frame(
   /** Size the canvas with the given fixed dimensions. */
   def withSize(width: Double, height: Double): Frame =
     this.copy(size = Size.fixedSize(width, height))
+
+  /** Write numbers and paths in the given format. */
+  def withFormat(format: SvgFormat): Frame =
+    this.copy(format = format)
+
+  /** Write coordinates and lengths, in paths, transforms, shapes, images,
+    * text, gradients, strokes, and the root element, with at most the given
+    * number of digits after the decimal point. Colors and filter parameters are
+    * written in full.
+    */
+  def withPrecision(digits: Int): Frame =
+    this.copy(format = format.withPrecision(digits))
+
+  /** Write paths with implicit repeated commands and minimal whitespace.
+    * Commands are relative only if a precision is set with `withPrecision`.
+    */
+  def withCompactPaths: Frame =
+    this.copy(format = format.withCompactPaths)
 }
 object Frame {
   def apply(id: String): Frame =
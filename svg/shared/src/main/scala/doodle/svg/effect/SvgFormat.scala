@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package svg
+package effect
+
+import scala.collection.mutable.StringBuilder
+
+/** How numbers and paths are written in SVG output.
+  *
+  * @param precision
+  *   The number of digits written after the decimal point in coordinates, or
+  *   `None` to write the shortest representation that reads back as the same
+  *   `Double`. Trailing zeros are never written. Transform coefficients that
+  *   scale and rotate are written with four more digits, as their error is
+  *   multiplied by every coordinate they transform.
+  * @param compactPaths
+  *   If true, paths are written with repeated commands left implicit and
+  *   without whitespace that is not needed to separate numbers. If `precision`
+  *   is also set, commands are relative. With full precision they stay
+  *   absolute, as relative coordinates would not read back exactly. If false,
+  *   every command is written in full with absolute coordinates.
+  */
+final case class SvgFormat(precision: Option[Int], compactPaths: Boolean) {
+
+  /** Write numbers with at most the given number of digits after the decimal
+    * point. The number of digits is clamped to between 0 and
+    * [[SvgFormat.maxPrecision]].
+    */
+  def withPrecision(digits: Int): SvgFormat =
+    this.copy(precision = Some(digits.max(0).min(SvgFormat.maxPrecision)))
+
+  /** Write numbers with as many digits as needed to read back exactly. */
+  def withFullPrecision: SvgFormat =
+    this.copy(precision = None)
+
+  /** Write paths with implicit repeated commands and minimal whitespace.
+    * Commands are relative only if this format has a fixed precision.
+    */
+  def withCompactPaths: SvgFormat =
+    this.copy(compactPaths = true)
+
+  /** Write paths with absolute commands, each written in full. */
+  def withVerbosePaths: SvgFormat =
+    this.copy(compactPaths = false)
+
+  /** Round the number to the precision of this format, in the same way it is
+    * rounded when written.
+    */
+  def round(d: Double): Double =
+    precision match {
+      case None => d
+      case Some(digits) =>
+        val scale = SvgFormat.powersOfTen(digits).toDouble
+        if d.isNaN || d.isInfinite || Math.abs(d) * scale >= SvgFormat.maxExact
+        then d
+        else Math.signum(d) * Math.round(Math.abs(d) * scale) / scale
+    }
+
+  /** Append the number, written in this format, to the builder. */
+  def appendNumber(builder: StringBuilder, d: Double): Unit =
+    SvgFormat.appendNumber(builder, d, precision)
+
+  /** Append the number, written with more digits than this format uses for
+    * coordinates, to the builder. Used for transform coefficients.
+    */
+  def appendCoefficient(builder: StringBuilder, d: Double): Unit =
+    SvgFormat.appendNumber(
+      builder,
+      d,
+      precision.map(p => (p + 4).min(SvgFormat.maxPrecision))
+    )
+
+  /** The number written in this format. */
+  def number(d: Double): String = {
+    val builder = new StringBuilder(24)
+    appendNumber(builder, d)
+    builder.toString
+  }
+}
+object SvgFormat {
+
+  /** The largest number of digits after the decimal point that can be
+    * requested.
+    */
+  val maxPrecision: Int = 12
+
+  /** Numbers are written exactly, in verbose paths. */
+  val default: SvgFormat = SvgFormat(None, false)
+
+  /** Numbers are written to two decimal places, which is a hundredth of a pixel
+    * at the default scale, in compact paths.
+    */
+  val compact: SvgFormat = SvgFormat(Some(2), true)
+
+  private val powersOfTen: Array[Long] =
+    Array.iterate(1L, maxPrecision + 5)(_ * 10L)
+
+  /** Scaled values at or above this are not exactly represented by a `Long`
+    * after rounding, so are written with full precision.
+    */
+  private val maxExact: Double = 1e15
+
+  private def appendNumber(
+      builder: StringBuilder,
+      d: Double,
+      precision: Option[Int]
+  ): Unit =
+    precision match {
+      case None => appendShortest(builder, d)
+      case Some(digits) =>
+        val scaled = Math.abs(d) * powersOfTen(digits).toDouble
+        if d.isNaN || d.isInfinite || scaled >= maxExact then
+          appendShortest(builder, d)
+        else appendFixed(builder, d < 0, Math.round(scaled), digits)
+    }
+
+  /** Append `Double.toString` without a trailing `.0`. */
+  private def appendShortest(builder: StringBuilder, d: Double): Unit = {
+    val s = d.toString
+    if s.endsWith(".0") then builder.underlying.append(s, 0, s.length - 2)
+    else builder ++= s
+  }
+
+  /** Append the number that is `value` divided by 10^digits, without trailing
+    * zeros and without a sign if it is zero.
+    */
+  private def appendFixed(
+      builder: StringBuilder,
+      negative: Boolean,
+      value: Long,
+      digits: Int
+  ): Unit =
+    if value == 0L then builder += '0'
+    else {
+      var n = value
+      var d = digits
+      while d > 0 && n % 10L == 0L do {
+        n = n / 10L
+        d = d - 1
+      }
+
+      if negative then builder += '-'
+      val divisor = powersOfTen(d)
+      builder.append(n / divisor)
+      if d > 0 then {
+        builder += '.'
+        var fraction = n % divisor
+        var place = divisor / 10L
+        while place > 0L do {
+          builder += ('0' + (fraction / place).toInt).toChar
+          fraction = fraction % place
+          place = place / 10L
+        }
+      }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package svg
+
+import cats.effect.IO
+import doodle.core.*
+import doodle.svg.effect.Frame
+import doodle.syntax.all.*
+import munit.CatsEffectSuite
+
+import java.nio.charset.StandardCharsets
+
+class DefsSuite
+    extends CatsEffectSuite
+    with doodle.svg.algebra.TestAlgebraModule {
+
+  test("ids depend only on the prefix and key") {
+    assertEquals(Defs.id("blur", "2.0"), Defs.id("blur", "2.0"))
+    assertNotEquals(Defs.id("blur", "2.0"), Defs.id("blur", "3.0"))
+    assertNotEquals(Defs.id("blur", "2.0"), Defs.id("shadow", "2.0"))
+    assert(Defs.id("blur", "2.0").startsWith("blur-"))
+  }
+
+  test("different keys never share an id") {
+    assertEquals(Defs.id("shadow", "1.0 2.0"), "shadow-1.0_20_2.0")
+    assertNotEquals(Defs.id("k", "a b"), Defs.id("k", "a_20_b"))
+    assertNotEquals(Defs.id("k", "\u0001f"), Defs.id("k", "\u001f"))
+  }
+
+  test("definitions are only evaluated the first time an id is defined") {
+    val defs = Defs.empty[String]
+    var evaluated = 0
+    def definition(value: String): String = {
+      evaluated = evaluated + 1
+      value
+    }
+
+    defs.define("a")(definition("first"))
+    defs.define("b")(definition("second"))
+    defs.define("a")(definition("third"))
+
+    assertEquals(evaluated, 2)
+    assertEquals(defs.toList, List("first", "second"))
+  }
+
+  test("combining definitions keeps each id once, in order") {
+    val first = Defs.empty[String]
+    first.define("a")("a")
+    first.define("b")("b")
+    val second = Defs.empty[String]
+    second.define("b")("b")
+    second.define("c")("c")
+
+    val combined = first ++ second
+
+    assertEquals(combined.toList, List("a", "b", "c"))
+    assertEquals(first.size, 2)
+    assertEquals(second.size, 2)
+  }
+
+  test("equal gradients are defined once") {
+    val gradient = Gradient.dichromaticVertical(Color.red, Color.blue, 30)
+    val picture =
+      square(30.0)
+        .fillGradient(gradient)
+        .beside(circle(30.0).fillGradient(gradient))
+        .beside(circle(30.0).strokeGradient(gradient))
+
+    Svg
+      .renderWithoutRootTag(algebraInstance, picture)
+      .map { case (_, tag, _) =>
+        val tagStr = tag.render
+        val id = Svg.toGradientId(gradient)
+
+        assertEquals("<linearGradient ".r.findAllIn(tagStr).size, 1)
+        assertEquals(s"#$id".r.findAllIn(tagStr).size, 3)
+      }
+  }
+
+  test("equal filters are defined once") {
+    val picture =
+      List.tabulate(10)(i => circle((i + 1) * 10.0).blur(2.0)).allBeside
+
+    Svg
+      .renderWithoutRootTag(algebraInstance, picture)
+      .map { case (_, tag, _) =>
+        val tagStr = tag.render
+
+        assertEquals("<filter ".r.findAllIn(tagStr).size, 1)
+        assertEquals("url\\(#blur-".r.findAllIn(tagStr).size, 10)
+      }
+  }
+
+  test("pictures render to byte-identical SVG every time") {
+    val frame = Frame("defs")
+    val picture =
+      circle(50.0)
+        .fillGradient(Gradient.dichromaticHorizontal(Color.red, Color.blue, 50))
+        .dropShadow(2.0, 2.0, 1.0)
+        .beside(
+          square(40.0)
+            .strokeGradient(
+              Gradient.dichromaticRadial(Color.green, Color.orange, 20)
+            )
+            .sharpen(1.5)
+        )
+        .beside(star(5, 30.0, 15.0).blur(2.0).detectEdges)
+
+    def bytes: IO[Array[Byte]] =
+      Svg
+        .render(frame, algebraInstance, picture)
+        .map { case (svg, _) =>
+          svg.getBytes(StandardCharsets.UTF_8)
+        }
+
+    for {
+      first <- bytes
+      second <- bytes
+    } yield assert(
+      first.sameElements(second),
+      "rendering the same picture twice gave different bytes"
+    )
+  }
+}
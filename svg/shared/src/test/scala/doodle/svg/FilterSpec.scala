@@ -149,7 +149,7 @@ class FilterSpec
       }
   }
 
-  test("filters should generate unique IDs") {
+  test("equal filters have the same id") {
     val picture1 = circle(50.0).blur(2.0)
     val picture2 = circle(50.0).blur(2.0)
 
@@ -160,10 +160,23 @@ class FilterSpec
       val (_, tag1, _) = result1
       val (_, tag2, _) = result2
 
-      assertNotEquals(tag1.toString, tag2.toString)
+      assertEquals(tag1.render, tag2.render)
     }
   }
 
+  test("different filters have different ids") {
+    val picture = circle(50.0).blur(2.0).beside(circle(50.0).blur(3.0))
+
+    Svg
+      .renderWithoutRootTag(algebraInstance, picture)
+      .map { case (_, tag, _) =>
+        val tagStr = tag.render
+
+        assertEquals("<filter ".r.findAllIn(tagStr).size, 2)
+        assertEquals("url\\(#blur-".r.findAllIn(tagStr).size, 2)
+      }
+  }
+
   test("multiple filters can be applied") {
     val picture = circle(100.0).blur(2.0).dropShadow(2.0, 2.0, 1.0)
 
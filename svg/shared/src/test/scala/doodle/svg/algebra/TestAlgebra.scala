@@ -23,6 +23,7 @@ import doodle.algebra.generic.Finalized
 import doodle.algebra.generic.Renderable
 import doodle.core.BoundingBox
 import doodle.core.font.Font
+import doodle.svg.effect.SvgFormat
 
 trait TestAlgebraModule
     extends AlgebraModule
@@ -44,6 +45,8 @@ trait TestAlgebraModule
       with Filter
       with Image {
 
+    val svgFormat: SvgFormat = SvgFormat.default
+
     def font[A](image: Drawing[A], font: Font): TestAlgebra.this.Drawing[A] =
       ???
     def text(text: String): Drawing[Unit] = ???
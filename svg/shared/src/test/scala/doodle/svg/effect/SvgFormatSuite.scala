@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package svg
+package effect
+
+import doodle.svg.algebra.SvgPathBuilder
+import munit.FunSuite
+
+class SvgFormatSuite extends FunSuite {
+  test("full precision numbers are written without a trailing .0") {
+    val format = SvgFormat.default
+    assertEquals(format.number(5.0), "5")
+    assertEquals(format.number(-12.0), "-12")
+    assertEquals(format.number(0.1), "0.1")
+    assertEquals(format.number(1.0 / 3.0), (1.0 / 3.0).toString)
+  }
+
+  test("fixed precision numbers are rounded and trimmed") {
+    val format = SvgFormat.default.withPrecision(2)
+    assertEquals(format.number(1.0 / 3.0), "0.33")
+    assertEquals(format.number(2.0 / 3.0), "0.67")
+    assertEquals(format.number(-2.0 / 3.0), "-0.67")
+    assertEquals(format.number(1.5), "1.5")
+    assertEquals(format.number(1.004), "1")
+    assertEquals(format.number(100.0), "100")
+    assertEquals(format.number(0.05), "0.05")
+    assertEquals(format.number(-0.001), "0")
+    assertEquals(format.number(123456.789), "123456.79")
+  }
+
+  test("zero digits of precision writes integers") {
+    val format = SvgFormat.default.withPrecision(0)
+    assertEquals(format.number(2.5), "3")
+    assertEquals(format.number(-2.4), "-2")
+  }
+
+  test("numbers too large for fixed precision are written in full") {
+    val format = SvgFormat.default.withPrecision(2)
+    assertEquals(format.number(1e20), 1e20.toString)
+  }
+
+  test("round agrees with the written number") {
+    val format = SvgFormat.default.withPrecision(3)
+    List(0.12345, -0.12345, 2.0005, -2.0005, 99.9999).foreach { d =>
+      assertEquals(format.number(format.round(d)), format.number(d))
+    }
+  }
+
+  test("verbose paths write every command in full") {
+    val builder = new SvgPathBuilder(SvgFormat.default, 16)
+    builder.moveTo(5, 5)
+    builder.lineTo(10, 10)
+    builder.curveTo(20, 20, 30, 30, 40, 40)
+    builder.close()
+    assertEquals(builder.result, "M 5,5 L 10,10 C 20,20 30,30 40,40 Z")
+  }
+
+  test("compact paths use relative commands and implicit repeats") {
+    val builder = new SvgPathBuilder(SvgFormat.compact, 16)
+    builder.moveTo(5, 5)
+    builder.lineTo(10, 10)
+    builder.lineTo(10, 0)
+    builder.curveTo(20, 0, 30, 10, 40, 10)
+    builder.curveTo(50, 10, 60, 0, 70, 0)
+    builder.close()
+    builder.lineTo(0, 0)
+    assertEquals(
+      builder.result,
+      "m5 5 5 5 0-10c10 0 20 10 30 10 10 0 20-10 30-10zl-5-5"
+    )
+  }
+
+  test("compact paths with full precision use absolute commands") {
+    val builder = new SvgPathBuilder(SvgFormat.default.withCompactPaths, 16)
+    builder.moveTo(0.1, 0.2)
+    builder.lineTo(-0.3, 0.4)
+    builder.lineTo(0.5, -0.6)
+    assertEquals(builder.result, "M0.1 0.2-0.3 0.4 0.5-0.6")
+  }
+
+  test("compact relative paths do not accumulate rounding error") {
+    val format = SvgFormat.compact.withPrecision(1)
+    val builder = new SvgPathBuilder(format, 16)
+    builder.moveTo(0, 0)
+    (1 to 10).foreach(i => builder.lineTo(i * 0.14, 0))
+    // Steps are the differences between rounded points, so they add up to the
+    // rounded end point of 1.4 rather than ten rounded steps of 0.1
+    assertEquals(
+      builder.result,
+      "m0 0 0.1 0 0.2 0 0.1 0 0.2 0 0.1 0 0.1 0 0.2 0 0.1 0 0.2 0 0.1 0"
+    )
+  }
+}
@@ -23,8 +23,6 @@ import doodle.core.*
 import doodle.language.Basic
 import munit.CatsEffectSuite
 
-import scala.collection.mutable
-
 class SvgSpec
     extends CatsEffectSuite
     with doodle.svg.algebra.TestAlgebraModule {
@@ -48,8 +46,8 @@ class SvgSpec
             Transform.verticalReflection
           ),
           svgAttrs.style := Svg
-            .toStyle(Some(blackStroke), None, mutable.Set.empty),
-          svgAttrs.r := (diameter / 2.0)
+            .toStyle(Some(blackStroke), None, Defs.empty),
+          svgAttrs.r := "5"
         )
       )
 
@@ -83,6 +81,39 @@ class SvgSpec
     )
   }
 
+  test(
+    "compact paths only move to the origin when they do not start with a move"
+  ) {
+    import doodle.core.PathElement.*
+
+    assertEquals(
+      Svg.toSvgPath(
+        List(moveTo(5, 5), lineTo(10, 10)),
+        Svg.Open,
+        SvgFormat.compact
+      ),
+      "m5 5 5 5"
+    )
+    assertEquals(
+      Svg.toSvgPath(List(lineTo(10, 10)), Svg.Closed, SvgFormat.compact),
+      "m0 0 10 10z"
+    )
+  }
+
+  test("transforms are written in the given format") {
+    assertEquals(
+      Svg.toSvgTransform(Transform.verticalReflection),
+      "matrix(1,0,0,-1,0,0)"
+    )
+    assertEquals(
+      Svg.toSvgTransform(
+        Transform.translate(1.0 / 3.0, 2.0 / 3.0),
+        SvgFormat.compact
+      ),
+      "matrix(1,0,0,1,0.33,0.67)"
+    )
+  }
+
   test("monospaced fonts render correctly") {
     import doodle.core.font.Font
     import doodle.core.font.FontFamily
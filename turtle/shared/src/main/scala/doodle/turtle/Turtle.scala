@@ -20,47 +20,101 @@ package turtle
 import doodle.core.*
 import doodle.image.Image
 
+import scala.collection.mutable.ListBuffer
+
 object Turtle {
   final case class State(at: Vec, heading: Angle)
 
+  /** Draw the path the turtle traces when it follows instructions, starting at
+    * the origin facing in the direction given by angle.
+    *
+    * Instructions are consumed one at a time and the path is built in a single
+    * pass, so instructions can be an `Iterator` that produces them lazily.
+    * Memory use is then proportional to the path rather than to the
+    * instructions.
+    */
   def draw(
-      instructions: List[Instruction],
+      instructions: IterableOnce[Instruction],
       angle: Angle = Angle.zero
+  ): Image =
+    drawMarked(instructions.iterator, angle)
+
+  /** Marks the start and end of a branch. [[examples.LSystem.expand]] produces
+    * these around the contents of a branch, rather than an
+    * [[Instruction.Branch]] that holds them all, so branches can be drawn
+    * without being held in memory. They are only seen by `expand` and
+    * [[drawMarked]], so they are not part of `Instruction`.
+    */
+  private[turtle] enum Marker {
+
+    /** Start a branch. The instructions up to the matching `EndBranch` are
+      * followed from the turtle's current state, which is then restored.
+      */
+    case StartBranch
+
+    /** End the branch started by the matching `StartBranch`. */
+    case EndBranch
+  }
+
+  /** As [[draw]], but branches may also be given as instructions between a
+    * `StartBranch` and the matching `EndBranch` marker.
+    */
+  private[turtle] def drawMarked(
+      instructions: Iterator[Instruction | Marker],
+      angle: Angle
   ): Image = {
     import Instruction.*
     import PathElement.*
 
-    val initialState = State(Vec.zero, angle)
+    val path = ListBuffer(moveTo(0, 0))
+    var state = State(Vec.zero, angle)
 
-    // Note that iterate returns the path in *reversed* order.
-    def iterate(
-        state: State,
-        instructions: List[Instruction]
-    ): (State, List[PathElement]) = {
-      instructions.foldLeft((state, List.empty[PathElement])) { (accum, elt) =>
-        val (state, path) = accum
-        elt match {
+    // The instructions inside a Branch are drawn by pushing them onto this
+    // stack. The bottom is the instructions we were given.
+    var pending: List[Iterator[Instruction | Marker]] = List(instructions)
+    // The states to restore at the end of each open branch
+    var saved: List[State] = List.empty
+
+    def startBranch(): Unit =
+      saved = state :: saved
+
+    def endBranch(): Unit =
+      saved match {
+        case head :: tail =>
+          state = head
+          saved = tail
+          path += MoveTo(state.at.toPoint)
+
+        case Nil => ()
+      }
+
+    while pending.nonEmpty do {
+      val current = pending.head
+      if current.hasNext then
+        current.next() match {
           case Forward(d) =>
             val nowAt = state.at + Vec.polar(d, state.heading)
-            val element = lineTo(nowAt.toPoint)
+            path += lineTo(nowAt.toPoint)
+            state = state.copy(at = nowAt)
 
-            (state.copy(at = nowAt), element +: path)
           case Turn(a) =>
-            val nowHeading = state.heading + a
+            state = state.copy(heading = state.heading + a)
 
-            (state.copy(heading = nowHeading), path)
           case Branch(i) =>
-            val (_, branchedPath) = iterate(state, i)
-
-            (state, MoveTo(state.at.toPoint) +: (branchedPath ++ path))
+            startBranch()
+            pending = i.iterator :: pending
 
-          case NoOp =>
-            accum
+          case NoOp               => ()
+          case Marker.StartBranch => startBranch()
+          case Marker.EndBranch   => endBranch()
         }
+      else {
+        pending = pending.tail
+        // Every iterator other than the bottom one is the body of a Branch
+        if pending.nonEmpty then endBranch()
       }
     }
 
-    val (_, path) = iterate(initialState, instructions)
-    Image.path(OpenPath(moveTo(0, 0) :: path.reverse.toList))
+    Image.path(OpenPath(path.toList))
   }
 }
@@ -48,6 +48,80 @@ object LSystem {
     }
   }
 
+  /** Draw the instructions given by [[iterate]], starting in the direction
+    * given by angle, without holding any generation in memory. This draws the
+    * same path as `Turtle.draw(iterate(steps, seed, rule), angle)`, but memory
+    * use is proportional to the path rather than to the instructions.
+    */
+  def draw(
+      steps: Int,
+      seed: List[Instruction],
+      rule: Instruction => List[Instruction],
+      angle: Angle = Angle.zero
+  ): Image =
+    Turtle.drawMarked(expand(steps, seed, rule), angle)
+
+  /** The same instructions as [[iterate]], produced lazily one at a time.
+    *
+    * Instructions are rewritten depth first as they are requested, so memory
+    * use is proportional to the number of steps and the nesting of branches,
+    * rather than to the size of each generation. Branches are produced as
+    * [[Turtle.Marker]]s around their contents, rather than as a
+    * [[Instruction.Branch]] that holds them all, so [[Turtle.drawMarked]] can
+    * consume the result without it ever being held in memory.
+    */
+  private[turtle] def expand(
+      steps: Int,
+      seed: List[Instruction],
+      rule: Instruction => List[Instruction]
+  ): Iterator[Instruction | Turtle.Marker] =
+    new Iterator[Instruction | Turtle.Marker] {
+      // Each level is instructions still to be rewritten, the number of steps
+      // of rewriting still to apply to them, and whether they are the contents
+      // of a Branch.
+      private final case class Level(
+          instructions: Iterator[Instruction],
+          steps: Int,
+          branch: Boolean
+      )
+
+      private var levels: List[Level] =
+        List(Level(seed.iterator, steps, false))
+      private var nextInstruction: Instruction | Turtle.Marker = null
+
+      def hasNext: Boolean = {
+        while nextInstruction == null && levels.nonEmpty do advance()
+        nextInstruction != null
+      }
+
+      def next(): Instruction | Turtle.Marker =
+        if hasNext then {
+          val result = nextInstruction
+          nextInstruction = null
+          result
+        } else Iterator.empty.next()
+
+      private def advance(): Unit = {
+        val level = levels.head
+        if level.instructions.hasNext then
+          level.instructions.next() match {
+            case Branch(i) =>
+              levels = Level(i.iterator, level.steps, true) :: levels
+              nextInstruction = Turtle.Marker.StartBranch
+
+            case other =>
+              if level.steps == 0 then nextInstruction = other
+              else
+                levels =
+                  Level(rule(other).iterator, level.steps - 1, false) :: levels
+          }
+        else {
+          levels = levels.tail
+          if level.branch then nextInstruction = Turtle.Marker.EndBranch
+        }
+      }
+    }
+
   object tree {
     val left = turn(25.degrees)
     val right = turn(-25.degrees)
@@ -75,9 +149,10 @@ object LSystem {
       }
     }
 
-    val image = Turtle
-      .draw(iterate(6, List(noop), rule), 50.degrees)
-      .strokeColor(Color.forestGreen)
+    val image =
+      LSystem
+        .draw(6, List(noop), rule, 50.degrees)
+        .strokeColor(Color.forestGreen)
   }
 
   object flowers {
@@ -93,7 +168,7 @@ object LSystem {
       }
     }
 
-    val image = Turtle.draw(iterate(5, List(noop), rule))
+    val image = LSystem.draw(5, List(noop), rule)
   }
 
   object kochCurve {
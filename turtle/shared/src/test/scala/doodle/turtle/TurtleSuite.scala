@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Creative Scala
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package doodle
+package turtle
+
+import doodle.core.*
+import doodle.image.Image
+import doodle.syntax.all.*
+import doodle.turtle.examples.LSystem
+import munit.FunSuite
+
+class TurtleSuite extends FunSuite {
+  import Instruction.*
+
+  def path(image: Image): OpenPath =
+    image match {
+      case Image.Elements.OpenPath(path) => path
+      case other => fail(s"Expected an open path but got $other")
+    }
+
+  def assertSamePath(actual: Image, expected: Image): Unit = {
+    val a = path(actual)
+    val e = path(expected)
+    assertEquals(a.elements, e.elements)
+    assertEquals(a.boundingBox, e.boundingBox)
+  }
+
+  test("branches return to where they started") {
+    val image =
+      Turtle.draw(
+        List(
+          forward(10),
+          branch(turn(90.degrees), forward(10)),
+          forward(10)
+        )
+      )
+
+    val p = path(image)
+    assertEquals(p.elements.size, 5)
+    assertEquals(p.elements(3), PathElement.moveTo(10, 0))
+    assertEquals(p.elements(4), PathElement.lineTo(20, 0))
+  }
+
+  test("markers draw the same as a Branch") {
+    val instructions =
+      List(
+        forward(10),
+        branch(turn(45.degrees), forward(5), branch(turn(45.degrees))),
+        forward(10)
+      )
+    val markers =
+      List(
+        forward(10),
+        Turtle.Marker.StartBranch,
+        turn(45.degrees),
+        forward(5),
+        Turtle.Marker.StartBranch,
+        turn(45.degrees),
+        Turtle.Marker.EndBranch,
+        Turtle.Marker.EndBranch,
+        forward(10)
+      )
+
+    assertSamePath(
+      Turtle.drawMarked(markers.iterator, Angle.zero),
+      Turtle.draw(instructions)
+    )
+  }
+
+  test("expand draws the same path as iterate, with nested branches") {
+    import LSystem.tree
+
+    (0 to 5).foreach { steps =>
+      assertSamePath(
+        LSystem.draw(steps, List(noop), tree.rule, 50.degrees),
+        Turtle.draw(LSystem.iterate(steps, List(noop), tree.rule), 50.degrees)
+      )
+    }
+  }
+
+  test("expand draws the same path as iterate for branches in the seed") {
+    import LSystem.flowers
+
+    val seed = List(forward(5), branch(noop, branch(turn(30.degrees), noop)))
+    (0 to 3).foreach { steps =>
+      assertSamePath(
+        LSystem.draw(steps, seed, flowers.rule),
+        Turtle.draw(LSystem.iterate(steps, seed, flowers.rule))
+      )
+    }
+  }
+}